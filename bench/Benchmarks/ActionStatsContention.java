@@ -0,0 +1,115 @@
+package Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import game.Game;
+import main.collections.FastArrayList;
+import other.GameLoader;
+import other.context.Context;
+import other.move.Move;
+import other.trial.Trial;
+import DataStructures.ConcurrentActionStats;
+import DataStructures.MoveCodec;
+
+/**
+ * Measures how well the shared MAST statistics scale when several search threads
+ * record into them at once.
+ *
+ * The moves are collected from random playouts of a real game, so the codes (and their
+ * hash collisions) look like the ones seen during a search. Every thread then records
+ * those moves in a random order into one shared ConcurrentActionStats, first for a
+ * warmup and then for a timed run.
+ *
+ * Usage: ActionStatsContention [game.lud] [seconds per run]
+ *
+ * @author Kiran Gupta
+ */
+public class ActionStatsContention
+{
+  private static final int[] THREAD_COUNTS = { 1, 4, 16, 32 };
+
+  private static final int NUM_PLAYOUTS = 200;              // random playouts used to collect moves
+
+  public static void main(final String[] args) throws InterruptedException
+  {
+    final String gameName = (args.length > 0) ? args[0] : "Breakthrough.lud";
+    final double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : 2.0;
+
+    final Game game = GameLoader.loadGameFromName(gameName);
+    final long[] codes = collectMoveCodes(game);
+
+    System.out.println("Game: " + game.name() + ", playout moves collected: " + codes.length);
+    System.out.println("threads, records/s, records/s per thread");
+
+    for (int numThreads : THREAD_COUNTS) {
+      // Warmup, so the JIT has compiled the record path before we time it
+      run(new ConcurrentActionStats(), codes, numThreads, seconds / 2);
+
+      final long records = run(new ConcurrentActionStats(), codes, numThreads, seconds);
+      final double perSecond = records / seconds;
+      System.out.printf("%d, %.0f, %.0f%n", numThreads, perSecond, perSecond / numThreads);
+    }
+  }
+
+  // Plays random games and returns the code of every move played (the same move may appear several times)
+  private static long[] collectMoveCodes(final Game game) {
+    final List<Long> codes = new ArrayList<Long>();
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    for (int p = 0; p < NUM_PLAYOUTS; p++) {
+      final Context context = new Context(game, new Trial(game));
+      game.start(context);
+
+      while (!context.trial().over()) {
+        final FastArrayList<Move> legalMoves = game.moves(context).moves();
+        if (legalMoves.size() == 0) {
+          game.apply(context, Game.createPassMove(context, true));
+          continue;
+        }
+
+        final Move move = legalMoves.get(random.nextInt(legalMoves.size()));
+        codes.add(MoveCodec.encode(move));
+        game.apply(context, move);
+      }
+    }
+
+    return codes.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  // Records moves from all threads into the given statistics for the given time, returns the number of records made
+  private static long run(
+    final ConcurrentActionStats stats,
+    final long[] codes,
+    final int numThreads,
+    final double seconds
+  ) throws InterruptedException {
+    final long endTime = System.nanoTime() + (long)(seconds * 1e9);
+    final long[] records = new long[numThreads];
+    final Thread[] threads = new Thread[numThreads];
+
+    for (int t = 0; t < numThreads; t++) {
+      final int threadIndex = t;
+      threads[t] = new Thread(() -> {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        long count = 0;
+
+        // Check the clock only every 1024 records, so the timing does not dominate
+        while ((count & 1023) != 0 || System.nanoTime() < endTime) {
+          stats.record(codes[random.nextInt(codes.length)], random.nextBoolean() ? 1.0 : -1.0);
+          count++;
+        }
+        records[threadIndex] = count;
+      }, "contention-t" + t);
+      threads[t].start();
+    }
+
+    long total = 0;
+    for (int t = 0; t < numThreads; t++) {
+      threads[t].join();
+      total += records[t];
+    }
+    return total;
+  }
+}
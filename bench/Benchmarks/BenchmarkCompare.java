@@ -0,0 +1,135 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two CSV result files of BenchmarkSuite, e.g. of two commits, and prints the
+ * change of every benchmark (with the same parameters) as CSV.
+ *
+ * A benchmark has regressed when its score got worse by more than the threshold and by more
+ * than the errors of both scores together, so noise is not reported as a regression.
+ * The exit code is 1 if any benchmark regressed, so it can be used to check a commit.
+ *
+ * Usage: BenchmarkCompare [baseline.csv] [current.csv] [threshold %, default 5]
+ *
+ * @author Kiran Gupta
+ */
+public class BenchmarkCompare
+{
+  public static void main(final String[] args) throws IOException
+  {
+    if (args.length < 2) {
+      System.out.println("Usage: BenchmarkCompare baseline.csv current.csv [threshold %]");
+      return;
+    }
+    final double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : 5.0;
+
+    final Map<String, Result> baseline = read(args[0]);
+    final Map<String, Result> current = read(args[1]);
+
+    System.out.println("benchmark,unit,baseline,current,change %,status");
+    int regressions = 0;
+    for (final Map.Entry<String, Result> entry : current.entrySet()) {
+      final Result now = entry.getValue();
+      final Result before = baseline.get(entry.getKey());
+      if (before == null) {
+        System.out.printf("\"%s\",%s,,%.3f,,new%n", entry.getKey(), now.unit, now.score);
+        continue;
+      }
+
+      // Lower is better for times per operation, higher is better for throughput
+      final double change = 100.0 * (now.score - before.score) / before.score;
+      final double worse = now.lowerIsBetter ? now.score - before.score : before.score - now.score;
+      final double better = -worse;
+      final double noise = now.error + before.error;
+
+      final String status;
+      if (worse > noise && 100.0 * worse / before.score > threshold) {
+        status = "regressed";
+        regressions++;
+      } else if (better > noise && 100.0 * better / before.score > threshold) {
+        status = "improved";
+      } else {
+        status = "same";
+      }
+      System.out.printf("\"%s\",%s,%.3f,%.3f,%.1f,%s%n", entry.getKey(), now.unit, before.score, now.score, change, status);
+    }
+
+    System.out.println("Regressions: " + regressions);
+    if (regressions > 0) {
+      System.exit(1);
+    }
+  }
+
+  // Reads the results of a JMH CSV file, keyed by the benchmark name and its parameters
+  private static Map<String, Result> read(final String file) throws IOException {
+    final List<String> lines = Files.readAllLines(Paths.get(file));
+    final List<String> header = fields(lines.get(0));
+    final int scoreColumn = header.indexOf("Score");
+    final int errorColumn = header.indexOf("Score Error (99.9%)");
+    final int unitColumn = header.indexOf("Unit");
+    final int modeColumn = header.indexOf("Mode");
+
+    final Map<String, Result> results = new LinkedHashMap<String, Result>();
+    for (int l = 1; l < lines.size(); l++) {
+      if (lines.get(l).trim().isEmpty())
+        continue;
+
+      final List<String> row = fields(lines.get(l));
+      final StringBuilder key = new StringBuilder(row.get(0));
+      for (int c = 0; c < header.size(); c++) {
+        if (header.get(c).startsWith("Param: ") && c < row.size() && !row.get(c).isEmpty()) {
+          key.append(' ').append(header.get(c).substring("Param: ".length())).append('=').append(row.get(c));
+        }
+      }
+
+      final Result result = new Result();
+      result.score = Double.parseDouble(row.get(scoreColumn));
+      result.error = row.get(errorColumn).equals("NaN") ? 0.0 : Double.parseDouble(row.get(errorColumn));
+      result.unit = row.get(unitColumn);
+      result.lowerIsBetter = !row.get(modeColumn).equals("thrpt");
+      results.put(key.toString(), result);
+    }
+    return results;
+  }
+
+  // Splits a CSV line, fields may be quoted
+  private static List<String> fields(final String line) {
+    final List<String> fields = new ArrayList<String>();
+    final StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+
+    for (int i = 0; i < line.length(); i++) {
+      final char c = line.charAt(i);
+      if (c == '"') {
+        if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = !quoted;
+        }
+      } else if (c == ',' && !quoted) {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  // Score of one benchmark
+  private static final class Result {
+    double score;
+    double error;
+    String unit;
+    boolean lowerIsBetter;
+  }
+}
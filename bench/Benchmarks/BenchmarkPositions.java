@@ -0,0 +1,133 @@
+package Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import game.Game;
+import main.collections.FastArrayList;
+import other.GameLoader;
+import other.context.Context;
+import other.move.Move;
+import other.trial.Trial;
+import DataStructures.ActionStatsTable;
+import DataStructures.LastGoodReplyTable;
+import DataStructures.MoveHistory;
+import DataStructures.NgramStatsTable;
+
+/**
+ * Positions and warmed-up playout tables shared by the JMH benchmarks.
+ *
+ * The positions are taken from random games with a fixed seed, so every run of a benchmark
+ * (and every commit) measures the same positions. The playout tables are filled by the
+ * playouts of the agents themselves from the start of the game, so the lookups hit and miss
+ * the way they do in a search.
+ *
+ * @author Kiran Gupta
+ */
+final class BenchmarkPositions
+{
+  private static final long SEED = 2021;                      // seed of the random games the positions come from
+
+  private static final double EPSILON = 0.2;                  // epsilon of the playouts that fill the tables
+
+  final Game game;
+
+  /** Contexts of the positions, copied before they are changed */
+  final List<Context> contexts = new ArrayList<Context>();
+
+  /** Legal moves, move history and last two moves (null if there are none) of every position */
+  final List<FastArrayList<Move>> legalMoves = new ArrayList<FastArrayList<Move>>();
+  final List<MoveHistory> histories = new ArrayList<MoveHistory>();
+  final List<Move> previousMoves = new ArrayList<Move>();
+  final List<Move> secondLastMoves = new ArrayList<Move>();
+
+  /**
+   * Loads a game and samples positions from random games of it
+   * @param gameName
+   * @param numPositions Number of positions, taken from random plies of the games
+   */
+  BenchmarkPositions(final String gameName, final int numPositions) {
+    game = GameLoader.loadGameFromName(gameName);
+    final Random random = new Random(SEED);
+
+    while (contexts.size() < numPositions) {
+      final Context context = new Context(game, new Trial(game));
+      game.start(context);
+
+      while (!context.trial().over() && contexts.size() < numPositions) {
+        final FastArrayList<Move> moves = game.moves(context).moves();
+        if (moves.size() == 0) {
+          game.apply(context, Game.createPassMove(context, true));
+          continue;
+        }
+
+        // Keep about one position in four, so they come from every phase of the game
+        if (random.nextInt(4) == 0) {
+          contexts.add(new Context(context));
+          legalMoves.add(moves);
+          histories.add(MoveHistory.of(context.trial(), MoveHistory.DEFAULT_LENGTH));
+
+          final List<Move> played = context.trial().generateCompleteMovesList();
+          previousMoves.add(played.isEmpty() ? null : played.get(played.size() - 1));
+          secondLastMoves.add((played.size() < 2) ? null : played.get(played.size() - 2));
+        }
+
+        game.apply(context, moves.get(random.nextInt(moves.size())));
+      }
+    }
+  }
+
+  /**
+   * @return Number of positions
+   */
+  int size() {
+    return contexts.size();
+  }
+
+  /**
+   * @return New context at the start of the game
+   */
+  Context startContext() {
+    final Context context = new Context(game, new Trial(game));
+    game.start(context);
+    return context;
+  }
+
+  /**
+   * @param numPlayouts
+   * @return MAST statistics filled by MAST playouts from the start of the game
+   */
+  ActionStatsTable actionStats(final int numPlayouts) {
+    final ActionStatsTable actionStats = new ActionStatsTable();
+    for (int p = 0; p < numPlayouts; p++) {
+      MAST.playout.Playout.playoutPhase(startContext(), actionStats, EPSILON);
+    }
+    return actionStats;
+  }
+
+  /**
+   * @param numPlayouts
+   * @return N-gram statistics filled by NST playouts from the start of the game
+   */
+  NgramStatsTable ngramStats(final int numPlayouts) {
+    final NgramStatsTable ngramStats = NgramStatsTable.forGame(game);
+    for (int p = 0; p < numPlayouts; p++) {
+      NST.playout.Playout.playoutPhase(startContext(), ngramStats, EPSILON);
+    }
+    return ngramStats;
+  }
+
+  /**
+   * @param numPlayouts
+   * @return Last good replies filled by UCT-LGR playouts from the start of the game
+   */
+  LastGoodReplyTable lastGoodReplies(final int numPlayouts) {
+    final LastGoodReplyTable lastGoodReplies = new LastGoodReplyTable();
+    for (int p = 0; p < numPlayouts; p++) {
+      final Context context = startContext();
+      UCTLGR.playout.Playout.playoutPhase(context, lastGoodReplies, MoveHistory.of(context.trial(), MoveHistory.DEFAULT_LENGTH));
+    }
+    return lastGoodReplies;
+  }
+}
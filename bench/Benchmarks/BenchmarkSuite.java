@@ -0,0 +1,47 @@
+package Benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the agents (HotPathBenchmark, PlayoutBenchmark and
+ * SelectActionBenchmark) and writes their results to a file, so the results of two commits
+ * can be compared with BenchmarkCompare.
+ *
+ * Usage: BenchmarkSuite [result file] [benchmark regex...]
+ * The results are written as CSV, or as JSON if the file name ends with .json. Without a
+ * regex all three benchmarks are run, on all six games of the README (which takes a while).
+ * e.g. BenchmarkSuite results/$(git rev-parse --short HEAD).csv "PlayoutBenchmark"
+ *
+ * @author Kiran Gupta
+ */
+public class BenchmarkSuite
+{
+  private static final String[] BENCHMARKS = { "HotPathBenchmark", "PlayoutBenchmark", "SelectActionBenchmark" };
+
+  public static void main(final String[] args) throws RunnerException
+  {
+    final String resultFile = (args.length > 0) ? args[0] : "jmh-result.csv";
+
+    final ChainedOptionsBuilder options = new OptionsBuilder()
+      .resultFormat(resultFile.endsWith(".json") ? ResultFormatType.JSON : ResultFormatType.CSV)
+      .result(resultFile)
+      .shouldFailOnError(true);
+
+    if (args.length > 1) {
+      for (int i = 1; i < args.length; i++) {
+        options.include(args[i]);
+      }
+    } else {
+      for (final String benchmark : BENCHMARKS) {
+        options.include(BenchmarkSuite.class.getPackage().getName() + "." + benchmark);
+      }
+    }
+
+    new Runner(options.build()).run();
+    System.out.println("Results written to " + resultFile);
+  }
+}
@@ -0,0 +1,155 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.collections.FastArrayList;
+import other.move.Move;
+import DataStructures.ActionStatsTable;
+import DataStructures.LastGoodReplyTable;
+import DataStructures.MoveCodec;
+import DataStructures.MoveHistory;
+import DataStructures.MoveKey;
+import DataStructures.NgramStatsTable;
+import LGR.LGRFunctions;
+
+/**
+ * Per-call cost of the functions the playout policies call for every move: MoveKey hashing and
+ * equality, the epsilon-greedy selection of MAST and NST, and the LGR lookup and store.
+ *
+ * Every call works on the next of a fixed set of positions taken from random games (see
+ * BenchmarkPositions), with playout tables filled by the agents' own playouts, so the cost
+ * includes the mix of small and large move lists and of table hits and misses seen in a search.
+ *
+ * This is a JMH benchmark, see BenchmarkSuite to run it with the other benchmarks.
+ *
+ * @author Kiran Gupta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1)
+public class HotPathBenchmark
+{
+  private static final int NUM_POSITIONS = 1024;              // positions cycled through by the calls
+
+  private static final int NUM_PLAYOUTS = 2000;               // playouts used to fill the playout tables
+
+  private static final double EPSILON = 0.2;                  // epsilon used by the agents in the README results
+
+  @Param({ "Breakthrough.lud", "Knightthrough.lud", "Gomoku.lud", "Othello.lud", "Connect Four.lud", "Atari Go.lud" })
+  public String gameName;
+
+  private BenchmarkPositions positions;
+
+  private ActionStatsTable actionStats;
+
+  private NgramStatsTable ngramStats;
+
+  private LastGoodReplyTable lastGoodReplies;
+
+  /** One legal move of every position, and a key of it and of an equal or a different move */
+  private Move[] moves;
+  private MoveKey[] keys;
+  private MoveKey[] otherKeys;
+
+  /** Codes of a legal move and of the last two moves of every position */
+  private long[] moveCodes;
+  private long[] previousCodes;
+  private long[] secondLastCodes;
+
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void fillTables() {
+    positions = new BenchmarkPositions(gameName, NUM_POSITIONS);
+    actionStats = positions.actionStats(NUM_PLAYOUTS);
+    ngramStats = positions.ngramStats(NUM_PLAYOUTS);
+    lastGoodReplies = positions.lastGoodReplies(NUM_PLAYOUTS);
+
+    final int size = positions.size();
+    moves = new Move[size];
+    keys = new MoveKey[size];
+    otherKeys = new MoveKey[size];
+    moveCodes = new long[size];
+    previousCodes = new long[size];
+    secondLastCodes = new long[size];
+
+    for (int i = 0; i < size; i++) {
+      final FastArrayList<Move> legalMoves = positions.legalMoves.get(i);
+      moves[i] = legalMoves.get(i % legalMoves.size());
+      keys[i] = new MoveKey(moves[i], 0);
+
+      // Half of the comparisons are between equal keys of different Move objects (generated again)
+      final Move other = (i % 2 == 0) ?
+        positions.game.moves(positions.contexts.get(i)).moves().get(i % legalMoves.size()) :
+        legalMoves.get((i + 1) % legalMoves.size());
+      otherKeys[i] = new MoveKey(other, 0);
+
+      final MoveHistory history = positions.histories.get(i);
+      moveCodes[i] = MoveCodec.encode(moves[i]);
+      previousCodes[i] = history.back(0);
+      secondLastCodes[i] = history.back(1);
+    }
+  }
+
+  @Benchmark
+  public int moveKeyHash() {
+    return new MoveKey(moves[next()], 0).hashCode();
+  }
+
+  @Benchmark
+  public boolean moveKeyEquals() {
+    final int i = next();
+    return keys[i].equals(otherKeys[i]);
+  }
+
+  @Benchmark
+  public Move mastEpsilonGreedySelect() {
+    return MAST.selection.Selection.epsilonGreedySelect(positions.legalMoves.get(next()), actionStats, EPSILON);
+  }
+
+  @Benchmark
+  public Move nstEpsilonGreedySelect() {
+    final int i = next();
+    return NST.selection.Selection.epsilonGreedySelect(
+      positions.legalMoves.get(i),
+      ngramStats,
+      EPSILON,
+      positions.previousMoves.get(i),
+      positions.secondLastMoves.get(i)
+    );
+  }
+
+  @Benchmark
+  public Move lgrSelect() {
+    final int i = next();
+    return LGRFunctions.lgrSelect(positions.legalMoves.get(i), lastGoodReplies, positions.histories.get(i));
+  }
+
+  @Benchmark
+  public boolean lgrStore() {
+    final int i = next();
+    return LGRFunctions.lgrStore(moveCodes[i], previousCodes[i], secondLastCodes[i], (i % 2 == 0) ? 1.0 : -1.0, 1.0, lastGoodReplies);
+  }
+
+  // Index of the position used by the next call
+  private int next() {
+    next = (next + 1) % moves.length;
+    return next;
+  }
+}
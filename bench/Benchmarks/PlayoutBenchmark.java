@@ -0,0 +1,118 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import other.context.Context;
+import other.trial.Trial;
+import DataStructures.ActionStatsTable;
+import DataStructures.LastGoodReplyTable;
+import DataStructures.MoveHistory;
+import DataStructures.NgramStatsTable;
+import UCT.UCTAI;
+
+/**
+ * Cost of one playout of every agent, from positions taken from random games (see
+ * BenchmarkPositions) to the end of the game, including the update of the playout tables.
+ *
+ * The tables are filled before measuring, so the playouts are biased the way they are in a
+ * search. Every call copies the next position first, which costs the same for all agents.
+ *
+ * This is a JMH benchmark, see BenchmarkSuite to run it with the other benchmarks.
+ *
+ * @author Kiran Gupta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1)
+public class PlayoutBenchmark
+{
+  private static final int NUM_POSITIONS = 256;               // positions the playouts start from
+
+  private static final int NUM_PLAYOUTS = 2000;               // playouts used to fill the playout tables
+
+  private static final double EPSILON = 0.2;                  // epsilon used by the agents in the README results
+
+  @Param({ "UCT", "UCTLGR", "MAST", "MASTLGR", "NST", "NSTLGR" })
+  public String agent;
+
+  @Param({ "Breakthrough.lud", "Knightthrough.lud", "Gomoku.lud", "Othello.lud", "Connect Four.lud", "Atari Go.lud" })
+  public String gameName;
+
+  private BenchmarkPositions positions;
+
+  /** Playout of the agent from a copy of a position, with the history of that position */
+  private PlayoutFunction playout;
+
+  private final MoveHistory playoutHistory = new MoveHistory();
+
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void fillTables() {
+    positions = new BenchmarkPositions(gameName, NUM_POSITIONS);
+
+    switch (agent) {
+      case "UCT":
+        playout = (context, history) -> UCTAI.playoutPhase(context);
+        break;
+      case "UCTLGR": {
+        final LastGoodReplyTable lastGoodReplies = positions.lastGoodReplies(NUM_PLAYOUTS);
+        playout = (context, history) -> UCTLGR.playout.Playout.playoutPhase(context, lastGoodReplies, history);
+        break;
+      }
+      case "MAST": {
+        final ActionStatsTable actionStats = positions.actionStats(NUM_PLAYOUTS);
+        playout = (context, history) -> MAST.playout.Playout.playoutPhase(context, actionStats, EPSILON);
+        break;
+      }
+      case "MASTLGR": {
+        final ActionStatsTable actionStats = positions.actionStats(NUM_PLAYOUTS);
+        final LastGoodReplyTable lastGoodReplies = positions.lastGoodReplies(NUM_PLAYOUTS);
+        playout = (context, history) -> MASTLGR.playout.Playout.playoutPhase(context, actionStats, lastGoodReplies, history, EPSILON);
+        break;
+      }
+      case "NST": {
+        final NgramStatsTable ngramStats = positions.ngramStats(NUM_PLAYOUTS);
+        playout = (context, history) -> NST.playout.Playout.playoutPhase(context, ngramStats, EPSILON);
+        break;
+      }
+      case "NSTLGR": {
+        final NgramStatsTable ngramStats = positions.ngramStats(NUM_PLAYOUTS);
+        final LastGoodReplyTable lastGoodReplies = positions.lastGoodReplies(NUM_PLAYOUTS);
+        playout = (context, history) -> NSTLGR.playout.Playout.playoutPhase(context, ngramStats, lastGoodReplies, history, EPSILON);
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Unknown agent: " + agent);
+    }
+  }
+
+  @Benchmark
+  public Trial playout() {
+    next = (next + 1) % positions.size();
+    final Context context = new Context(positions.contexts.get(next));
+    playoutHistory.copyFrom(positions.histories.get(next));
+    return playout.apply(context, playoutHistory);
+  }
+
+  // Playout phase of one agent
+  private interface PlayoutFunction {
+    Trial apply(Context context, MoveHistory history);
+  }
+}
@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import other.AI;
+import other.context.Context;
+import other.move.Move;
+
+/**
+ * Cost of a whole selectAction call of every agent, with a fixed number of iterations and no
+ * time limit, from positions taken from random games (see BenchmarkPositions).
+ *
+ * The agent is initialised again before every call, so no tree is reused and every call
+ * makes all its iterations from a new root (the playout tables start empty as well). The
+ * agents search sequentially with their default settings.
+ *
+ * This is a JMH benchmark, see BenchmarkSuite to run it with the other benchmarks.
+ *
+ * @author Kiran Gupta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class SelectActionBenchmark
+{
+  private static final int NUM_POSITIONS = 64;                // positions the searches start from
+
+  @Param({ "UCT.UCTAI", "UCTLGR.UCTLGRAI", "MAST.MASTAI", "MASTLGR.MASTLGRAI", "NST.NSTAI", "NSTLGR.NSTLGRAI" })
+  public String agent;
+
+  @Param({ "Breakthrough.lud", "Knightthrough.lud", "Gomoku.lud", "Othello.lud", "Connect Four.lud", "Atari Go.lud" })
+  public String gameName;
+
+  @Param({ "1000" })
+  public int iterations;
+
+  private BenchmarkPositions positions;
+
+  private AI ai;
+
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void createAgent() throws ReflectiveOperationException {
+    positions = new BenchmarkPositions(gameName, NUM_POSITIONS);
+    ai = (AI) Class.forName(agent).getConstructor().newInstance();
+  }
+
+  // Takes the next position, and a new agent for its player (which is not timed)
+  @Setup(Level.Invocation)
+  public void nextPosition() {
+    next = (next + 1) % positions.size();
+    ai.initAI(positions.game, positions.contexts.get(next).state().mover());
+  }
+
+  @Benchmark
+  public Move selectAction() {
+    return ai.selectAction(positions.game, new Context(positions.contexts.get(next)), -1, iterations, -1);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeAgent() {
+    ai.closeAI();
+  }
+}
@@ -0,0 +1,131 @@
+package Benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.Game;
+import other.GameLoader;
+import other.context.Context;
+import other.trial.Trial;
+import DataStructures.Node;
+import DataStructures.NodeArena;
+import DataStructures.UCTKernel;
+import UCT.UCTAI;
+
+/**
+ * Compares the UCT descent and backpropagation of the Node tree with the arena tree
+ * (NodeArena), both scored by UCTKernel, on trees grown by the same number of iterations from the same game.
+ *
+ * Both trees are grown once per trial by MCTS-UCT iterations without playouts (every
+ * iteration expands one node and backpropagates a random result), so they have the shape
+ * of a real search tree. Every benchmark call then goes down one tree with the UCT equation
+ * until it reaches a node without expanded children, and backpropagates a random result.
+ * Nothing is expanded while measuring, so only the layout of the trees is compared.
+ *
+ * This is a JMH benchmark: jmh-core and the jmh-generator-annprocess annotation processor
+ * must be on the classpath. Run it with: java org.openjdk.jmh.Main TreeLayoutBenchmark
+ *
+ * @author Kiran Gupta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class TreeLayoutBenchmark
+{
+  private static final int NUM_RESULTS = 1024;                // random results used for backpropagation
+
+  @Param({ "Breakthrough.lud" })
+  public String gameName;
+
+  @Param({ "1000000" })
+  public int treeSize;                                        // iterations used to grow each tree
+
+  @Param({ "8" })
+  public int checkpointInterval;                              // contexts kept by the Node tree, so it fits in the heap
+
+  private Game game;
+
+  private Node root;
+
+  private NodeArena arena;
+
+  private double[][] results;
+
+  private int nextResult = 0;
+
+  @Setup(Level.Trial)
+  public void growTrees() {
+    game = GameLoader.loadGameFromName(gameName);
+    final Context context = new Context(game, new Trial(game));
+    game.start(context);
+    results = randomResults(game.players().count());
+
+    root = new Node(null, null, context, false, checkpointInterval);
+    for (int i = 0; i < treeSize; i++) {
+      final Node selectedNode = UCTAI.selectionPhase(root);
+      UCTAI.backpropagateBatch(nextResult(), 1, selectedNode, game);
+    }
+
+    arena = new NodeArena(game.players().count());
+    for (int i = 0; i < treeSize; i++) {
+      final Context selectedContext = new Context(context);
+      final int selectedNode = UCTAI.selectionPhase(arena, selectedContext);
+      arena.backpropagate(selectedNode, nextResult());
+    }
+  }
+
+  @Benchmark
+  public Node nodeTree() {
+    Node current = root;
+    while (!current.children.isEmpty()) {
+      current = UCTKernel.selectChild(current.children, current.mover, current.visitCount, ThreadLocalRandom.current());
+    }
+
+    UCTAI.backpropagateBatch(nextResult(), 1, current, game);
+    return current;
+  }
+
+  @Benchmark
+  public int arenaTree() {
+    int current = NodeArena.ROOT;
+    while (arena.numExpanded(current) > 0) {
+      current = arena.selectUCT(current);
+    }
+
+    arena.backpropagate(current, nextResult());
+    return current;
+  }
+
+  // Utilities of one random winner (1) and losers (-1), for every result
+  private static double[][] randomResults(final int numPlayers) {
+    final double[][] results = new double[NUM_RESULTS][numPlayers + 1];
+    for (double[] utilities : results) {
+      final int winner = 1 + ThreadLocalRandom.current().nextInt(numPlayers);
+      for (int p = 1; p <= numPlayers; p++) {
+        utilities[p] = (p == winner) ? 1.0 : -1.0;
+      }
+    }
+    return results;
+  }
+
+  private double[] nextResult() {
+    nextResult = (nextResult + 1) % NUM_RESULTS;
+    return results[nextResult];
+  }
+}
@@ -0,0 +1,66 @@
+package DataStructures;
+
+/**
+ * Global action statistics (MAST), keyed by the packed code of a move (see MoveKey.code).
+ *
+ * @author Kiran Gupta
+ */
+public interface ActionStatsStore {
+  /**
+   * @param code
+   * @return Average score of the action, or NaN if it has not been recorded yet
+   */
+  double meanScore(final long code);
+
+  /**
+   * @param code
+   * @return Visit count of the action (0 if it has not been recorded yet)
+   */
+  double visitCount(final long code);
+
+  /**
+   * Records one visit of the action with the given utility
+   *
+   * @param code
+   * @param utility
+   */
+  void record(final long code, final double utility);
+
+  /**
+   * Starts a new epoch, in which all statistics are multiplied by the given factor
+   * The entries are decayed lazily, the next time they are accessed (see DecayEpochs),
+   * average scores do not change. Must not be called while a search is running.
+   *
+   * @param decay Factor in (0, 1], 1 keeps the statistics as they are
+   */
+  void decay(final double decay);
+
+  /**
+   * Limits the number of actions kept, actions that were not used recently are evicted to make room
+   * for new ones. Must not be called while a search is running.
+   *
+   * @param maxEntries Largest number of actions, 0 for no limit
+   * @param maxBytes Largest (estimated) memory use of the store, 0 for no limit
+   */
+  void setLimits(final int maxEntries, final long maxBytes);
+
+  /**
+   * @return Number of actions evicted since the store was last cleared
+   */
+  long evictions();
+
+  /**
+   * @return Number of actions with statistics
+   */
+  int size();
+
+  /**
+   * Removes all statistics. Must not be called while a search is running.
+   */
+  void clear();
+
+  /**
+   * @return Whether several threads may record into the store at once
+   */
+  boolean isConcurrent();
+}
@@ -0,0 +1,339 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * Global action statistics (MAST) for a single search thread, stored in an open-addressing
+ * hash table of primitives.
+ *
+ * The packed move codes, visit counts and accumulated scores live in three parallel arrays,
+ * so a lookup is one probe sequence over a long[] instead of a HashMap node, a MoveKey and
+ * an ActionStatistics object. The table doubles its arrays when it gets half full, so no
+ * object is ever allocated per action.
+ *
+ * Every slot also keeps the decay epoch in which it was last updated, and is decayed the
+ * next time its visit count is read or recorded into (see DecayEpochs).
+ *
+ * The number of actions can be limited (see setLimits). A full table evicts one action
+ * before it inserts a new one, chosen by the CLOCK policy: a hand goes round the slots,
+ * giving a second chance to the actions used since it last passed them. An evicted slot is
+ * filled by moving back the rest of its probe sequence, so the table is never rehashed.
+ *
+ * @author Kiran Gupta
+ */
+public class ActionStatsTable implements ActionStatsStore {
+  /** Marks a free slot, move codes are never negative */
+  private static final long FREE = -1L;
+
+  /** Default number of actions the table is sized for */
+  private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+  /** Bytes used by one slot, see memoryBytes */
+  private static final int SLOT_BYTES = Long.BYTES + 2 * Double.BYTES + Integer.BYTES + 1;
+
+  /** Packed move code of every slot */
+  private long[] codes;
+
+  /** Visit count of every slot (not int because we want to be able to decay) */
+  private double[] visitCounts;
+
+  /** Accumulated score of every slot */
+  private double[] accumulatedScores;
+
+  /** Decay epoch in which every slot was last brought up to date */
+  private int[] epochs;
+
+  /** Decay epochs of the statistics */
+  private final DecayEpochs decayEpochs = new DecayEpochs();
+
+  /** Whether every slot was used since the clock hand last passed it */
+  private boolean[] referenced;
+
+  /** Slot the clock hand points at */
+  private int clockHand = 0;
+
+  /** Largest number of actions kept, 0 for no limit */
+  private int maxEntries = 0;
+
+  /** Number of actions evicted since the table was last cleared */
+  private long evictions = 0;
+
+  /** Number of actions with statistics */
+  private int size = 0;
+
+  /** Number of actions at which the arrays are doubled */
+  private int resizeThreshold;
+
+  /**
+   * Constructor
+   */
+  public ActionStatsTable() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Constructor
+   * @param expectedSize Number of actions the table should hold without resizing
+   */
+  public ActionStatsTable(final int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size cannot be negative, got: " + expectedSize);
+    }
+    allocate(capacityFor(expectedSize));
+  }
+
+  @Override
+  public double meanScore(final long code) {
+    final int slot = find(code);
+    if (slot < 0)
+      return Double.NaN;
+
+    // Decay scales both sums by the same factor, so the average does not need it
+    referenced[slot] = true;
+    return accumulatedScores[slot] / visitCounts[slot];
+  }
+
+  @Override
+  public double visitCount(final long code) {
+    final int slot = find(code);
+    if (slot < 0)
+      return 0.0;
+
+    refresh(slot);
+    referenced[slot] = true;
+    return visitCounts[slot];
+  }
+
+  @Override
+  public void record(final long code, final double utility) {
+    int slot = find(code);
+
+    if (slot < 0) {
+      if (maxEntries > 0 && size >= maxEntries) {
+        evict();
+      }
+      if (size >= resizeThreshold) {
+        resize(codes.length * 2);
+      }
+
+      slot = insert(code);
+    } else {
+      refresh(slot);
+    }
+
+    visitCounts[slot] += 1.0;
+    accumulatedScores[slot] += utility;
+    referenced[slot] = true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(codes, FREE);
+    Arrays.fill(visitCounts, 0.0);
+    Arrays.fill(accumulatedScores, 0.0);
+    Arrays.fill(referenced, false);
+    size = 0;
+    clockHand = 0;
+    evictions = 0;
+    decayEpochs.clear();
+  }
+
+  @Override
+  public void decay(final double decay) {
+    decayEpochs.advance(decay);
+  }
+
+  @Override
+  public void setLimits(final int maxEntries, final long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of entries cannot be negative, got: " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of bytes cannot be negative, got: " + maxBytes);
+    }
+
+    // The table is kept at most half full, so a byte limit allows half of the slots that fit into it
+    int limit = maxEntries;
+    if (maxBytes > 0) {
+      final long slots = Long.highestOneBit(Math.max(16, maxBytes / SLOT_BYTES));
+      final int byteLimit = (int) Math.min(Integer.MAX_VALUE / 2, slots / 2);
+      limit = (limit == 0) ? byteLimit : Math.min(limit, byteLimit);
+    }
+    this.maxEntries = limit;
+
+    // A lower limit is applied straight away, and the arrays shrink if they are larger than needed
+    if (limit > 0) {
+      while (size > limit) {
+        evict();
+      }
+      if (capacityFor(limit) < codes.length) {
+        resize(capacityFor(limit));
+      }
+    }
+  }
+
+  @Override
+  public long evictions() {
+    return evictions;
+  }
+
+  @Override
+  public boolean isConcurrent() {
+    return false;
+  }
+
+  /**
+   * @return Number of slots in the table
+   */
+  public int capacity() {
+    return codes.length;
+  }
+
+  /**
+   * @return Bytes used by the arrays of the table
+   */
+  public long memoryBytes() {
+    return (long) codes.length * SLOT_BYTES;
+  }
+
+  // Applies the decay of the epochs that started since the slot was last brought up to date
+  private void refresh(final int slot) {
+    final int epoch = decayEpochs.current();
+    if (epochs[slot] != epoch) {
+      final double factor = decayEpochs.factor(epochs[slot]);
+      visitCounts[slot] *= factor;
+      accumulatedScores[slot] *= factor;
+      epochs[slot] = epoch;
+    }
+  }
+
+  // Evicts one action with the CLOCK policy: the hand clears the referenced bit of the slots
+  // it passes, and evicts the first action that was not used since the hand last passed it
+  private void evict() {
+    final int mask = codes.length - 1;
+
+    while (true) {
+      final int slot = clockHand;
+      clockHand = (clockHand + 1) & mask;
+
+      if (codes[slot] == FREE)
+        continue;
+
+      if (referenced[slot]) {
+        referenced[slot] = false;
+      } else {
+        remove(slot);
+        evictions++;
+        return;
+      }
+    }
+  }
+
+  // Frees a slot, and moves back the actions after it that can no longer be reached from their home slot
+  private void remove(int slot) {
+    final int mask = codes.length - 1;
+
+    for (int next = (slot + 1) & mask; codes[next] != FREE; next = (next + 1) & mask) {
+      // The action in next may move to slot if slot lies between its home slot and next
+      final int home = hash(codes[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        codes[slot] = codes[next];
+        visitCounts[slot] = visitCounts[next];
+        accumulatedScores[slot] = accumulatedScores[next];
+        epochs[slot] = epochs[next];
+        referenced[slot] = referenced[next];
+        slot = next;
+      }
+    }
+
+    codes[slot] = FREE;
+    visitCounts[slot] = 0.0;
+    accumulatedScores[slot] = 0.0;
+    referenced[slot] = false;
+    size--;
+  }
+
+  // Returns the slot holding the given code, or -1 if the code is not in the table
+  private int find(final long code) {
+    final int mask = codes.length - 1;
+    int slot = hash(code) & mask;
+
+    while (true) {
+      final long current = codes[slot];
+      if (current == code)
+        return slot;
+
+      if (current == FREE)
+        return -1;
+
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  // Puts the code into the first free slot of its probe sequence, returns that slot
+  private int insert(final long code) {
+    final int mask = codes.length - 1;
+    int slot = hash(code) & mask;
+
+    while (codes[slot] != FREE) {
+      slot = (slot + 1) & mask;
+    }
+
+    codes[slot] = code;
+    epochs[slot] = decayEpochs.current();
+    size++;
+    return slot;
+  }
+
+  // Moves all statistics into new arrays with the given number of slots
+  private void resize(final int newCapacity) {
+    final long[] oldCodes = codes;
+    final double[] oldVisitCounts = visitCounts;
+    final double[] oldAccumulatedScores = accumulatedScores;
+    final int[] oldEpochs = epochs;
+    final boolean[] oldReferenced = referenced;
+
+    allocate(newCapacity);
+    size = 0;
+
+    for (int i = 0; i < oldCodes.length; i++) {
+      if (oldCodes[i] != FREE) {
+        final int slot = insert(oldCodes[i]);
+        visitCounts[slot] = oldVisitCounts[i];
+        accumulatedScores[slot] = oldAccumulatedScores[i];
+        epochs[slot] = oldEpochs[i];
+        referenced[slot] = oldReferenced[i];
+      }
+    }
+  }
+
+  // Creates empty arrays with the given number of slots (a power of 2)
+  private void allocate(final int capacity) {
+    codes = new long[capacity];
+    Arrays.fill(codes, FREE);
+    visitCounts = new double[capacity];
+    accumulatedScores = new double[capacity];
+    epochs = new int[capacity];
+    referenced = new boolean[capacity];
+    clockHand = 0;
+    resizeThreshold = capacity / 2;
+  }
+
+  // Smallest power of 2 that keeps the given number of actions at most half of the slots
+  private static int capacityFor(final int expectedSize) {
+    final int needed = Math.max(16, expectedSize * 2);
+    final int capacity = Integer.highestOneBit(needed);
+    return (capacity == needed) ? capacity : capacity * 2;
+  }
+
+  // Spreads the bits of a move code over the low bits used to index the table
+  private static int hash(final long code) {
+    final long h = code * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
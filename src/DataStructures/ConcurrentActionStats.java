@@ -0,0 +1,449 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Global action statistics (MAST) that can be shared by several search threads.
+ *
+ * The actions are split over stripes by the high bits of their hashed move code. Every stripe
+ * is an open-addressing table of primitives (like ActionStatsTable) guarded by a StampedLock,
+ * so nothing is allocated or boxed per action or per call.
+ *
+ * Only the threads that record take the lock of a stripe. Reads never take it and never write
+ * the stripe's lock: they read the slot optimistically and check afterwards that no record
+ * changed the stripe meanwhile, reading again if one did. A read decays the statistics it
+ * returns without storing them, and marks the action as used for the CLOCK policy with a plain
+ * store outside the lock, a lost mark only makes the action a little more likely to be evicted.
+ *
+ * Decay and the limits are applied to every stripe. A limit on the number of actions or bytes
+ * is split exactly over the stripes (the first stripes take the remainder), and each stripe
+ * evicts its own actions with the CLOCK policy. With fewer actions than stripes, the actions
+ * of the stripes that get no share are not kept.
+ *
+ * @author Kiran Gupta
+ */
+public class ConcurrentActionStats implements ActionStatsStore {
+  /** Marks a free slot, move codes are never negative */
+  private static final long FREE = -1L;
+
+  /** Number of actions every stripe is sized for at first */
+  private static final int STRIPE_EXPECTED_SIZE = 64;
+
+  /** Bytes used by one slot, see memoryBytes */
+  private static final int SLOT_BYTES = Long.BYTES + 2 * Double.BYTES + Integer.BYTES + 1;
+
+  /** Stripes of the statistics */
+  private final Stripe[] stripes;
+
+  /** Bits of the hashed move code that pick its stripe */
+  private final int stripeBits;
+
+  /** Decay epochs of the statistics, only advanced while no search is running */
+  private final DecayEpochs decayEpochs = new DecayEpochs();
+
+  /** Number of actions evicted since the store was last cleared */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Constructor, with enough stripes for the available processors
+   */
+  public ConcurrentActionStats() {
+    this(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructor
+   * @param numStripes Number of stripes, rounded up to a power of 2 (at least 2)
+   */
+  public ConcurrentActionStats(final int numStripes) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("Number of stripes must be positive, got: " + numStripes);
+    }
+
+    stripeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.min(numStripes, 1 << 16) - 1));
+    stripes = new Stripe[1 << stripeBits];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  @Override
+  public double meanScore(final long code) {
+    final Stripe stripe = stripe(code);
+
+    while (true) {
+      final long stamp = stripe.lock.tryOptimisticRead();
+      final Slots slots = stripe.slots;
+      final int slot = slots.find(code);
+
+      // Decay scales both sums by the same factor, so the average does not need it
+      final double mean = (slot < 0) ? Double.NaN : slots.accumulatedScores[slot] / slots.visitCounts[slot];
+      if (stripe.lock.validate(stamp)) {
+        if (slot >= 0) {
+          slots.reference(slot);
+        }
+        return mean;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  @Override
+  public double visitCount(final long code) {
+    final Stripe stripe = stripe(code);
+
+    while (true) {
+      final long stamp = stripe.lock.tryOptimisticRead();
+      final Slots slots = stripe.slots;
+      final int slot = slots.find(code);
+      final double visits = (slot < 0) ? 0.0 : slots.visitCounts[slot];
+      final int epoch = (slot < 0) ? 0 : slots.epochs[slot];
+      if (stripe.lock.validate(stamp)) {
+        if (slot < 0)
+          return 0.0;
+
+        slots.reference(slot);
+        return visits * decayEpochs.factor(epoch);
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  @Override
+  public void record(final long code, final double utility) {
+    final Stripe stripe = stripe(code);
+    final long stamp = stripe.lock.writeLock();
+    try {
+      stripe.record(code, utility);
+    } finally {
+      stripe.lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (final Stripe stripe : stripes) {
+      size += stripe.size;
+    }
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (final Stripe stripe : stripes) {
+      final long stamp = stripe.lock.writeLock();
+      try {
+        stripe.clear();
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+    decayEpochs.clear();
+    evictions.set(0);
+  }
+
+  @Override
+  public void decay(final double decay) {
+    decayEpochs.advance(decay);
+  }
+
+  @Override
+  public void setLimits(final int maxEntries, final long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of entries cannot be negative, got: " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of bytes cannot be negative, got: " + maxBytes);
+    }
+
+    final int n = stripes.length;
+    for (int i = 0; i < n; i++) {
+      // Exact shares, the first stripes take the remainder, so the total never exceeds the limit
+      int limit = Integer.MAX_VALUE;
+      if (maxEntries > 0) {
+        limit = maxEntries / n + ((i < maxEntries % n) ? 1 : 0);
+      }
+      if (maxBytes > 0) {
+        // A stripe is kept at most half full, so its byte share allows half of the slots that fit into it
+        final long stripeBytes = maxBytes / n + ((i < maxBytes % n) ? 1 : 0);
+        final long slots = Long.highestOneBit(stripeBytes / SLOT_BYTES);
+        limit = (int) Math.min(limit, slots / 2);
+      }
+
+      final Stripe stripe = stripes[i];
+      final long stamp = stripe.lock.writeLock();
+      try {
+        stripe.setLimit(limit);
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  @Override
+  public long evictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public boolean isConcurrent() {
+    return true;
+  }
+
+  /**
+   * @return Number of stripes
+   */
+  public int numStripes() {
+    return stripes.length;
+  }
+
+  /**
+   * @return Bytes used by the arrays of all stripes
+   */
+  public long memoryBytes() {
+    long bytes = 0;
+    for (final Stripe stripe : stripes) {
+      bytes += (long) stripe.slots.codes.length * SLOT_BYTES;
+    }
+    return bytes;
+  }
+
+  // Returns the stripe of a move code
+  // It is picked by the high bits of a different hash than the one the stripe indexes its slots
+  // with, so the actions of one stripe still spread over all of its slots
+  private Stripe stripe(final long code) {
+    return stripes[(int) ((code * 0xC2B2AE3D27D4EB4FL) >>> (64 - stripeBits))];
+  }
+
+  // Spreads the bits of a move code over the low bits used to index the slots of a stripe
+  private static int hash(final long code) {
+    final long h = code * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  // Smallest power of 2 that keeps the given number of actions at most half of the slots
+  private static int capacityFor(final int expectedSize) {
+    final int needed = Math.max(2, expectedSize * 2);
+    final int capacity = Integer.highestOneBit(needed);
+    return (capacity == needed) ? capacity : capacity * 2;
+  }
+
+  /**
+   * Slots of a stripe. The arrays are replaced together when the stripe is resized, so a
+   * reader that got hold of the slots always sees arrays of the same length.
+   */
+  private static final class Slots {
+    /** Packed move code of every slot */
+    final long[] codes;
+
+    /** Visit count of every slot (not int because we want to be able to decay) */
+    final double[] visitCounts;
+
+    /** Accumulated score of every slot */
+    final double[] accumulatedScores;
+
+    /** Decay epoch in which every slot was last brought up to date */
+    final int[] epochs;
+
+    /** Whether every slot was used since the clock hand last passed it */
+    final boolean[] referenced;
+
+    Slots(final int capacity) {
+      codes = new long[capacity];
+      Arrays.fill(codes, FREE);
+      visitCounts = new double[capacity];
+      accumulatedScores = new double[capacity];
+      epochs = new int[capacity];
+      referenced = new boolean[capacity];
+    }
+
+    // Returns the slot holding the given code, or -1 if the code is not in the slots
+    // A reader may probe while a record moves the actions, so the probe never goes round more than once
+    int find(final long code) {
+      final int mask = codes.length - 1;
+      int slot = hash(code) & mask;
+
+      for (int probes = 0; probes <= mask; probes++) {
+        final long current = codes[slot];
+        if (current == code)
+          return slot;
+
+        if (current == FREE)
+          return -1;
+
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    // Marks the slot as used, only writing the shared array when it changes
+    void reference(final int slot) {
+      if (!referenced[slot]) {
+        referenced[slot] = true;
+      }
+    }
+  }
+
+  /**
+   * One stripe of the statistics, all fields but slots and size are only used under the write lock
+   */
+  private final class Stripe {
+    /** Taken by the threads that record, read optimistically by the others */
+    final StampedLock lock = new StampedLock();
+
+    /** Current slots, replaced when the stripe is resized */
+    volatile Slots slots = new Slots(capacityFor(STRIPE_EXPECTED_SIZE));
+
+    /** Number of actions with statistics */
+    volatile int size = 0;
+
+    /** Largest number of actions kept */
+    int maxEntries = Integer.MAX_VALUE;
+
+    /** Slot the clock hand points at */
+    int clockHand = 0;
+
+    // Records one visit of the action, inserting it if it is new
+    void record(final long code, final double utility) {
+      Slots current = slots;
+      int slot = current.find(code);
+
+      if (slot < 0) {
+        if (maxEntries == 0)
+          return;
+
+        if (size >= maxEntries) {
+          evict();
+        }
+        if (size >= current.codes.length / 2) {
+          resize(current.codes.length * 2);
+          current = slots;
+        }
+        slot = insert(current, code, decayEpochs.current());
+        size++;
+      } else {
+        refresh(current, slot);
+      }
+
+      current.visitCounts[slot] += 1.0;
+      current.accumulatedScores[slot] += utility;
+      current.referenced[slot] = true;
+    }
+
+    // Applies the decay of the epochs that started since the slot was last brought up to date
+    void refresh(final Slots current, final int slot) {
+      final int epoch = decayEpochs.current();
+      if (current.epochs[slot] != epoch) {
+        final double factor = decayEpochs.factor(current.epochs[slot]);
+        current.visitCounts[slot] *= factor;
+        current.accumulatedScores[slot] *= factor;
+        current.epochs[slot] = epoch;
+      }
+    }
+
+    // Applies a new limit, evicting actions and shrinking the slots if they are larger than needed
+    void setLimit(final int limit) {
+      maxEntries = limit;
+      if (limit == Integer.MAX_VALUE)
+        return;
+
+      while (size > limit) {
+        evict();
+      }
+      if (capacityFor(limit) < slots.codes.length) {
+        resize(capacityFor(limit));
+      }
+    }
+
+    // Removes all actions
+    void clear() {
+      final Slots current = slots;
+      Arrays.fill(current.codes, FREE);
+      Arrays.fill(current.visitCounts, 0.0);
+      Arrays.fill(current.accumulatedScores, 0.0);
+      Arrays.fill(current.referenced, false);
+      size = 0;
+      clockHand = 0;
+    }
+
+    // Evicts one action with the CLOCK policy: the hand clears the referenced bit of the slots
+    // it passes, and evicts the first action that was not used since the hand last passed it
+    void evict() {
+      final Slots current = slots;
+      final int mask = current.codes.length - 1;
+
+      while (true) {
+        final int slot = clockHand;
+        clockHand = (clockHand + 1) & mask;
+
+        if (current.codes[slot] == FREE)
+          continue;
+
+        if (current.referenced[slot]) {
+          current.referenced[slot] = false;
+        } else {
+          remove(current, slot);
+          evictions.incrementAndGet();
+          return;
+        }
+      }
+    }
+
+    // Frees a slot, and moves back the actions after it that can no longer be reached from their home slot
+    void remove(final Slots current, int slot) {
+      final int mask = current.codes.length - 1;
+
+      for (int next = (slot + 1) & mask; current.codes[next] != FREE; next = (next + 1) & mask) {
+        // The action in next may move to slot if slot lies between its home slot and next
+        final int home = hash(current.codes[next]) & mask;
+        if (((next - home) & mask) >= ((next - slot) & mask)) {
+          current.codes[slot] = current.codes[next];
+          current.visitCounts[slot] = current.visitCounts[next];
+          current.accumulatedScores[slot] = current.accumulatedScores[next];
+          current.epochs[slot] = current.epochs[next];
+          current.referenced[slot] = current.referenced[next];
+          slot = next;
+        }
+      }
+
+      current.codes[slot] = FREE;
+      current.visitCounts[slot] = 0.0;
+      current.accumulatedScores[slot] = 0.0;
+      current.referenced[slot] = false;
+      size--;
+    }
+
+    // Moves all actions into new slots with the given capacity, and publishes them to the readers
+    void resize(final int newCapacity) {
+      final Slots old = slots;
+      final Slots resized = new Slots(newCapacity);
+      for (int i = 0; i < old.codes.length; i++) {
+        if (old.codes[i] != FREE) {
+          final int slot = insert(resized, old.codes[i], old.epochs[i]);
+          resized.visitCounts[slot] = old.visitCounts[i];
+          resized.accumulatedScores[slot] = old.accumulatedScores[i];
+          resized.referenced[slot] = old.referenced[i];
+        }
+      }
+      slots = resized;
+      clockHand = 0;
+    }
+
+    // Puts the code into the first free slot of its probe sequence, returns that slot
+    int insert(final Slots current, final long code, final int epoch) {
+      final int mask = current.codes.length - 1;
+      int slot = hash(code) & mask;
+
+      while (current.codes[slot] != FREE) {
+        slot = (slot + 1) & mask;
+      }
+
+      current.codes[slot] = code;
+      current.epochs[slot] = epoch;
+      return slot;
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Last good replies for LGR-1 and LGR-2 that can be shared by several search threads, striped
+ * the same way as ConcurrentActionStats.
+ *
+ * The entries are split over stripes by the high bits of the hashed code of their previous
+ * move, so the LGR-1 and LGR-2 entries that one playout move updates are always in the same
+ * stripe, and storing a reply takes a single stripe. Every stripe is an open-addressing table
+ * of primitives (like LastGoodReplyTable) guarded by a StampedLock.
+ *
+ * Only the threads that store replies take the lock of a stripe. Reads never take it and never
+ * write the stripe's lock: they read the slot optimistically and check afterwards that no store
+ * changed the stripe meanwhile, reading again if one did. A read marks the entry as used for the
+ * CLOCK policy with a plain store outside the lock, a lost mark only makes the entry a little
+ * more likely to be evicted.
+ *
+ * A limit on the number of entries or bytes is split exactly over the stripes (the first
+ * stripes take the remainder), and each stripe evicts its own entries with the CLOCK policy.
+ * With fewer entries than stripes, the entries of the stripes that get no share are not kept.
+ *
+ * @author Kiran Gupta
+ */
+public class ConcurrentLastGoodReplies implements LastGoodReplyStore {
+  /** Code used for a move that does not exist, and for an entry without a reply */
+  public static final long NONE = MoveHistory.NONE;
+
+  /** Marks a free slot, the previous move of an entry is never NONE */
+  private static final long FREE = NONE;
+
+  /** Number of entries every stripe is sized for at first */
+  private static final int STRIPE_EXPECTED_SIZE = 64;
+
+  /** Bytes used by one slot, see memoryBytes */
+  private static final int SLOT_BYTES = 3 * Long.BYTES + 1;
+
+  /** Stripes of the replies */
+  private final Stripe[] stripes;
+
+  /** Bits of the hashed previous move that pick its stripe */
+  private final int stripeBits;
+
+  /** Number of entries evicted since the store was last cleared */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Constructor, with enough stripes for the available processors
+   */
+  public ConcurrentLastGoodReplies() {
+    this(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructor
+   * @param numStripes Number of stripes, rounded up to a power of 2 (at least 2)
+   */
+  public ConcurrentLastGoodReplies(final int numStripes) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("Number of stripes must be positive, got: " + numStripes);
+    }
+
+    stripeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.min(numStripes, 1 << 16) - 1));
+    stripes = new Stripe[1 << stripeBits];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  @Override
+  public long reply(final long previousMove, final long secondLastMove) {
+    final Stripe stripe = stripe(previousMove);
+
+    while (true) {
+      final long stamp = stripe.lock.tryOptimisticRead();
+      final Slots slots = stripe.slots;
+      final int slot = slots.find(previousMove, secondLastMove);
+      final long reply = (slot < 0) ? NONE : slots.replies[slot];
+      if (stripe.lock.validate(stamp)) {
+        if (slot >= 0) {
+          slots.reference(slot);
+        }
+        return reply;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  @Override
+  public void store(final long move, final long previousMove, final long secondLastMove, final boolean good) {
+    if (previousMove == NONE)
+      return;
+
+    final Stripe stripe = stripe(previousMove);
+    final long stamp = stripe.lock.writeLock();
+    try {
+      stripe.update(move, previousMove, NONE, good);
+
+      if (secondLastMove != NONE) {
+        stripe.update(move, previousMove, secondLastMove, good);
+      }
+    } finally {
+      stripe.lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (final Stripe stripe : stripes) {
+      size += stripe.size;
+    }
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (final Stripe stripe : stripes) {
+      final long stamp = stripe.lock.writeLock();
+      try {
+        stripe.clear();
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+    evictions.set(0);
+  }
+
+  @Override
+  public void setLimits(final int maxEntries, final long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of entries cannot be negative, got: " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of bytes cannot be negative, got: " + maxBytes);
+    }
+
+    final int n = stripes.length;
+    for (int i = 0; i < n; i++) {
+      // Exact shares, the first stripes take the remainder, so the total never exceeds the limit
+      int limit = Integer.MAX_VALUE;
+      if (maxEntries > 0) {
+        limit = maxEntries / n + ((i < maxEntries % n) ? 1 : 0);
+      }
+      if (maxBytes > 0) {
+        // A stripe is kept at most half full, so its byte share allows half of the slots that fit into it
+        final long stripeBytes = maxBytes / n + ((i < maxBytes % n) ? 1 : 0);
+        final long slots = Long.highestOneBit(stripeBytes / SLOT_BYTES);
+        limit = (int) Math.min(limit, slots / 2);
+      }
+
+      final Stripe stripe = stripes[i];
+      final long stamp = stripe.lock.writeLock();
+      try {
+        stripe.setLimit(limit);
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  @Override
+  public long evictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public long memoryBytes() {
+    long bytes = 0;
+    for (final Stripe stripe : stripes) {
+      bytes += (long) stripe.slots.previousMoves.length * SLOT_BYTES;
+    }
+    return bytes;
+  }
+
+  @Override
+  public boolean isConcurrent() {
+    return true;
+  }
+
+  /**
+   * @return Number of stripes
+   */
+  public int numStripes() {
+    return stripes.length;
+  }
+
+  // Returns the stripe of a previous move
+  // It is picked by the high bits of a different hash than the one the stripe indexes its slots
+  // with, so the entries of one stripe still spread over all of its slots
+  private Stripe stripe(final long previousMove) {
+    return stripes[(int) ((previousMove * 0xD6E8FEB86659FD93L) >>> (64 - stripeBits))];
+  }
+
+  // Spreads the bits of both move codes over the low bits used to index the slots of a stripe
+  private static int hash(final long previousMove, final long secondLastMove) {
+    long h = previousMove * 0x9E3779B97F4A7C15L;
+    h = (h ^ secondLastMove) * 0xC2B2AE3D27D4EB4FL;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  // Smallest power of 2 that keeps the given number of entries at most half of the slots
+  private static int capacityFor(final int expectedSize) {
+    final int needed = Math.max(2, expectedSize * 2);
+    final int capacity = Integer.highestOneBit(needed);
+    return (capacity == needed) ? capacity : capacity * 2;
+  }
+
+  /**
+   * Slots of a stripe. The arrays are replaced together when the stripe is resized, so a
+   * reader that got hold of the slots always sees arrays of the same length.
+   */
+  private static final class Slots {
+    /** Previous move and second-last move of every slot */
+    final long[] previousMoves;
+    final long[] secondLastMoves;
+
+    /** Reply of every slot */
+    final long[] replies;
+
+    /** Whether every slot was used since the clock hand last passed it */
+    final boolean[] referenced;
+
+    Slots(final int capacity) {
+      previousMoves = new long[capacity];
+      Arrays.fill(previousMoves, FREE);
+      secondLastMoves = new long[capacity];
+      replies = new long[capacity];
+      referenced = new boolean[capacity];
+    }
+
+    // Returns the slot holding the given entry, or -1 if the entry is not in the slots
+    // A reader may probe while a store moves the entries, so the probe never goes round more than once
+    int find(final long previousMove, final long secondLastMove) {
+      final int mask = previousMoves.length - 1;
+      int slot = hash(previousMove, secondLastMove) & mask;
+
+      for (int probes = 0; probes <= mask; probes++) {
+        final long current = previousMoves[slot];
+        if (current == FREE)
+          return -1;
+
+        if (current == previousMove && secondLastMoves[slot] == secondLastMove)
+          return slot;
+
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    // Marks the slot as used, only writing the shared array when it changes
+    void reference(final int slot) {
+      if (!referenced[slot]) {
+        referenced[slot] = true;
+      }
+    }
+  }
+
+  /**
+   * One stripe of the replies, all fields but slots and size are only used under the write lock
+   */
+  private final class Stripe {
+    /** Taken by the threads that store replies, read optimistically by the others */
+    final StampedLock lock = new StampedLock();
+
+    /** Current slots, replaced when the stripe is resized */
+    volatile Slots slots = new Slots(capacityFor(STRIPE_EXPECTED_SIZE));
+
+    /** Number of entries */
+    volatile int size = 0;
+
+    /** Largest number of entries kept */
+    int maxEntries = Integer.MAX_VALUE;
+
+    /** Slot the clock hand points at */
+    int clockHand = 0;
+
+    // Sets or forgets the reply of one entry
+    void update(final long move, final long previousMove, final long secondLastMove, final boolean good) {
+      if (good) {
+        put(previousMove, secondLastMove, move);
+      } else {
+        final Slots current = slots;
+        final int slot = current.find(previousMove, secondLastMove);
+        if (slot >= 0 && current.replies[slot] == move) {
+          current.replies[slot] = NONE;
+        }
+      }
+    }
+
+    // Sets the reply of an entry, inserting it if needed
+    void put(final long previousMove, final long secondLastMove, final long reply) {
+      Slots current = slots;
+      int slot = current.find(previousMove, secondLastMove);
+
+      if (slot < 0) {
+        if (maxEntries == 0)
+          return;
+
+        if (size >= maxEntries) {
+          evict();
+        }
+        if (size >= current.previousMoves.length / 2) {
+          resize(current.previousMoves.length * 2);
+          current = slots;
+        }
+        slot = insert(current, previousMove, secondLastMove);
+        size++;
+      }
+
+      current.replies[slot] = reply;
+      current.referenced[slot] = true;
+    }
+
+    // Applies a new limit, evicting entries and shrinking the slots if they are larger than needed
+    void setLimit(final int limit) {
+      maxEntries = limit;
+      if (limit == Integer.MAX_VALUE)
+        return;
+
+      while (size > limit) {
+        evict();
+      }
+      if (capacityFor(limit) < slots.previousMoves.length) {
+        resize(capacityFor(limit));
+      }
+    }
+
+    // Removes all entries
+    void clear() {
+      final Slots current = slots;
+      Arrays.fill(current.previousMoves, FREE);
+      Arrays.fill(current.referenced, false);
+      size = 0;
+      clockHand = 0;
+    }
+
+    // Evicts one entry with the CLOCK policy: the hand clears the referenced bit of the slots
+    // it passes, and evicts the first entry that was not used since the hand last passed it
+    void evict() {
+      final Slots current = slots;
+      final int mask = current.previousMoves.length - 1;
+
+      while (true) {
+        final int slot = clockHand;
+        clockHand = (clockHand + 1) & mask;
+
+        if (current.previousMoves[slot] == FREE)
+          continue;
+
+        if (current.referenced[slot]) {
+          current.referenced[slot] = false;
+        } else {
+          remove(current, slot);
+          evictions.incrementAndGet();
+          return;
+        }
+      }
+    }
+
+    // Frees a slot, and moves back the entries after it that can no longer be reached from their home slot
+    void remove(final Slots current, int slot) {
+      final int mask = current.previousMoves.length - 1;
+
+      for (int next = (slot + 1) & mask; current.previousMoves[next] != FREE; next = (next + 1) & mask) {
+        // The entry in next may move to slot if slot lies between its home slot and next
+        final int home = hash(current.previousMoves[next], current.secondLastMoves[next]) & mask;
+        if (((next - home) & mask) >= ((next - slot) & mask)) {
+          current.previousMoves[slot] = current.previousMoves[next];
+          current.secondLastMoves[slot] = current.secondLastMoves[next];
+          current.replies[slot] = current.replies[next];
+          current.referenced[slot] = current.referenced[next];
+          slot = next;
+        }
+      }
+
+      current.previousMoves[slot] = FREE;
+      current.referenced[slot] = false;
+      size--;
+    }
+
+    // Moves all entries into new slots with the given capacity, and publishes them to the readers
+    void resize(final int newCapacity) {
+      final Slots old = slots;
+      final Slots resized = new Slots(newCapacity);
+      for (int i = 0; i < old.previousMoves.length; i++) {
+        if (old.previousMoves[i] != FREE) {
+          final int slot = insert(resized, old.previousMoves[i], old.secondLastMoves[i]);
+          resized.replies[slot] = old.replies[i];
+          resized.referenced[slot] = old.referenced[i];
+        }
+      }
+      slots = resized;
+      clockHand = 0;
+    }
+
+    // Puts the entry into the first free slot of its probe sequence, returns that slot
+    int insert(final Slots current, final long previousMove, final long secondLastMove) {
+      final int mask = current.previousMoves.length - 1;
+      int slot = hash(previousMove, secondLastMove) & mask;
+
+      while (current.previousMoves[slot] != FREE) {
+        slot = (slot + 1) & mask;
+      }
+
+      current.previousMoves[slot] = previousMove;
+      current.secondLastMoves[slot] = secondLastMove;
+      current.replies[slot] = NONE;
+      return slot;
+    }
+  }
+}
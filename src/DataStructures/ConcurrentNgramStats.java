@@ -0,0 +1,482 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+import game.Game;
+
+/**
+ * N-gram statistics (NST) that can be shared by several search threads, striped the same way
+ * as ConcurrentActionStats.
+ *
+ * The n-grams are split over stripes by the high bits of the hashed code of their move, so the
+ * 1-, 2- and 3-gram of a move are always in the same stripe, and scoring or recording a move
+ * takes a single stripe. Every stripe is an open-addressing table of primitives (like
+ * NgramStatsTable) guarded by a StampedLock.
+ *
+ * Only the threads that record take the lock of a stripe. Reads never take it and never write
+ * the stripe's lock: they read the slots optimistically and check afterwards that no record
+ * changed the stripe meanwhile, reading again if one did. Scores are averages, which decay
+ * does not change, so reads never decay a slot. A read marks the n-grams it used for the
+ * CLOCK policy with a plain store outside the lock, a lost mark only makes the n-gram a
+ * little more likely to be evicted.
+ *
+ * Decay and the limits are applied to every stripe. A limit on the number of n-grams or bytes
+ * is split exactly over the stripes (the first stripes take the remainder), and each stripe
+ * evicts its own n-grams with the CLOCK policy. With fewer n-grams than stripes, the n-grams
+ * of the stripes that get no share are not kept.
+ *
+ * @author Kiran Gupta
+ */
+public class ConcurrentNgramStats implements NgramStatsStore {
+  /** Code used for a move that is not part of the n-gram */
+  public static final long NONE = MoveHistory.NONE;
+
+  /** Marks a free slot, the move of an n-gram is never NONE */
+  private static final long FREE = NONE;
+
+  /** Default number of n-grams the stripes are sized for together */
+  private static final int DEFAULT_EXPECTED_SIZE = 4096;
+
+  /** Bytes used by one slot, see memoryBytes */
+  private static final int SLOT_BYTES = 3 * Long.BYTES + 2 * Double.BYTES + Integer.BYTES + 1;
+
+  /** Stripes of the statistics */
+  private final Stripe[] stripes;
+
+  /** Bits of the hashed move code that pick its stripe */
+  private final int stripeBits;
+
+  /** Decay epochs of the statistics, only advanced while no search is running */
+  private final DecayEpochs decayEpochs = new DecayEpochs();
+
+  /** Number of n-grams evicted since the store was last cleared */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Constructor
+   */
+  public ConcurrentNgramStats() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Constructor, with enough stripes for the available processors
+   * @param expectedSize Number of n-grams the stripes should hold together without resizing
+   */
+  public ConcurrentNgramStats(final int expectedSize) {
+    this(expectedSize, Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructor
+   * @param expectedSize Number of n-grams the stripes should hold together without resizing
+   * @param numStripes Number of stripes, rounded up to a power of 2 (at least 2)
+   */
+  public ConcurrentNgramStats(final int expectedSize, final int numStripes) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size cannot be negative, got: " + expectedSize);
+    }
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("Number of stripes must be positive, got: " + numStripes);
+    }
+
+    stripeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.min(numStripes, 1 << 16) - 1));
+    stripes = new Stripe[1 << stripeBits];
+    final int stripeExpectedSize = (expectedSize + stripes.length - 1) / stripes.length;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe(capacityFor(stripeExpectedSize));
+    }
+  }
+
+  /**
+   * Creates a store sized for the given game, like NgramStatsTable.forGame
+   * @param game
+   * @return Empty store
+   */
+  public static ConcurrentNgramStats forGame(final Game game) {
+    return new ConcurrentNgramStats(NgramStatsTable.expectedSize(game));
+  }
+
+  @Override
+  public double score(final long move, final long previousMove, final long secondLastMove) {
+    final Stripe stripe = stripe(move);
+
+    while (true) {
+      final long stamp = stripe.lock.tryOptimisticRead();
+      final Slots slots = stripe.slots;
+
+      // The longest n-gram with statistics, a longer n-gram is only looked up if the shorter one exists
+      final int unigram = slots.find(move, NONE, NONE);
+      final int bigram = (unigram < 0 || previousMove == NONE) ? -1 : slots.find(move, previousMove, NONE);
+      final int trigram = (bigram < 0 || secondLastMove == NONE) ? -1 : slots.find(move, previousMove, secondLastMove);
+      final int slot = (trigram >= 0) ? trigram : (bigram >= 0) ? bigram : unigram;
+      final double score = (slot < 0) ? Double.NaN : slots.accumulatedScores[slot] / slots.visitCounts[slot];
+
+      if (stripe.lock.validate(stamp)) {
+        slots.reference(unigram);
+        slots.reference(bigram);
+        slots.reference(trigram);
+        return score;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  @Override
+  public void record(final long move, final long previousMove, final long secondLastMove, final double utility) {
+    final Stripe stripe = stripe(move);
+    final long stamp = stripe.lock.writeLock();
+    try {
+      stripe.add(move, NONE, NONE, utility);
+
+      if (previousMove != NONE) {
+        stripe.add(move, previousMove, NONE, utility);
+
+        if (secondLastMove != NONE) {
+          stripe.add(move, previousMove, secondLastMove, utility);
+        }
+      }
+    } finally {
+      stripe.lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (final Stripe stripe : stripes) {
+      size += stripe.size;
+    }
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (final Stripe stripe : stripes) {
+      final long stamp = stripe.lock.writeLock();
+      try {
+        stripe.clear();
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+    decayEpochs.clear();
+    evictions.set(0);
+  }
+
+  @Override
+  public void decay(final double decay) {
+    decayEpochs.advance(decay);
+  }
+
+  @Override
+  public void setLimits(final int maxEntries, final long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of entries cannot be negative, got: " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of bytes cannot be negative, got: " + maxBytes);
+    }
+
+    final int n = stripes.length;
+    for (int i = 0; i < n; i++) {
+      // Exact shares, the first stripes take the remainder, so the total never exceeds the limit
+      int limit = Integer.MAX_VALUE;
+      if (maxEntries > 0) {
+        limit = maxEntries / n + ((i < maxEntries % n) ? 1 : 0);
+      }
+      if (maxBytes > 0) {
+        // A stripe is kept at most half full, so its byte share allows half of the slots that fit into it
+        final long stripeBytes = maxBytes / n + ((i < maxBytes % n) ? 1 : 0);
+        final long slots = Long.highestOneBit(stripeBytes / SLOT_BYTES);
+        limit = (int) Math.min(limit, slots / 2);
+      }
+
+      final Stripe stripe = stripes[i];
+      final long stamp = stripe.lock.writeLock();
+      try {
+        stripe.setLimit(limit);
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  @Override
+  public long evictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public long memoryBytes() {
+    long bytes = 0;
+    for (final Stripe stripe : stripes) {
+      bytes += (long) stripe.slots.moves.length * SLOT_BYTES;
+    }
+    return bytes;
+  }
+
+  @Override
+  public boolean isConcurrent() {
+    return true;
+  }
+
+  /**
+   * @return Number of stripes
+   */
+  public int numStripes() {
+    return stripes.length;
+  }
+
+  // Returns the stripe of a move
+  // It is picked by the high bits of a different hash than the one the stripe indexes its slots
+  // with, so the n-grams of one stripe still spread over all of its slots
+  private Stripe stripe(final long move) {
+    return stripes[(int) ((move * 0xD6E8FEB86659FD93L) >>> (64 - stripeBits))];
+  }
+
+  // Spreads the bits of all three move codes over the low bits used to index the slots of a stripe
+  private static int hash(final long move, final long previousMove, final long secondLastMove) {
+    long h = move * 0x9E3779B97F4A7C15L;
+    h = (h ^ previousMove) * 0xC2B2AE3D27D4EB4FL;
+    h = (h ^ secondLastMove) * 0x165667B19E3779F9L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  // Smallest power of 2 that keeps the given number of n-grams at most half of the slots
+  private static int capacityFor(final int expectedSize) {
+    final int needed = Math.max(2, expectedSize * 2);
+    final int capacity = Integer.highestOneBit(needed);
+    return (capacity == needed) ? capacity : capacity * 2;
+  }
+
+  /**
+   * Slots of a stripe. The arrays are replaced together when the stripe is resized, so a
+   * reader that got hold of the slots always sees arrays of the same length.
+   */
+  private static final class Slots {
+    /** Move, previous move and second-last move of every slot */
+    final long[] moves;
+    final long[] previousMoves;
+    final long[] secondLastMoves;
+
+    /** Visit count of every slot (not int because we want to be able to decay) */
+    final double[] visitCounts;
+
+    /** Accumulated score of every slot */
+    final double[] accumulatedScores;
+
+    /** Decay epoch in which every slot was last brought up to date */
+    final int[] epochs;
+
+    /** Whether every slot was used since the clock hand last passed it */
+    final boolean[] referenced;
+
+    Slots(final int capacity) {
+      moves = new long[capacity];
+      Arrays.fill(moves, FREE);
+      previousMoves = new long[capacity];
+      secondLastMoves = new long[capacity];
+      visitCounts = new double[capacity];
+      accumulatedScores = new double[capacity];
+      epochs = new int[capacity];
+      referenced = new boolean[capacity];
+    }
+
+    // Returns the slot holding the given n-gram, or -1 if the n-gram is not in the slots
+    // A reader may probe while a record moves the n-grams, so the probe never goes round more than once
+    int find(final long move, final long previousMove, final long secondLastMove) {
+      final int mask = moves.length - 1;
+      int slot = hash(move, previousMove, secondLastMove) & mask;
+
+      for (int probes = 0; probes <= mask; probes++) {
+        final long current = moves[slot];
+        if (current == FREE)
+          return -1;
+
+        if (current == move && previousMoves[slot] == previousMove && secondLastMoves[slot] == secondLastMove)
+          return slot;
+
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    // Marks the slot as used (if it is one), only writing the shared array when it changes
+    void reference(final int slot) {
+      if (slot >= 0 && !referenced[slot]) {
+        referenced[slot] = true;
+      }
+    }
+  }
+
+  /**
+   * One stripe of the statistics, all fields but slots and size are only used under the write lock
+   */
+  private final class Stripe {
+    /** Taken by the threads that record, read optimistically by the others */
+    final StampedLock lock = new StampedLock();
+
+    /** Current slots, replaced when the stripe is resized */
+    volatile Slots slots;
+
+    /** Number of n-grams with statistics */
+    volatile int size = 0;
+
+    /** Largest number of n-grams kept */
+    int maxEntries = Integer.MAX_VALUE;
+
+    /** Slot the clock hand points at */
+    int clockHand = 0;
+
+    Stripe(final int capacity) {
+      slots = new Slots(capacity);
+    }
+
+    // Records one visit with the given utility for an n-gram, inserting it if it is new
+    void add(final long move, final long previousMove, final long secondLastMove, final double utility) {
+      Slots current = slots;
+      int slot = current.find(move, previousMove, secondLastMove);
+
+      if (slot < 0) {
+        if (maxEntries == 0)
+          return;
+
+        if (size >= maxEntries) {
+          evict();
+        }
+        if (size >= current.moves.length / 2) {
+          resize(current.moves.length * 2);
+          current = slots;
+        }
+        slot = insert(current, move, previousMove, secondLastMove, decayEpochs.current());
+        size++;
+      } else {
+        refresh(current, slot);
+      }
+
+      current.visitCounts[slot] += 1.0;
+      current.accumulatedScores[slot] += utility;
+      current.referenced[slot] = true;
+    }
+
+    // Applies the decay of the epochs that started since the slot was last brought up to date
+    void refresh(final Slots current, final int slot) {
+      final int epoch = decayEpochs.current();
+      if (current.epochs[slot] != epoch) {
+        final double factor = decayEpochs.factor(current.epochs[slot]);
+        current.visitCounts[slot] *= factor;
+        current.accumulatedScores[slot] *= factor;
+        current.epochs[slot] = epoch;
+      }
+    }
+
+    // Applies a new limit, evicting n-grams and shrinking the slots if they are larger than needed
+    void setLimit(final int limit) {
+      maxEntries = limit;
+      if (limit == Integer.MAX_VALUE)
+        return;
+
+      while (size > limit) {
+        evict();
+      }
+      if (capacityFor(limit) < slots.moves.length) {
+        resize(capacityFor(limit));
+      }
+    }
+
+    // Removes all n-grams
+    void clear() {
+      final Slots current = slots;
+      Arrays.fill(current.moves, FREE);
+      Arrays.fill(current.visitCounts, 0.0);
+      Arrays.fill(current.accumulatedScores, 0.0);
+      Arrays.fill(current.referenced, false);
+      size = 0;
+      clockHand = 0;
+    }
+
+    // Evicts one n-gram with the CLOCK policy: the hand clears the referenced bit of the slots
+    // it passes, and evicts the first n-gram that was not used since the hand last passed it
+    void evict() {
+      final Slots current = slots;
+      final int mask = current.moves.length - 1;
+
+      while (true) {
+        final int slot = clockHand;
+        clockHand = (clockHand + 1) & mask;
+
+        if (current.moves[slot] == FREE)
+          continue;
+
+        if (current.referenced[slot]) {
+          current.referenced[slot] = false;
+        } else {
+          remove(current, slot);
+          evictions.incrementAndGet();
+          return;
+        }
+      }
+    }
+
+    // Frees a slot, and moves back the n-grams after it that can no longer be reached from their home slot
+    void remove(final Slots current, int slot) {
+      final int mask = current.moves.length - 1;
+
+      for (int next = (slot + 1) & mask; current.moves[next] != FREE; next = (next + 1) & mask) {
+        // The n-gram in next may move to slot if slot lies between its home slot and next
+        final int home = hash(current.moves[next], current.previousMoves[next], current.secondLastMoves[next]) & mask;
+        if (((next - home) & mask) >= ((next - slot) & mask)) {
+          current.moves[slot] = current.moves[next];
+          current.previousMoves[slot] = current.previousMoves[next];
+          current.secondLastMoves[slot] = current.secondLastMoves[next];
+          current.visitCounts[slot] = current.visitCounts[next];
+          current.accumulatedScores[slot] = current.accumulatedScores[next];
+          current.epochs[slot] = current.epochs[next];
+          current.referenced[slot] = current.referenced[next];
+          slot = next;
+        }
+      }
+
+      current.moves[slot] = FREE;
+      current.visitCounts[slot] = 0.0;
+      current.accumulatedScores[slot] = 0.0;
+      current.referenced[slot] = false;
+      size--;
+    }
+
+    // Moves all n-grams into new slots with the given capacity, and publishes them to the readers
+    void resize(final int newCapacity) {
+      final Slots old = slots;
+      final Slots resized = new Slots(newCapacity);
+      for (int i = 0; i < old.moves.length; i++) {
+        if (old.moves[i] != FREE) {
+          final int slot = insert(resized, old.moves[i], old.previousMoves[i], old.secondLastMoves[i], old.epochs[i]);
+          resized.visitCounts[slot] = old.visitCounts[i];
+          resized.accumulatedScores[slot] = old.accumulatedScores[i];
+          resized.referenced[slot] = old.referenced[i];
+        }
+      }
+      slots = resized;
+      clockHand = 0;
+    }
+
+    // Puts the n-gram into the first free slot of its probe sequence, returns that slot
+    int insert(final Slots current, final long move, final long previousMove, final long secondLastMove, final int epoch) {
+      final int mask = current.moves.length - 1;
+      int slot = hash(move, previousMove, secondLastMove) & mask;
+
+      while (current.moves[slot] != FREE) {
+        slot = (slot + 1) & mask;
+      }
+
+      current.moves[slot] = move;
+      current.previousMoves[slot] = previousMove;
+      current.secondLastMoves[slot] = secondLastMove;
+      current.epochs[slot] = epoch;
+      return slot;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * Epochs used to decay playout statistics lazily (MAST and NST).
+ *
+ * Every call of advance starts a new epoch, in which all statistics are worth the decay
+ * factor times what they were worth in the previous epoch. A store keeps the epoch in which
+ * every entry was last brought up to date, and multiplies the entry by factor(epoch) the
+ * next time it accesses it. Starting an epoch is O(1), instead of a pass over the whole table.
+ *
+ * The sum of the logarithms of the factors is kept for every epoch, so an entry that was not
+ * accessed for several epochs is decayed by the product of their factors with one call of
+ * exp, and the products never underflow.
+ *
+ * @author Kiran Gupta
+ */
+public class DecayEpochs {
+  /** Sum of the logarithms of the decay factors of all epochs up to every epoch */
+  private double[] logScales = new double[64];
+
+  /** Current epoch */
+  private int epoch = 0;
+
+  /**
+   * @return Current epoch, entries updated now are stored with it
+   */
+  public int current() {
+    return epoch;
+  }
+
+  /**
+   * Starts a new epoch, in which all statistics are multiplied by the given factor
+   * A factor of 1 keeps the current epoch, so entries never have to be decayed
+   * @param decay Factor in (0, 1]
+   */
+  public void advance(final double decay) {
+    if (!(decay > 0.0 && decay <= 1.0)) {
+      throw new IllegalArgumentException("Decay factor must be in (0, 1], got: " + decay);
+    }
+    if (decay == 1.0)
+      return;
+
+    if (epoch + 1 == logScales.length) {
+      logScales = Arrays.copyOf(logScales, logScales.length * 2);
+    }
+    logScales[epoch + 1] = logScales[epoch] + Math.log(decay);
+    epoch++;
+  }
+
+  /**
+   * @param since Epoch in which an entry was last brought up to date
+   * @return Factor the entry must be multiplied by to be up to date in the current epoch
+   */
+  public double factor(final int since) {
+    return (since == epoch) ? 1.0 : Math.exp(logScales[epoch] - logScales[since]);
+  }
+
+  /**
+   * Goes back to the first epoch, when the statistics are cleared
+   */
+  public void clear() {
+    epoch = 0;
+  }
+
+  /**
+   * @return Copy with the same epochs
+   */
+  public DecayEpochs copy() {
+    final DecayEpochs copy = new DecayEpochs();
+    copy.logScales = logScales.clone();
+    copy.epoch = epoch;
+    return copy;
+  }
+}
@@ -0,0 +1,61 @@
+package DataStructures;
+
+/**
+ * Last good replies for LGR-1 and LGR-2, keyed by the (previous move, second-last move) codes
+ * of an entry (see LastGoodReplyTable).
+ *
+ * @author Kiran Gupta
+ */
+public interface LastGoodReplyStore {
+  /**
+   * @param previousMove
+   * @param secondLastMove NONE for the LGR-1 reply
+   * @return Code of the last good reply, or NONE if there is none
+   */
+  long reply(final long previousMove, final long secondLastMove);
+
+  /**
+   * Updates the LGR-1 reply to the previous move, and the LGR-2 reply to the previous two moves
+   * A winning move becomes the reply, a losing move is forgotten if it was the reply
+   *
+   * @param move
+   * @param previousMove NONE if there is no previous move
+   * @param secondLastMove NONE if there is no second-last move
+   * @param good Whether the move was played by a winner of the playout
+   */
+  void store(final long move, final long previousMove, final long secondLastMove, final boolean good);
+
+  /**
+   * Limits the number of entries kept, entries that were not used recently are evicted to make
+   * room for new ones. Must not be called while a search is running.
+   *
+   * @param maxEntries Largest number of entries, 0 for no limit
+   * @param maxBytes Largest memory use of the arrays, 0 for no limit
+   */
+  void setLimits(final int maxEntries, final long maxBytes);
+
+  /**
+   * @return Number of entries evicted since the store was last cleared
+   */
+  long evictions();
+
+  /**
+   * @return Number of entries (LGR-1 and LGR-2)
+   */
+  int size();
+
+  /**
+   * @return Bytes used by the arrays of the store
+   */
+  long memoryBytes();
+
+  /**
+   * Removes all replies. Must not be called while a search is running.
+   */
+  void clear();
+
+  /**
+   * @return Whether several threads may store replies at once
+   */
+  boolean isConcurrent();
+}
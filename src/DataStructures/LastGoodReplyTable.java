@@ -0,0 +1,322 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * Last good replies for LGR-1 and LGR-2, stored in a single open-addressing hash table of
+ * primitives.
+ *
+ * The key of an entry is the (previous move, second-last move) pair of packed move codes
+ * (see MoveCodec), where the second-last move is NONE for LGR-1 entries, and the value is
+ * the code of the reply. Looking up a reply is one probe sequence, and no object is ever
+ * allocated per entry.
+ *
+ * The number of entries can be limited (see setLimits). A full table evicts one entry
+ * before it inserts a new one, chosen by the CLOCK policy: a hand goes round the slots,
+ * giving a second chance to the entries used since it last passed them. An evicted slot is
+ * filled by moving back the rest of its probe sequence, so the table is never rehashed.
+ *
+ * @author Kiran Gupta
+ */
+public class LastGoodReplyTable implements LastGoodReplyStore {
+  /** Code used for a move that does not exist, and for an entry without a reply */
+  public static final long NONE = MoveHistory.NONE;
+
+  /** Marks a free slot, the previous move of an entry is never NONE */
+  private static final long FREE = NONE;
+
+  /** Default number of entries the table is sized for */
+  private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+  /** Bytes used by one slot, see memoryBytes */
+  private static final int SLOT_BYTES = 3 * Long.BYTES + 1;
+
+  /** Previous move and second-last move of every slot */
+  private long[] previousMoves;
+  private long[] secondLastMoves;
+
+  /** Reply of every slot */
+  private long[] replies;
+
+  /** Whether every slot was used since the clock hand last passed it */
+  private boolean[] referenced;
+
+  /** Slot the clock hand points at */
+  private int clockHand = 0;
+
+  /** Largest number of entries kept, 0 for no limit */
+  private int maxEntries = 0;
+
+  /** Number of entries evicted since the table was last cleared */
+  private long evictions = 0;
+
+  /** Number of entries */
+  private int size = 0;
+
+  /** Number of entries at which the arrays are doubled */
+  private int resizeThreshold;
+
+  /**
+   * Constructor
+   */
+  public LastGoodReplyTable() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Constructor
+   * @param expectedSize Number of entries the table should hold without resizing
+   */
+  public LastGoodReplyTable(final int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size cannot be negative, got: " + expectedSize);
+    }
+    allocate(capacityFor(expectedSize));
+  }
+
+  @Override
+  public long reply(final long previousMove, final long secondLastMove) {
+    final int slot = find(previousMove, secondLastMove);
+    if (slot < 0)
+      return NONE;
+
+    referenced[slot] = true;
+    return replies[slot];
+  }
+
+  @Override
+  public void store(final long move, final long previousMove, final long secondLastMove, final boolean good) {
+    if (previousMove == NONE)
+      return;
+
+    update(move, previousMove, NONE, good);
+
+    if (secondLastMove != NONE) {
+      update(move, previousMove, secondLastMove, good);
+    }
+  }
+
+  /**
+   * @return Deep copy of the table
+   */
+  public LastGoodReplyTable copy() {
+    final LastGoodReplyTable copy = new LastGoodReplyTable(0);
+    copy.previousMoves = previousMoves.clone();
+    copy.secondLastMoves = secondLastMoves.clone();
+    copy.replies = replies.clone();
+    copy.referenced = referenced.clone();
+    copy.clockHand = clockHand;
+    copy.maxEntries = maxEntries;
+    copy.size = size;
+    copy.resizeThreshold = resizeThreshold;
+    return copy;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(previousMoves, FREE);
+    Arrays.fill(referenced, false);
+    size = 0;
+    clockHand = 0;
+    evictions = 0;
+  }
+
+  @Override
+  public void setLimits(final int maxEntries, final long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of entries cannot be negative, got: " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of bytes cannot be negative, got: " + maxBytes);
+    }
+
+    // The table is kept at most half full, so a byte limit allows half of the slots that fit into it
+    int limit = maxEntries;
+    if (maxBytes > 0) {
+      final long slots = Long.highestOneBit(Math.max(16, maxBytes / SLOT_BYTES));
+      final int byteLimit = (int) Math.min(Integer.MAX_VALUE / 2, slots / 2);
+      limit = (limit == 0) ? byteLimit : Math.min(limit, byteLimit);
+    }
+    this.maxEntries = limit;
+
+    if (limit > 0) {
+      while (size > limit) {
+        evict();
+      }
+      if (capacityFor(limit) < previousMoves.length) {
+        resize(capacityFor(limit));
+      }
+    }
+  }
+
+  @Override
+  public long evictions() {
+    return evictions;
+  }
+
+  @Override
+  public long memoryBytes() {
+    return (long) previousMoves.length * SLOT_BYTES;
+  }
+
+  @Override
+  public boolean isConcurrent() {
+    return false;
+  }
+
+  // Sets or forgets the reply of one entry
+  private void update(final long move, final long previousMove, final long secondLastMove, final boolean good) {
+    if (good) {
+      put(previousMove, secondLastMove, move);
+    } else {
+      final int slot = find(previousMove, secondLastMove);
+      if (slot >= 0 && replies[slot] == move) {
+        replies[slot] = NONE;
+      }
+    }
+  }
+
+  // Sets the reply of an entry, inserting it if needed
+  private void put(final long previousMove, final long secondLastMove, final long reply) {
+    int slot = find(previousMove, secondLastMove);
+
+    if (slot < 0) {
+      if (maxEntries > 0 && size >= maxEntries) {
+        evict();
+      }
+      if (size >= resizeThreshold) {
+        resize(previousMoves.length * 2);
+      }
+
+      slot = insert(previousMove, secondLastMove);
+    }
+
+    replies[slot] = reply;
+    referenced[slot] = true;
+  }
+
+  // Evicts one entry with the CLOCK policy: the hand clears the referenced bit of the slots
+  // it passes, and evicts the first entry that was not used since the hand last passed it
+  private void evict() {
+    final int mask = previousMoves.length - 1;
+
+    while (true) {
+      final int slot = clockHand;
+      clockHand = (clockHand + 1) & mask;
+
+      if (previousMoves[slot] == FREE)
+        continue;
+
+      if (referenced[slot]) {
+        referenced[slot] = false;
+      } else {
+        remove(slot);
+        evictions++;
+        return;
+      }
+    }
+  }
+
+  // Frees a slot, and moves back the entries after it that can no longer be reached from their home slot
+  private void remove(int slot) {
+    final int mask = previousMoves.length - 1;
+
+    for (int next = (slot + 1) & mask; previousMoves[next] != FREE; next = (next + 1) & mask) {
+      // The entry in next may move to slot if slot lies between its home slot and next
+      final int home = hash(previousMoves[next], secondLastMoves[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        previousMoves[slot] = previousMoves[next];
+        secondLastMoves[slot] = secondLastMoves[next];
+        replies[slot] = replies[next];
+        referenced[slot] = referenced[next];
+        slot = next;
+      }
+    }
+
+    previousMoves[slot] = FREE;
+    referenced[slot] = false;
+    size--;
+  }
+
+  // Returns the slot holding the given entry, or -1 if the entry is not in the table
+  private int find(final long previousMove, final long secondLastMove) {
+    final int mask = previousMoves.length - 1;
+    int slot = hash(previousMove, secondLastMove) & mask;
+
+    while (true) {
+      final long current = previousMoves[slot];
+      if (current == FREE)
+        return -1;
+
+      if (current == previousMove && secondLastMoves[slot] == secondLastMove)
+        return slot;
+
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  // Puts the entry into the first free slot of its probe sequence, returns that slot
+  private int insert(final long previousMove, final long secondLastMove) {
+    final int mask = previousMoves.length - 1;
+    int slot = hash(previousMove, secondLastMove) & mask;
+
+    while (previousMoves[slot] != FREE) {
+      slot = (slot + 1) & mask;
+    }
+
+    previousMoves[slot] = previousMove;
+    secondLastMoves[slot] = secondLastMove;
+    replies[slot] = NONE;
+    size++;
+    return slot;
+  }
+
+  // Moves all entries into new arrays with the given number of slots
+  private void resize(final int newCapacity) {
+    final long[] oldPreviousMoves = previousMoves;
+    final long[] oldSecondLastMoves = secondLastMoves;
+    final long[] oldReplies = replies;
+    final boolean[] oldReferenced = referenced;
+
+    allocate(newCapacity);
+    size = 0;
+
+    for (int i = 0; i < oldPreviousMoves.length; i++) {
+      if (oldPreviousMoves[i] != FREE) {
+        final int slot = insert(oldPreviousMoves[i], oldSecondLastMoves[i]);
+        replies[slot] = oldReplies[i];
+        referenced[slot] = oldReferenced[i];
+      }
+    }
+  }
+
+  // Creates empty arrays with the given number of slots (a power of 2)
+  private void allocate(final int capacity) {
+    previousMoves = new long[capacity];
+    Arrays.fill(previousMoves, FREE);
+    secondLastMoves = new long[capacity];
+    replies = new long[capacity];
+    referenced = new boolean[capacity];
+    clockHand = 0;
+    resizeThreshold = capacity / 2;
+  }
+
+  // Smallest power of 2 that keeps the given number of entries at most half of the slots
+  private static int capacityFor(final int expectedSize) {
+    final int needed = Math.max(16, expectedSize * 2);
+    final int capacity = Integer.highestOneBit(needed);
+    return (capacity == needed) ? capacity : capacity * 2;
+  }
+
+  // Spreads the bits of both move codes over the low bits used to index the table
+  private static int hash(final long previousMove, final long secondLastMove) {
+    long h = previousMove * 0x9E3779B97F4A7C15L;
+    h = (h ^ secondLastMove) * 0xC2B2AE3D27D4EB4FL;
+    return (int) (h ^ (h >>> 32));
+  }
+}
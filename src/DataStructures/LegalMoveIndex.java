@@ -0,0 +1,100 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+import other.move.Move;
+import main.collections.FastArrayList;
+
+/**
+ * Hashed index of the legal moves of one step, from packed move code (see MoveCodec) to
+ * the move in the list. Once the moves are indexed, checking whether a move is legal takes
+ * constant time instead of a Move.equals scan over the whole list.
+ *
+ * The index is meant to be reused for every step of a search thread: slots are marked with
+ * the number of the step they were written in, so indexing a new list never has to clear
+ * the arrays.
+ *
+ * @author Kiran Gupta
+ */
+public class LegalMoveIndex {
+  /** Code of the move in every slot */
+  private long[] codes = new long[64];
+
+  /** Position of the move in the list, for every slot */
+  private int[] positions = new int[64];
+
+  /** Step in which every slot was written, slots of older steps are free */
+  private int[] steps = new int[64];
+
+  /** Number of the current step */
+  private int step = 0;
+
+  /** Moves that are currently indexed */
+  private FastArrayList<Move> moves = null;
+
+  /**
+   * Indexes the given legal moves, replacing the moves of the previous step
+   * @param legalMoves
+   */
+  public void index(final FastArrayList<Move> legalMoves) {
+    moves = legalMoves;
+
+    if (codes.length < legalMoves.size() * 2) {
+      final int capacity = Integer.highestOneBit(legalMoves.size() * 4 - 1);
+      codes = new long[capacity];
+      positions = new int[capacity];
+      steps = new int[capacity];
+      step = 0;
+    }
+
+    // Start over once the step counter wraps around, so old slots can never look current
+    if (++step == Integer.MAX_VALUE) {
+      Arrays.fill(steps, 0);
+      step = 1;
+    }
+
+    final int mask = codes.length - 1;
+    for (int i = 0; i < legalMoves.size(); i++) {
+      final long code = MoveCodec.encode(legalMoves.get(i));
+      int slot = hash(code) & mask;
+
+      while (steps[slot] == step) {
+        if (codes[slot] == code)
+          break;
+
+        slot = (slot + 1) & mask;
+      }
+
+      // Equal codes keep the first move of the list
+      if (steps[slot] != step) {
+        steps[slot] = step;
+        codes[slot] = code;
+        positions[slot] = i;
+      }
+    }
+  }
+
+  /**
+   * @param code
+   * @return The indexed legal move with the given code, or null if it is not legal
+   */
+  public Move get(final long code) {
+    final int mask = codes.length - 1;
+    int slot = hash(code) & mask;
+
+    while (steps[slot] == step) {
+      if (codes[slot] == code)
+        return moves.get(positions[slot]);
+
+      slot = (slot + 1) & mask;
+    }
+
+    return null;
+  }
+
+  // Spreads the bits of a move code over the low bits used to index the table
+  private static int hash(final long code) {
+    final long h = code * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
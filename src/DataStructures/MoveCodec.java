@@ -0,0 +1,84 @@
+package DataStructures;
+import other.move.Move;
+
+/**
+ * Packs a move into a single long, so statistics tables can be keyed by a primitive
+ * instead of a MoveKey allocated for every lookup.
+ *
+ * Two moves get the same code when MoveKey.equals considers them equal: the from/to sites
+ * are compared in either order if the move is not oriented, together with the state and
+ * the mover. Pass and swap moves are flagged so they never share a code with a regular move.
+ *
+ * Layout, from the lowest bit: mover (6 bits), state + 1 (12 bits), to + 1 (21 bits),
+ * from + 1 (21 bits), then the oriented, pass and swap flags. The top bit is never set,
+ * so every code is non-negative. Sites beyond 2^21, states beyond 2^12 and movers beyond
+ * 2^6 share codes with smaller values.
+ *
+ * @author Kiran Gupta
+ */
+public final class MoveCodec {
+  private static final int MOVER_BITS = 6;
+  private static final int STATE_BITS = 12;
+  private static final int SITE_BITS = 21;
+
+  private static final int STATE_SHIFT = MOVER_BITS;
+  private static final int TO_SHIFT = STATE_SHIFT + STATE_BITS;
+  private static final int FROM_SHIFT = TO_SHIFT + SITE_BITS;
+  private static final int ORIENTED_SHIFT = FROM_SHIFT + SITE_BITS;
+
+  private static final long MOVER_MASK = (1L << MOVER_BITS) - 1;
+  private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+  private static final long SITE_MASK = (1L << SITE_BITS) - 1;
+
+  /** Set for moves with an orientation (from and to are not interchangeable) */
+  public static final long ORIENTED = 1L << ORIENTED_SHIFT;
+
+  /** Set for pass moves */
+  public static final long PASS = 1L << (ORIENTED_SHIFT + 1);
+
+  /** Set for swap moves */
+  public static final long SWAP = 1L << (ORIENTED_SHIFT + 2);
+
+  private MoveCodec() {
+  }
+
+  /**
+   * @param move
+   * @return Packed code of the move
+   */
+  public static long encode(final Move move) {
+    int from = move.fromNonDecision();
+    int to = move.toNonDecision();
+
+    long flags = 0L;
+    if (move.isOrientedMove()) {
+      flags |= ORIENTED;
+    } else if (from > to) {
+      // Not oriented, so the sites are stored smallest first
+      final int swap = from;
+      from = to;
+      to = swap;
+    }
+    if (move.isPass()) {
+      flags |= PASS;
+    }
+    if (move.isSwap()) {
+      flags |= SWAP;
+    }
+
+    // +1 so that -1 (no site / no state) is packed as 0
+    return flags
+      | (((long) from + 1) & SITE_MASK) << FROM_SHIFT
+      | (((long) to + 1) & SITE_MASK) << TO_SHIFT
+      | (((long) move.stateNonDecision() + 1) & STATE_MASK) << STATE_SHIFT
+      | ((long) move.mover() & MOVER_MASK);
+  }
+
+  /**
+   * @param code
+   * @return Mover of the packed move
+   */
+  public static int mover(final long code) {
+    return (int) (code & MOVER_MASK);
+  }
+}
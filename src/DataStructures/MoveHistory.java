@@ -0,0 +1,116 @@
+package DataStructures;
+
+import java.util.List;
+
+import other.move.Move;
+import other.trial.Trial;
+
+/**
+ * Rolling history of the codes (see MoveCodec) of the last moves played.
+ *
+ * The search builds the history of the root once, and then pushes every move it plays
+ * during selection and playout, so reading the last moves costs constant time instead of
+ * generating the complete moves list of the trial at every step.
+ *
+ * @author Kiran Gupta
+ */
+public class MoveHistory {
+  /** Code returned for a move that is not in the history */
+  public static final long NONE = -1L;
+
+  /** Number of moves remembered by default, enough for LGR-2 and 3-grams */
+  public static final int DEFAULT_LENGTH = 2;
+
+  /** Ring buffer of move codes, its length is a power of 2 */
+  private final long[] codes;
+
+  /** Number of moves pushed so far */
+  private int count = 0;
+
+  /**
+   * Constructor
+   */
+  public MoveHistory() {
+    this(DEFAULT_LENGTH);
+  }
+
+  /**
+   * Constructor
+   * @param length Number of moves to remember
+   */
+  public MoveHistory(final int length) {
+    if (length < 1) {
+      throw new IllegalArgumentException("History length must be at least 1, got: " + length);
+    }
+    codes = new long[Integer.highestOneBit(length * 2 - 1)];
+  }
+
+  /**
+   * Creates the history of the moves played so far in a trial
+   * @param trial
+   * @param length Number of moves to remember
+   * @return History ending with the last move of the trial
+   */
+  public static MoveHistory of(final Trial trial, final int length) {
+    final MoveHistory history = new MoveHistory(length);
+    final List<Move> movesList = trial.generateCompleteMovesList();
+
+    for (int i = Math.max(0, movesList.size() - history.codes.length); i < movesList.size(); i++) {
+      history.push(movesList.get(i));
+    }
+    return history;
+  }
+
+  /**
+   * Adds a move that was just played
+   * @param code
+   */
+  public void push(final long code) {
+    codes[count & (codes.length - 1)] = code;
+    count++;
+  }
+
+  /**
+   * Adds a move that was just played
+   * @param move
+   */
+  public void push(final Move move) {
+    push(MoveCodec.encode(move));
+  }
+
+  /**
+   * @param movesAgo 0 for the last move, 1 for the second-last move, ...
+   * @return Code of the move, or NONE if the history does not go back that far
+   */
+  public long back(final int movesAgo) {
+    if (movesAgo >= count || movesAgo >= codes.length)
+      return NONE;
+
+    return codes[(count - 1 - movesAgo) & (codes.length - 1)];
+  }
+
+  /**
+   * @return Code of the last move, or NONE if no move has been played
+   */
+  public long last() {
+    return back(0);
+  }
+
+  /**
+   * Makes this history equal to another one of the same length
+   * @param other
+   */
+  public void copyFrom(final MoveHistory other) {
+    System.arraycopy(other.codes, 0, codes, 0, codes.length);
+    count = other.count;
+  }
+
+  /**
+   * @return Copy of the history
+   */
+  public MoveHistory copy() {
+    final MoveHistory copy = new MoveHistory(codes.length);
+    copy.copyFrom(this);
+    return copy;
+  }
+}
@@ -12,6 +12,9 @@ public class MoveKey {
     
   /** Cached hashCode */
   private final int cachedHashCode;
+
+  /** Packed code of the move (see MoveCodec), equal for moves that are equal as keys */
+  public final long code;
     
   /**
    * Constructor
@@ -42,6 +45,7 @@ public class MoveKey {
     result = prime * result + move.mover();
     
     cachedHashCode = result;
+    code = MoveCodec.encode(move);
   }
 
   @Override
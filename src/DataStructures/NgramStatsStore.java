@@ -0,0 +1,74 @@
+package DataStructures;
+
+/**
+ * N-gram statistics (NST), keyed by the (move, previous move, second-last move) codes of an
+ * n-gram (see NgramStatsTable).
+ *
+ * @author Kiran Gupta
+ */
+public interface NgramStatsStore {
+  /**
+   * Score of a move for NST: the average of the longest n-gram with statistics,
+   * checking the 1-gram first, then the 2-gram and then the 3-gram
+   *
+   * @param move
+   * @param previousMove NONE if there is no previous move
+   * @param secondLastMove NONE if there is no second-last move
+   * @return Average score, or NaN if the move has no statistics at all
+   */
+  double score(final long move, final long previousMove, final long secondLastMove);
+
+  /**
+   * Records one visit with the given utility for the 1-gram of the move,
+   * and for the 2-gram and 3-gram if the previous moves exist
+   *
+   * @param move
+   * @param previousMove NONE if there is no previous move
+   * @param secondLastMove NONE if there is no second-last move
+   * @param utility
+   */
+  void record(final long move, final long previousMove, final long secondLastMove, final double utility);
+
+  /**
+   * Starts a new epoch, in which all statistics are multiplied by the given factor
+   * The n-grams are decayed lazily, the next time they are recorded into (see DecayEpochs).
+   * Must not be called while a search is running.
+   *
+   * @param decay Factor in (0, 1], 1 keeps the statistics as they are
+   */
+  void decay(final double decay);
+
+  /**
+   * Limits the number of n-grams kept, n-grams that were not used recently are evicted to make
+   * room for new ones. Must not be called while a search is running.
+   *
+   * @param maxEntries Largest number of n-grams, 0 for no limit
+   * @param maxBytes Largest memory use of the arrays, 0 for no limit
+   */
+  void setLimits(final int maxEntries, final long maxBytes);
+
+  /**
+   * @return Number of n-grams evicted since the store was last cleared
+   */
+  long evictions();
+
+  /**
+   * @return Number of n-grams with statistics
+   */
+  int size();
+
+  /**
+   * @return Bytes used by the arrays of the store
+   */
+  long memoryBytes();
+
+  /**
+   * Removes all statistics. Must not be called while a search is running.
+   */
+  void clear();
+
+  /**
+   * @return Whether several threads may record into the store at once
+   */
+  boolean isConcurrent();
+}
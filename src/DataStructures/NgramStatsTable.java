@@ -0,0 +1,421 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+import game.Game;
+
+/**
+ * N-gram statistics (NST) for 1-, 2- and 3-grams, stored in a single open-addressing hash
+ * table of primitives.
+ *
+ * An n-gram is the tuple (move, previous move, second-last move) of packed move codes
+ * (see MoveCodec), with NONE for the moves a shorter n-gram does not have. The whole tuple
+ * is hashed straight into the table, so looking up an n-gram of any order is one probe
+ * sequence, instead of walking a trie of HashMaps. The table doubles its arrays when it
+ * gets half full, so no object is ever allocated per n-gram.
+ *
+ * Every slot also keeps the decay epoch in which it was last updated, and is decayed the
+ * next time it is recorded into (see DecayEpochs). Scores are averages, which decay does
+ * not change, so lookups never have to decay a slot.
+ *
+ * The number of n-grams can be limited (see setLimits). A full table evicts one n-gram
+ * before it inserts a new one, chosen by the CLOCK policy: a hand goes round the slots,
+ * giving a second chance to the n-grams used since it last passed them. An evicted slot is
+ * filled by moving back the rest of its probe sequence, so the table is never rehashed.
+ *
+ * @author Kiran Gupta
+ */
+public class NgramStatsTable implements NgramStatsStore {
+  /** Code used for a move that is not part of the n-gram */
+  public static final long NONE = MoveHistory.NONE;
+
+  /** Marks a free slot, the move of an n-gram is never NONE */
+  private static final long FREE = NONE;
+
+  /** Default number of n-grams the table is sized for */
+  private static final int DEFAULT_EXPECTED_SIZE = 4096;
+
+  /** Largest number of n-grams a table is sized for up front, larger tables grow while searching */
+  private static final int MAX_EXPECTED_SIZE = 1 << 20;
+
+  /** Bytes used by one slot, see memoryBytes */
+  private static final int SLOT_BYTES = 3 * Long.BYTES + 2 * Double.BYTES + Integer.BYTES + 1;
+
+  /** Move, previous move and second-last move of every slot */
+  private long[] moves;
+  private long[] previousMoves;
+  private long[] secondLastMoves;
+
+  /** Visit count of every slot (not int because we want to be able to decay) */
+  private double[] visitCounts;
+
+  /** Accumulated score of every slot */
+  private double[] accumulatedScores;
+
+  /** Decay epoch in which every slot was last brought up to date */
+  private int[] epochs;
+
+  /** Decay epochs of the statistics */
+  private DecayEpochs decayEpochs = new DecayEpochs();
+
+  /** Whether every slot was used since the clock hand last passed it */
+  private boolean[] referenced;
+
+  /** Slot the clock hand points at */
+  private int clockHand = 0;
+
+  /** Largest number of n-grams kept, 0 for no limit */
+  private int maxEntries = 0;
+
+  /** Number of n-grams evicted since the table was last cleared */
+  private long evictions = 0;
+
+  /** Number of n-grams with statistics */
+  private int size = 0;
+
+  /** Number of n-grams at which the arrays are doubled */
+  private int resizeThreshold;
+
+  /**
+   * Constructor
+   */
+  public NgramStatsTable() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Constructor
+   * @param expectedSize Number of n-grams the table should hold without resizing
+   */
+  public NgramStatsTable(final int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size cannot be negative, got: " + expectedSize);
+    }
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * Creates a table sized for the given game: a move is roughly a pair of sites played by
+   * one of the players, and there are several 2-grams and 3-grams for every 1-gram
+   * @param game
+   * @return Empty table
+   */
+  public static NgramStatsTable forGame(final Game game) {
+    return new NgramStatsTable(expectedSize(game));
+  }
+
+  // Number of n-grams a table for the given game is sized for, also used by ConcurrentNgramStats
+  static int expectedSize(final Game game) {
+    final long sites = game.board().numSites();
+    final long expectedSize = sites * sites * game.players().count();
+    return (int) Math.max(DEFAULT_EXPECTED_SIZE, Math.min(MAX_EXPECTED_SIZE, expectedSize));
+  }
+
+  @Override
+  public double score(final long move, final long previousMove, final long secondLastMove) {
+    int slot = find(move, NONE, NONE);
+    if (slot < 0)
+      return Double.NaN;
+
+    double score = accumulatedScores[slot] / visitCounts[slot];
+    referenced[slot] = true;
+
+    if (previousMove != NONE) {
+      slot = find(move, previousMove, NONE);
+
+      if (slot >= 0) {
+        score = accumulatedScores[slot] / visitCounts[slot];
+        referenced[slot] = true;
+
+        if (secondLastMove != NONE) {
+          slot = find(move, previousMove, secondLastMove);
+          if (slot >= 0) {
+            score = accumulatedScores[slot] / visitCounts[slot];
+            referenced[slot] = true;
+          }
+        }
+      }
+    }
+
+    return score;
+  }
+
+  @Override
+  public void record(final long move, final long previousMove, final long secondLastMove, final double utility) {
+    add(move, NONE, NONE, 1.0, utility);
+
+    if (previousMove != NONE) {
+      add(move, previousMove, NONE, 1.0, utility);
+
+      if (secondLastMove != NONE) {
+        add(move, previousMove, secondLastMove, 1.0, utility);
+      }
+    }
+  }
+
+  /**
+   * @return Deep copy of the table
+   */
+  public NgramStatsTable copy() {
+    final NgramStatsTable copy = new NgramStatsTable(0);
+    copy.moves = moves.clone();
+    copy.previousMoves = previousMoves.clone();
+    copy.secondLastMoves = secondLastMoves.clone();
+    copy.visitCounts = visitCounts.clone();
+    copy.accumulatedScores = accumulatedScores.clone();
+    copy.epochs = epochs.clone();
+    copy.decayEpochs = decayEpochs.copy();
+    copy.referenced = referenced.clone();
+    copy.clockHand = clockHand;
+    copy.maxEntries = maxEntries;
+    copy.size = size;
+    copy.resizeThreshold = resizeThreshold;
+    return copy;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(moves, FREE);
+    Arrays.fill(visitCounts, 0.0);
+    Arrays.fill(accumulatedScores, 0.0);
+    Arrays.fill(referenced, false);
+    size = 0;
+    clockHand = 0;
+    evictions = 0;
+    decayEpochs.clear();
+  }
+
+  @Override
+  public void setLimits(final int maxEntries, final long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of entries cannot be negative, got: " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of bytes cannot be negative, got: " + maxBytes);
+    }
+
+    // The table is kept at most half full, so a byte limit allows half of the slots that fit into it
+    int limit = maxEntries;
+    if (maxBytes > 0) {
+      final long slots = Long.highestOneBit(Math.max(16, maxBytes / SLOT_BYTES));
+      final int byteLimit = (int) Math.min(Integer.MAX_VALUE / 2, slots / 2);
+      limit = (limit == 0) ? byteLimit : Math.min(limit, byteLimit);
+    }
+    this.maxEntries = limit;
+
+    if (limit > 0) {
+      while (size > limit) {
+        evict();
+      }
+      if (capacityFor(limit) < moves.length) {
+        resize(capacityFor(limit));
+      }
+    }
+  }
+
+  @Override
+  public long evictions() {
+    return evictions;
+  }
+
+  @Override
+  public void decay(final double decay) {
+    decayEpochs.advance(decay);
+  }
+
+  /**
+   * @return Number of slots in the table
+   */
+  public int capacity() {
+    return moves.length;
+  }
+
+  @Override
+  public long memoryBytes() {
+    return (long) moves.length * SLOT_BYTES;
+  }
+
+  @Override
+  public boolean isConcurrent() {
+    return false;
+  }
+
+  // Adds the given visits and score to an n-gram, inserting it if needed
+  private void add(
+    final long move,
+    final long previousMove,
+    final long secondLastMove,
+    final double visits,
+    final double score
+  ) {
+    int slot = find(move, previousMove, secondLastMove);
+
+    if (slot < 0) {
+      if (maxEntries > 0 && size >= maxEntries) {
+        evict();
+      }
+      if (size >= resizeThreshold) {
+        resize(moves.length * 2);
+      }
+
+      slot = insert(move, previousMove, secondLastMove);
+    } else {
+      refresh(slot);
+    }
+
+    visitCounts[slot] += visits;
+    accumulatedScores[slot] += score;
+    referenced[slot] = true;
+  }
+
+  // Applies the decay of the epochs that started since the slot was last brought up to date
+  private void refresh(final int slot) {
+    final int epoch = decayEpochs.current();
+    if (epochs[slot] != epoch) {
+      final double factor = decayEpochs.factor(epochs[slot]);
+      visitCounts[slot] *= factor;
+      accumulatedScores[slot] *= factor;
+      epochs[slot] = epoch;
+    }
+  }
+
+  // Evicts one n-gram with the CLOCK policy: the hand clears the referenced bit of the slots
+  // it passes, and evicts the first n-gram that was not used since the hand last passed it
+  private void evict() {
+    final int mask = moves.length - 1;
+
+    while (true) {
+      final int slot = clockHand;
+      clockHand = (clockHand + 1) & mask;
+
+      if (moves[slot] == FREE)
+        continue;
+
+      if (referenced[slot]) {
+        referenced[slot] = false;
+      } else {
+        remove(slot);
+        evictions++;
+        return;
+      }
+    }
+  }
+
+  // Frees a slot, and moves back the n-grams after it that can no longer be reached from their home slot
+  private void remove(int slot) {
+    final int mask = moves.length - 1;
+
+    for (int next = (slot + 1) & mask; moves[next] != FREE; next = (next + 1) & mask) {
+      // The n-gram in next may move to slot if slot lies between its home slot and next
+      final int home = hash(moves[next], previousMoves[next], secondLastMoves[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        moves[slot] = moves[next];
+        previousMoves[slot] = previousMoves[next];
+        secondLastMoves[slot] = secondLastMoves[next];
+        visitCounts[slot] = visitCounts[next];
+        accumulatedScores[slot] = accumulatedScores[next];
+        epochs[slot] = epochs[next];
+        referenced[slot] = referenced[next];
+        slot = next;
+      }
+    }
+
+    moves[slot] = FREE;
+    visitCounts[slot] = 0.0;
+    accumulatedScores[slot] = 0.0;
+    referenced[slot] = false;
+    size--;
+  }
+
+  // Returns the slot holding the given n-gram, or -1 if the n-gram is not in the table
+  private int find(final long move, final long previousMove, final long secondLastMove) {
+    final int mask = moves.length - 1;
+    int slot = hash(move, previousMove, secondLastMove) & mask;
+
+    while (true) {
+      final long current = moves[slot];
+      if (current == FREE)
+        return -1;
+
+      if (current == move && previousMoves[slot] == previousMove && secondLastMoves[slot] == secondLastMove)
+        return slot;
+
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  // Puts the n-gram into the first free slot of its probe sequence, returns that slot
+  private int insert(final long move, final long previousMove, final long secondLastMove) {
+    final int mask = moves.length - 1;
+    int slot = hash(move, previousMove, secondLastMove) & mask;
+
+    while (moves[slot] != FREE) {
+      slot = (slot + 1) & mask;
+    }
+
+    moves[slot] = move;
+    previousMoves[slot] = previousMove;
+    secondLastMoves[slot] = secondLastMove;
+    epochs[slot] = decayEpochs.current();
+    size++;
+    return slot;
+  }
+
+  // Moves all statistics into new arrays with the given number of slots
+  private void resize(final int newCapacity) {
+    final long[] oldMoves = moves;
+    final long[] oldPreviousMoves = previousMoves;
+    final long[] oldSecondLastMoves = secondLastMoves;
+    final double[] oldVisitCounts = visitCounts;
+    final double[] oldAccumulatedScores = accumulatedScores;
+    final int[] oldEpochs = epochs;
+    final boolean[] oldReferenced = referenced;
+
+    allocate(newCapacity);
+    size = 0;
+
+    for (int i = 0; i < oldMoves.length; i++) {
+      if (oldMoves[i] != FREE) {
+        final int slot = insert(oldMoves[i], oldPreviousMoves[i], oldSecondLastMoves[i]);
+        visitCounts[slot] = oldVisitCounts[i];
+        accumulatedScores[slot] = oldAccumulatedScores[i];
+        epochs[slot] = oldEpochs[i];
+        referenced[slot] = oldReferenced[i];
+      }
+    }
+  }
+
+  // Creates empty arrays with the given number of slots (a power of 2)
+  private void allocate(final int capacity) {
+    moves = new long[capacity];
+    Arrays.fill(moves, FREE);
+    previousMoves = new long[capacity];
+    secondLastMoves = new long[capacity];
+    visitCounts = new double[capacity];
+    accumulatedScores = new double[capacity];
+    epochs = new int[capacity];
+    referenced = new boolean[capacity];
+    clockHand = 0;
+    resizeThreshold = capacity / 2;
+  }
+
+  // Smallest power of 2 that keeps the given number of n-grams at most half of the slots
+  private static int capacityFor(final int expectedSize) {
+    final int needed = Math.max(16, expectedSize * 2);
+    final int capacity = Integer.highestOneBit(needed);
+    return (capacity == needed) ? capacity : capacity * 2;
+  }
+
+  // Spreads the bits of all three move codes over the low bits used to index the table
+  private static int hash(final long move, final long previousMove, final long secondLastMove) {
+    long h = move * 0x9E3779B97F4A7C15L;
+    h = (h ^ previousMove) * 0xC2B2AE3D27D4EB4FL;
+    h = (h ^ secondLastMove) * 0x165667B19E3779F9L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
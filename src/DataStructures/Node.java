@@ -1,6 +1,12 @@
 package DataStructures;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import game.Game;
 import main.collections.FastArrayList;
@@ -14,26 +20,66 @@ import other.move.Move;
     */
   public class Node
   {
-    /** Our parent node */
-    public final Node parent;
+    /** Atomic access to visitCount, used when several threads search the same tree */
+    private static final AtomicIntegerFieldUpdater<Node> VISIT_COUNT = 
+      AtomicIntegerFieldUpdater.newUpdater(Node.class, "visitCount");
+
+    /** Atomic access to the entries of scoreSums, used when several threads search the same tree */
+    private static final VarHandle SCORE_SUMS = MethodHandles.arrayElementVarHandle(double[].class);
+
+    /** Our parent node (set to null when the node becomes the root of a reused tree) */
+    public Node parent;
+
+    /** 
+     * Node from which the current iteration selected this node, followed by backpropagation
+     * Same as parent in a tree, but a node linked by a transposition table has several parents
+     */
+    public Node selectedFrom;
     
     /** The move that led from parent to this node */
     public final Move moveFromParent;
     
-    /** This objects contains the game state for this node (this is why we don't support stochastic games) */
-    public final Context context;
+    /** 
+     * This objects contains the game state for this node (this is why we don't support stochastic games) 
+     * Null for the nodes of a context-light tree that are not checkpoints, see copyContext
+     */
+    public Context context;
+
+    /** Player to move in the state of this node */
+    public final int mover;
+
+    /** Whether the state of this node is terminal */
+    public final boolean terminal;
     
     /** Visit count for this node */
-    public int visitCount = 0;
+    public volatile int visitCount = 0;
     
     /** For every player, sum of utilities / scores backpropagated through this node */
     public final double[] scoreSums;
     
     /** Child nodes */
-    public final List<Node> children = new ArrayList<Node>();
+    public final List<Node> children;
     
     /** List of moves for which we did not yet create a child node */
     public final FastArrayList<Move> unexpandedMoves;
+
+    /** Whether this node is part of a tree that is searched by several threads at once */
+    public final boolean concurrent;
+
+    /** 
+     * Every how many plies a node keeps its context (checkpoint), shared by the whole tree
+     * 1 keeps the context of every node, 0 only keeps the contexts of the root and of terminal nodes
+     */
+    public final int checkpointInterval;
+
+    /** Number of moves from the closest ancestor (or this node) that is a checkpoint */
+    private final int pliesFromCheckpoint;
+
+    /** Transposition table shared by the whole tree, null if the tree is not a DAG */
+    public final TranspositionTable transpositions;
+
+    /** Moves leading to the children that were created by another parent, null if there are none */
+    private Map<Node, Move> linkedMoves = null;
     
     /**
      * Constructor
@@ -43,11 +89,85 @@ import other.move.Move;
      * @param context
      */
     public Node(final Node parent, final Move moveFromParent, final Context context) {
+      this(parent, moveFromParent, context, parent != null && parent.concurrent);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param parent
+     * @param moveFromParent
+     * @param context
+     * @param concurrent Whether the tree will be searched by several threads at once
+     */
+    public Node(final Node parent, final Move moveFromParent, final Context context, final boolean concurrent) {
+      this(parent, moveFromParent, context, concurrent, (parent != null) ? parent.checkpointInterval : 1);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param parent
+     * @param moveFromParent
+     * @param context Context in the state of this node, only kept if this node is a checkpoint
+     * @param concurrent Whether the tree will be searched by several threads at once
+     * @param checkpointInterval Every how many plies a node keeps its context (1 for all nodes, 0 for none but the root)
+     */
+    public Node(
+      final Node parent, 
+      final Move moveFromParent, 
+      final Context context, 
+      final boolean concurrent, 
+      final int checkpointInterval
+    ) {
+      this(parent, moveFromParent, context, concurrent, checkpointInterval, (parent != null) ? parent.transpositions : null);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param parent
+     * @param moveFromParent
+     * @param context Context in the state of this node, only kept if this node is a checkpoint
+     * @param concurrent Whether the tree will be searched by several threads at once
+     * @param checkpointInterval Every how many plies a node keeps its context (1 for all nodes, 0 for none but the root)
+     * @param transpositions Transposition table of the tree (see expand), null to keep a tree
+     */
+    public Node(
+      final Node parent, 
+      final Move moveFromParent, 
+      final Context context, 
+      final boolean concurrent, 
+      final int checkpointInterval,
+      final TranspositionTable transpositions
+    ) {
+      if (checkpointInterval < 0) {
+        throw new IllegalArgumentException("Checkpoint interval cannot be negative, got: " + checkpointInterval);
+      }
       this.parent = parent;
+      this.selectedFrom = parent;
       this.moveFromParent = moveFromParent;
-      this.context = context;
+      this.concurrent = concurrent;
+      this.checkpointInterval = checkpointInterval;
+      this.transpositions = transpositions;
+      this.mover = context.state().mover();
+      this.terminal = context.trial().over();
+
+      // The root and terminal nodes always keep their context, other nodes only at the checkpoints
+      final int plies = (parent == null) ? 0 : parent.pliesFromCheckpoint + 1;
+      final boolean checkpoint = 
+        parent == null || 
+        terminal || 
+        checkpointInterval == 1 || 
+        (checkpointInterval > 1 && plies >= checkpointInterval);
+      this.context = checkpoint ? context : null;
+      this.pliesFromCheckpoint = checkpoint ? 0 : plies;
+
       final Game game = context.game();
       scoreSums = new double[game.players().count() + 1];
+
+      // Other threads iterate over the children while new ones are added
+      children = concurrent ? new CopyOnWriteArrayList<Node>() : new ArrayList<Node>();
       
       // For simplicity, we just take ALL legal moves. 
       // This means we do not support simultaneous-move games.
@@ -56,4 +176,191 @@ import other.move.Move;
       if (parent != null)
         parent.children.add(this);
     }
+
+    /**
+     * Returns the child of this node reached by a move, creating it if needed.
+     * With a transposition table, a node that is already in the state of the context is linked 
+     * as a child of this node (it keeps its first parent), instead of creating a duplicate.
+     * 
+     * @param move Move from this node, that has not been expanded yet
+     * @param context Context after the move
+     * @return New or linked child
+     */
+    public Node expand(final Move move, final Context context) {
+      if (transpositions == null)
+        return new Node(this, move, context);
+
+      final Node existing = transpositions.get(context);
+      if (existing == null) {
+        final Node child = new Node(this, move, context);
+        transpositions.put(context, child);
+        return child;
+      }
+
+      // Another move of this node may already lead to the same state, the node is only linked once
+      if (existing.parent != this && (linkedMoves == null || !linkedMoves.containsKey(existing))) {
+        if (linkedMoves == null) {
+          linkedMoves = new IdentityHashMap<Node, Move>();
+        }
+        linkedMoves.put(existing, move);
+        children.add(existing);
+      }
+      return existing;
+    }
+
+    /**
+     * Returns the move that leads from this node to one of its children
+     * For a linked child, this is not the move from the parent that created it
+     * 
+     * @param child
+     * @return Move from this node to the child
+     */
+    public Move moveTo(final Node child) {
+      final Move linked = (linkedMoves != null) ? linkedMoves.get(child) : null;
+      return (linked != null) ? linked : child.moveFromParent;
+    }
+
+    /**
+     * Returns a new context in the state of this node, that the caller may modify.
+     * In a context-light tree, the moves from the closest checkpoint are replayed on a copy of its context.
+     * 
+     * @return Copy of the context of this node
+     */
+    public Context copyContext() {
+      if (context != null)
+        return new Context(context);
+
+      // Find the closest ancestor that kept its context
+      Node checkpoint = this;
+      int numMoves = 0;
+      while (checkpoint.context == null) {
+        checkpoint = checkpoint.parent;
+        numMoves++;
+      }
+
+      final Move[] moves = new Move[numMoves];
+      Node node = this;
+      for (int i = numMoves - 1; i >= 0; i--) {
+        moves[i] = node.moveFromParent;
+        node = node.parent;
+      }
+
+      final Context replayed = new Context(checkpoint.context);
+      final Game game = replayed.game();
+      for (final Move move : moves) {
+        game.apply(replayed, move);
+      }
+      return replayed;
+    }
+
+    /**
+     * Returns the move by which the current iteration reached this node (see selectedFrom).
+     * For a linked child this is the move from the node it was selected from, not from its first parent.
+     * 
+     * @return Move into this node, the move that led to the root for the root
+     */
+    public Move moveFromSelected() {
+      return (parent == null || selectedFrom == null) ? moveFromParent : selectedFrom.moveTo(this);
+    }
+
+    /**
+     * Returns a new context in the state of this node, that the caller may modify, whose trial
+     * ends with the moves of the path the current iteration took to this node (see selectedFrom).
+     * A node linked by a transposition table keeps the trial of the path through its first parent,
+     * so if the path went through a linked child, the moves below the last node that was reached 
+     * through its first parent are replayed on a copy of that node's context. In a tree this is copyContext.
+     * 
+     * @return Copy of the context of this node, with the moves of the selected path
+     */
+    public Context copyPathContext() {
+      final Context pathContext = (transpositions != null) ? replayPath() : null;
+      return (pathContext != null) ? pathContext : copyContext();
+    }
+
+    /**
+     * Same as copyPathContext, but returns the context of this node itself if it kept it and the 
+     * path did not go through a linked child. The caller must not modify the returned context.
+     * 
+     * @return Context in the state of this node, with the moves of the selected path
+     */
+    public Context pathStateContext() {
+      final Context pathContext = (transpositions != null) ? replayPath() : null;
+      return (pathContext != null) ? pathContext : stateContext();
+    }
+
+    /**
+     * Returns the context of this node, or a copy in its state if the node did not keep it.
+     * The caller must not modify the returned context.
+     * 
+     * @return Context in the state of this node
+     */
+    public Context stateContext() {
+      return (context != null) ? context : copyContext();
+    }
+
+    /**
+     * Adds a virtual loss to this node, counted as lost visits for the player that moved into it.
+     * Other threads descending through the parent then prefer the siblings of this node.
+     * 
+     * @param virtualLoss Number of lost visits to add (0 to disable)
+     */
+    public void addVirtualLoss(final int virtualLoss) {
+      if (virtualLoss == 0 || !takesVirtualLoss())
+        return;
+
+      VISIT_COUNT.getAndAdd(this, virtualLoss);
+      SCORE_SUMS.getAndAdd(scoreSums, moveFromParent.mover(), (double) -virtualLoss);
+    }
+
+    /**
+     * Atomically adds the result of one playout to this node, and removes 
+     * the virtual loss that was added when this node was selected.
+     * 
+     * @param utilities Utilities of all players at the end of the playout
+     * @param numPlayers
+     * @param virtualLoss Virtual loss that was added during selection (0 if none)
+     */
+    public void addVisitConcurrent(final double[] utilities, final int numPlayers, final int virtualLoss) {
+      final int lossMover = (virtualLoss != 0 && takesVirtualLoss()) ? moveFromParent.mover() : -1;
+      final int removedLoss = (lossMover == -1) ? 0 : virtualLoss;
+
+      VISIT_COUNT.getAndAdd(this, 1 - removedLoss);
+      for (int p = 1; p <= numPlayers; ++p)
+      {
+        final double utility = (p == lossMover) ? utilities[p] + removedLoss : utilities[p];
+        SCORE_SUMS.getAndAdd(scoreSums, p, utility);
+      }
+    }
+
+    // Replays the moves of the selected path below its highest linked child, null if the path has no linked child
+    private Context replayPath() {
+      final List<Move> moves = new ArrayList<Move>();
+      Node firstParentPath = null;
+      int numMoves = 0;
+
+      // Walk up to the root, the highest linked child is the last one found
+      for (Node node = this; node.parent != null && node.selectedFrom != null; node = node.selectedFrom) {
+        moves.add(node.selectedFrom.moveTo(node));
+        if (node.selectedFrom != node.parent) {
+          firstParentPath = node.selectedFrom;
+          numMoves = moves.size();
+        }
+      }
+
+      if (firstParentPath == null)
+        return null;
+
+      final Context replayed = firstParentPath.copyContext();
+      final Game game = replayed.game();
+      for (int i = numMoves - 1; i >= 0; i--) {
+        game.apply(replayed, moves.get(i));
+      }
+      return replayed;
+    }
+
+    // Whether selection adds a virtual loss to this node, so that backpropagation must remove one
+    // The root is never selected, and a reused root keeps the move that led to it but has no parent
+    private boolean takesVirtualLoss() {
+      return parent != null && moveFromParent != null;
+    }
   }
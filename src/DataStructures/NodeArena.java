@@ -0,0 +1,346 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import main.collections.FastArrayList;
+import other.move.Move;
+
+/**
+ * Search tree stored as a structure of arrays, where nodes are int ids into parallel
+ * primitive arrays instead of Node objects.
+ *
+ * When a node is expanded for the first time, a contiguous block of child ids is reserved
+ * for all of its legal moves. The children that were already selected are kept at the start
+ * of the block, so the UCT loop reads the visit counts and score sums of consecutive ids.
+ * Nodes do not keep a Context: the search applies the moves to a copy of the root context on
+ * its way down the tree, and plays out from there.
+ *
+ * The arrays only grow, so a cleared arena is reused by the next search without allocating.
+ * The arena is not thread-safe, it is used by sequential search only.
+ *
+ * @author Kiran Gupta
+ */
+public class NodeArena {
+  /** Id used for a node that does not exist */
+  public static final int NONE = -1;
+
+  /** Id of the root node */
+  public static final int ROOT = 0;
+
+  /** Default number of nodes the arena is sized for */
+  private static final int DEFAULT_EXPECTED_SIZE = 1 << 16;
+
+  /** Number of players of the game */
+  private final int numPlayers;
+
+  /** Parent of every node, NONE for the root */
+  private int[] parents;
+
+  /** First child of every node, NONE if the children have not been reserved yet */
+  private int[] firstChildren;
+
+  /** Number of children (legal moves) of every node */
+  private int[] numChildren;
+
+  /** Number of children that have been selected at least once, they come first in the block */
+  private int[] numExpanded;
+
+  /** Player to move in every node whose children have been reserved */
+  private int[] movers;
+
+  /** Visit count of every node */
+  private int[] visitCounts;
+
+  /** Sum of utilities of every player (indexed from 1) for every node, one array per player */
+  private final double[][] scoreSums;
+
+  /** Move that led from the parent to every node */
+  private Move[] moves;
+
+  /** Number of nodes in use */
+  private int size = 0;
+
+  /** UCT values of the children of the last node selected from, reused by every selection */
+  private double[] values = new double[64];
+
+  /** Unexpanded moves of the last node asked for, reused so no list is allocated per step */
+  private final FastArrayList<Move> unexpandedMoves = new FastArrayList<Move>();
+
+  /**
+   * Constructor
+   * @param numPlayers
+   */
+  public NodeArena(final int numPlayers) {
+    this(numPlayers, DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Constructor
+   * @param numPlayers
+   * @param expectedSize Number of nodes the arena should hold without growing
+   */
+  public NodeArena(final int numPlayers, final int expectedSize) {
+    if (numPlayers < 1) {
+      throw new IllegalArgumentException("Number of players must be at least 1, got: " + numPlayers);
+    }
+    if (expectedSize < 1) {
+      throw new IllegalArgumentException("Expected size must be at least 1, got: " + expectedSize);
+    }
+    this.numPlayers = numPlayers;
+    this.scoreSums = new double[numPlayers + 1][];
+    scoreSums[0] = new double[0];
+    allocate(expectedSize);
+    clear();
+  }
+
+  /**
+   * Removes all nodes but a new, unvisited root
+   */
+  public void clear() {
+    Arrays.fill(moves, 0, size, null);
+    size = 0;
+    newNode(NONE, null);
+  }
+
+  /**
+   * @param node
+   * @return Whether the children of the node have been reserved
+   */
+  public boolean hasChildren(final int node) {
+    return firstChildren[node] != NONE;
+  }
+
+  /**
+   * Reserves a block of children for a node, one for every legal move, none of them selected yet
+   * @param node
+   * @param mover Player to move in the node
+   * @param legalMoves
+   */
+  public void reserveChildren(final int node, final int mover, final FastArrayList<Move> legalMoves) {
+    final int count = legalMoves.size();
+    ensureCapacity(size + count);
+
+    movers[node] = mover;
+    firstChildren[node] = size;
+    numChildren[node] = count;
+    numExpanded[node] = 0;
+
+    for (int i = 0; i < count; i++) {
+      newNode(node, legalMoves.get(i));
+    }
+  }
+
+  /**
+   * @param node
+   * @return Whether some children of the node have never been selected
+   */
+  public boolean hasUnexpandedMoves(final int node) {
+    return numExpanded[node] < numChildren[node];
+  }
+
+  /**
+   * Returns the moves of the children of a node that have never been selected
+   * The list is reused, it is only valid until the next call
+   * @param node
+   * @return Unexpanded moves
+   */
+  public FastArrayList<Move> unexpandedMoves(final int node) {
+    unexpandedMoves.clear();
+    final int end = firstChildren[node] + numChildren[node];
+    for (int child = firstChildren[node] + numExpanded[node]; child < end; child++) {
+      unexpandedMoves.add(moves[child]);
+    }
+    return unexpandedMoves;
+  }
+
+  /**
+   * Marks the child of a node reached by an unexpanded move as selected
+   * @param node
+   * @param move One of the moves returned by unexpandedMoves
+   * @return Id of the child
+   */
+  public int expand(final int node, final Move move) {
+    final int firstUnexpanded = firstChildren[node] + numExpanded[node];
+    final int end = firstChildren[node] + numChildren[node];
+
+    for (int child = firstUnexpanded; child < end; child++) {
+      if (moves[child] == move) {
+        // Unexpanded children have no statistics yet, so only their moves are swapped
+        moves[child] = moves[firstUnexpanded];
+        moves[firstUnexpanded] = move;
+        numExpanded[node]++;
+        return firstUnexpanded;
+      }
+    }
+
+    throw new IllegalArgumentException("Move is not an unexpanded move of node " + node);
+  }
+
+  /**
+   * Uses the UCT equation to select one of the expanded children of a node
+   * Ties are broken at random
+   * @param node
+   * @return Id of the child, or NONE if the node has no expanded children
+   */
+  public int selectUCT(final int node) {
+    if (numExpanded[node] > values.length) {
+      values = new double[Math.max(numExpanded[node], values.length * 2)];
+    }
+
+    // The children are contiguous, so the kernel reads them straight from the arrays of the arena
+    final int first = firstChildren[node];
+    return UCTKernel.select(
+      visitCounts, 
+      scoreSums[movers[node]], 
+      first, 
+      first + numExpanded[node], 
+      Math.log(visitCounts[node]), 
+      values, 
+      ThreadLocalRandom.current()
+    );
+  }
+
+  /**
+   * Adds the result of one playout to a node and all of its ancestors
+   * @param node
+   * @param utilities Utilities of all players at the end of the playout
+   */
+  public void backpropagate(final int node, final double[] utilities) {
+    int current = node;
+    while (current != NONE) {
+      visitCounts[current]++;
+      for (int p = 1; p <= numPlayers; p++) {
+        scoreSums[p][current] += utilities[p];
+      }
+      current = parents[current];
+    }
+  }
+
+  /**
+   * Selects the move to play using the "Robust Child" strategy (most visited child of the root)
+   * Ties are broken at random
+   * @return Move of the most visited child, or null if the root has no expanded children
+   */
+  public Move finalMoveSelection() {
+    int bestChild = NONE;
+    int bestVisitCount = Integer.MIN_VALUE;
+    int numBestFound = 0;
+
+    final int first = firstChildren[ROOT];
+    final int end = first + numExpanded[ROOT];
+    for (int child = first; child < end; child++) {
+      final int visitCount = visitCounts[child];
+
+      if (visitCount > bestVisitCount) {
+        bestVisitCount = visitCount;
+        bestChild = child;
+        numBestFound = 1;
+      } else if (visitCount == bestVisitCount && ThreadLocalRandom.current().nextInt() % ++numBestFound == 0) {
+        bestChild = child;
+      }
+    }
+
+    return (bestChild == NONE) ? null : moves[bestChild];
+  }
+
+  public int numPlayers() {
+    return numPlayers;
+  }
+
+  public int parent(final int node) {
+    return parents[node];
+  }
+
+  public Move move(final int node) {
+    return moves[node];
+  }
+
+  public int visitCount(final int node) {
+    return visitCounts[node];
+  }
+
+  public double scoreSum(final int node, final int player) {
+    return scoreSums[player][node];
+  }
+
+  public int numChildren(final int node) {
+    return numChildren[node];
+  }
+
+  public int numExpanded(final int node) {
+    return numExpanded[node];
+  }
+
+  /**
+   * @param node
+   * @param index Index of the child in the block, expanded children come first
+   * @return Id of the child
+   */
+  public int child(final int node, final int index) {
+    return firstChildren[node] + index;
+  }
+
+  /**
+   * @return Number of nodes in use, including the reserved children that were never selected
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return Bytes used by the arrays of the arena
+   */
+  public long memoryBytes() {
+    final long capacity = parents.length;
+    return capacity * (6 * Integer.BYTES + numPlayers * Double.BYTES + 8);
+  }
+
+  // Adds an unvisited node without children, returns its id
+  private int newNode(final int parent, final Move move) {
+    final int node = size++;
+    parents[node] = parent;
+    firstChildren[node] = NONE;
+    numChildren[node] = 0;
+    numExpanded[node] = 0;
+    movers[node] = 0;
+    visitCounts[node] = 0;
+    for (int p = 1; p <= numPlayers; p++) {
+      scoreSums[p][node] = 0.0;
+    }
+    moves[node] = move;
+    return node;
+  }
+
+  // Grows the arrays so they can hold the given number of nodes
+  private void ensureCapacity(final int capacity) {
+    if (capacity <= parents.length)
+      return;
+
+    final int newCapacity = Math.max(capacity, parents.length * 2);
+    parents = Arrays.copyOf(parents, newCapacity);
+    firstChildren = Arrays.copyOf(firstChildren, newCapacity);
+    numChildren = Arrays.copyOf(numChildren, newCapacity);
+    numExpanded = Arrays.copyOf(numExpanded, newCapacity);
+    movers = Arrays.copyOf(movers, newCapacity);
+    visitCounts = Arrays.copyOf(visitCounts, newCapacity);
+    for (int p = 1; p <= numPlayers; p++) {
+      scoreSums[p] = Arrays.copyOf(scoreSums[p], newCapacity);
+    }
+    moves = Arrays.copyOf(moves, newCapacity);
+  }
+
+  // Creates empty arrays for the given number of nodes
+  private void allocate(final int capacity) {
+    parents = new int[capacity];
+    firstChildren = new int[capacity];
+    numChildren = new int[capacity];
+    numExpanded = new int[capacity];
+    movers = new int[capacity];
+    visitCounts = new int[capacity];
+    for (int p = 1; p <= numPlayers; p++) {
+      scoreSums[p] = new double[capacity];
+    }
+    moves = new Move[capacity];
+  }
+}
@@ -0,0 +1,250 @@
+package DataStructures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how long the phases of the MCTS iterations of a search take, in nanoseconds.
+ *
+ * Every search loop takes a Recorder, and gives it the System.nanoTime at which selection,
+ * playout and backpropagation started and at which the iteration ended. Expansion (copying
+ * contexts, generating and applying moves) happens inside selection: the selection classes
+ * add its time to the recorder of their thread, and it is taken out of the selection time.
+ * Every phase keeps a total, a count and a histogram with 8 buckets per power of 2, so the
+ * percentiles are within 6% and the memory used does not grow with the number of iterations.
+ *
+ * Timing is switched on for the whole JVM with -DphaseTiming=true. ENABLED is a constant, so
+ * when it is off the JIT compiler removes the calls to nanoTime and the checks altogether.
+ *
+ * @author Kiran Gupta
+ */
+public class PhaseTimer {
+  /** Whether the phases are timed, set with -DphaseTiming=true */
+  public static final boolean ENABLED = Boolean.getBoolean("phaseTiming");
+
+  /** Phases, in the order of an iteration */
+  public static final int SELECTION = 0;
+  public static final int EXPANSION = 1;
+  public static final int PLAYOUT = 2;
+  public static final int BACKPROPAGATION = 3;
+  public static final int NUM_PHASES = 4;
+
+  /** Names of the phases in the report */
+  private static final String[] NAMES = { "selection", "expansion", "playout", "backpropagation" };
+
+  /** Durations below this are counted exactly, in one bucket each */
+  private static final int LINEAR_BUCKETS = 16;
+
+  /** Buckets per power of 2 above that (as a shift) */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** Buckets needed for any positive long */
+  private static final int NUM_BUCKETS = LINEAR_BUCKETS + (63 - 4) * (1 << SUB_BUCKET_BITS);
+
+  /** Recorder of the search loop running on every thread */
+  private static final ThreadLocal<Recorder> CURRENT = new ThreadLocal<Recorder>();
+
+  /** Recorders of the current move, one per search loop */
+  private final List<Recorder> recorders = new ArrayList<Recorder>();
+
+  /**
+   * Creates the recorder of a search loop, used by the calling thread until the loop ends
+   * @return Recorder for the iterations of the loop
+   */
+  public synchronized Recorder recorder() {
+    final Recorder recorder = new Recorder();
+    recorders.add(recorder);
+    CURRENT.set(recorder);
+    return recorder;
+  }
+
+  /**
+   * Forgets the times of the previous move
+   */
+  public synchronized void clear() {
+    recorders.clear();
+  }
+
+  /**
+   * Adds expansion time to the iteration the calling thread is making
+   * @param start System.nanoTime at which the expansion started
+   */
+  public static void expansion(final long start) {
+    final Recorder recorder = CURRENT.get();
+    if (recorder != null) {
+      recorder.expansionNanos += System.nanoTime() - start;
+      recorder.expansions++;
+    }
+  }
+
+  /**
+   * @param phase
+   * @return Total time of the phase in all iterations of the move, in nanoseconds
+   */
+  public synchronized long totalNanos(final int phase) {
+    return merged().totals[phase];
+  }
+
+  /**
+   * @param phase
+   * @return Number of iterations of the move in which the phase was timed
+   */
+  public synchronized long count(final int phase) {
+    return merged().counts[phase];
+  }
+
+  /**
+   * @param phase
+   * @param fraction Between 0 and 1, e.g. 0.99
+   * @return Time of the phase in one iteration that this fraction of the iterations did not exceed, in nanoseconds
+   */
+  public synchronized double percentileNanos(final int phase, final double fraction) {
+    return merged().percentile(phase, fraction);
+  }
+
+  /**
+   * @return Totals, shares of the time, means and percentiles of all phases, for the analysis report
+   */
+  public synchronized String report() {
+    final Recorder all = merged();
+    long total = 0;
+    for (int phase = 0; phase < NUM_PHASES; phase++) {
+      total += all.totals[phase];
+    }
+
+    final StringBuilder report = new StringBuilder("phases:");
+    for (int phase = 0; phase < NUM_PHASES; phase++) {
+      final long count = all.counts[phase];
+      report.append(phase == 0 ? " " : ", ").append(NAMES[phase]).append(' ')
+        .append(String.format("%.1f ms", all.totals[phase] / 1e6)).append(" (")
+        .append(String.format("%.1f%%", (total == 0) ? 0.0 : 100.0 * all.totals[phase] / total))
+        .append(", n: ").append(count);
+      if (count > 0) {
+        report.append(String.format(", mean: %.2f us", all.totals[phase] / 1e3 / count))
+          .append(String.format(", p50: %.2f", all.percentile(phase, 0.50) / 1e3))
+          .append(String.format(", p90: %.2f", all.percentile(phase, 0.90) / 1e3))
+          .append(String.format(", p99: %.2f us", all.percentile(phase, 0.99) / 1e3));
+      }
+      report.append(')');
+    }
+    return report.toString();
+  }
+
+  /**
+   * Adds the numbers of the report to the counters of a search, e.g. "playout-ms", "playout-n" and
+   * "playout-p99-us" for every phase (see SearchCounters)
+   * @param counters
+   */
+  public synchronized void addCounters(final Map<String, Double> counters) {
+    final Recorder all = merged();
+    for (int phase = 0; phase < NUM_PHASES; phase++) {
+      final long count = all.counts[phase];
+      counters.put(NAMES[phase] + "-ms", all.totals[phase] / 1e6);
+      counters.put(NAMES[phase] + "-n", (double) count);
+      if (count > 0) {
+        counters.put(NAMES[phase] + "-mean-us", all.totals[phase] / 1e3 / count);
+        counters.put(NAMES[phase] + "-p50-us", all.percentile(phase, 0.50) / 1e3);
+        counters.put(NAMES[phase] + "-p90-us", all.percentile(phase, 0.90) / 1e3);
+        counters.put(NAMES[phase] + "-p99-us", all.percentile(phase, 0.99) / 1e3);
+      }
+    }
+  }
+
+  // Adds up the recorders of all search loops of the move
+  private Recorder merged() {
+    final Recorder all = new Recorder();
+    for (final Recorder recorder : recorders) {
+      for (int phase = 0; phase < NUM_PHASES; phase++) {
+        all.totals[phase] += recorder.totals[phase];
+        all.counts[phase] += recorder.counts[phase];
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+          all.histograms[phase][bucket] += recorder.histograms[phase][bucket];
+        }
+      }
+    }
+    return all;
+  }
+
+  // Bucket of the histogram that a duration falls into
+  private static int bucket(final long nanos) {
+    if (nanos < LINEAR_BUCKETS)
+      return (int) Math.max(nanos, 0);
+
+    final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+    return LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  // Duration in the middle of a bucket
+  private static double bucketMiddle(final int bucket) {
+    if (bucket < LINEAR_BUCKETS)
+      return bucket;
+
+    final int exponent = ((bucket - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 4;
+    final int subBucket = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+    final long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return ((1L << SUB_BUCKET_BITS) + subBucket) * width + width / 2.0;
+  }
+
+  /**
+   * Times of the iterations made by one search loop, only used by the thread running it
+   */
+  public static final class Recorder {
+    private final long[] totals = new long[NUM_PHASES];
+    private final long[] counts = new long[NUM_PHASES];
+    private final long[][] histograms = new long[NUM_PHASES][NUM_BUCKETS];
+
+    /** Expansion time and number of expansions of the current iteration, added by the selection classes */
+    private long expansionNanos = 0;
+    private int expansions = 0;
+
+    private Recorder() {
+    }
+
+    /**
+     * Records one iteration, from the System.nanoTime at which every phase started
+     * @param selectionStart
+     * @param playoutStart
+     * @param backpropagationStart
+     * @param end
+     */
+    public void record(final long selectionStart, final long playoutStart, final long backpropagationStart, final long end) {
+      add(SELECTION, playoutStart - selectionStart - expansionNanos);
+      if (expansions > 0) {
+        add(EXPANSION, expansionNanos);
+      }
+      add(PLAYOUT, backpropagationStart - playoutStart);
+      add(BACKPROPAGATION, end - backpropagationStart);
+
+      expansionNanos = 0;
+      expansions = 0;
+    }
+
+    // Adds the time of a phase in one iteration
+    private void add(final int phase, final long nanos) {
+      totals[phase] += nanos;
+      counts[phase]++;
+      histograms[phase][bucket(nanos)]++;
+    }
+
+    // Time of a phase in one iteration that the given fraction of the iterations did not exceed
+    private double percentile(final int phase, final double fraction) {
+      long iterations = 0;
+      for (final long n : histograms[phase]) {
+        iterations += n;
+      }
+      if (iterations == 0)
+        return 0.0;
+
+      final long rank = Math.max(1, (long) Math.ceil(fraction * iterations));
+      long seen = 0;
+      for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+        seen += histograms[phase][bucket];
+        if (seen >= rank)
+          return bucketMiddle(bucket);
+      }
+      return bucketMiddle(NUM_BUCKETS - 1);
+    }
+  }
+}
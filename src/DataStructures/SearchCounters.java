@@ -0,0 +1,22 @@
+package DataStructures;
+
+import java.util.Map;
+
+/**
+ * An agent that keeps the counters of its last search (iterations, inherited visits, table
+ * sizes...) by name, in the order of its analysis report. Trials log these with every move
+ * instead of reading them out of the report, so the wording of a report can change freely.
+ *
+ * A field of the report with several numbers gets one counter per number, e.g. the iterations
+ * of every thread are "i-thread-1", "i-thread-2"... next to their total "i", and "tt: 12/40 hits"
+ * is "tt-hits" and "tt-lookups". Units are part of the name, e.g. "bank-ms".
+ *
+ * @author Kiran Gupta
+ */
+public interface SearchCounters {
+  /**
+   * @return Counters of the last search by name, empty before the first search. The map is
+   *   filled again by the next search, so copy it to keep it.
+   */
+  Map<String, Double> searchCounters();
+}
@@ -0,0 +1,237 @@
+package DataStructures;
+
+import java.util.List;
+
+/**
+ * Decides when the search for a move stops, instead of always searching until maxSeconds
+ * have passed.
+ *
+ * Every move gets its normal budget of maxSeconds. The search stops early once the most
+ * visited child of the root cannot be overtaken any more: the second most visited child
+ * would need more visits than the search can still make before the budget runs out, at the
+ * rate it has made them so far. The time that was not used goes into a bank. When the budget
+ * runs out on a critical move, where the visits of the two best children are close, the
+ * search goes on with time from the bank, for at most one extra budget.
+ *
+ * When it is disabled, start returns the fixed deadline and stop never ends a search early.
+ * The checks only read the root, so all threads of a parallel search can make them.
+ *
+ * @author Kiran Gupta
+ */
+public class TimeManager {
+  /** The root is only checked every this many iterations (minus one, used as a mask) */
+  private static final int CHECK_MASK = 15;
+
+  /** Part of the budget that must have passed before the rate of visits is trusted */
+  private static final double MIN_ELAPSED_FRACTION = 0.1;
+
+  /** A move is critical if the second best child has at least this share of the visits of the best one */
+  private static final double CRITICAL_RATIO = 0.9;
+
+  /** Largest extension of a move, as a share of its budget */
+  private static final double MAX_EXTENSION = 1.0;
+
+  /** Whether searches are managed, or stop at the fixed deadline */
+  private boolean enabled = false;
+
+  /** Whether the current search is managed (enabled, and given a time limit) */
+  private volatile boolean active = false;
+
+  /** Time at which the current search started */
+  private volatile long startTime;
+
+  /** End of the budget of the current search */
+  private volatile long softLimit;
+
+  /** End of the budget plus the time that may be taken from the bank */
+  private volatile long hardLimit;
+
+  /** Visits of the root when it was first checked, -1 before that */
+  private volatile int startVisits = -1;
+
+  /** Whether the current search went past its budget */
+  private volatile boolean extended = false;
+
+  /** Time saved by earlier moves that later moves may use, in milliseconds */
+  private long bank = 0;
+
+  /** Milliseconds saved and borrowed from the bank since the last reset (the current game) */
+  private long savedMillis = 0;
+  private long borrowedMillis = 0;
+
+  /** Moves that stopped before their budget, and moves that used the bank, since the last reset */
+  private int earlyStops = 0;
+  private int extendedMoves = 0;
+
+  /**
+   * Starts the search for a move
+   * @param maxSeconds Time given for the move, negative for no limit
+   * @return Time at which the search must stop at the latest (System.currentTimeMillis)
+   */
+  public long start(final double maxSeconds) {
+    final long now = System.currentTimeMillis();
+    if (maxSeconds < 0) {
+      active = false;
+      return Long.MAX_VALUE;
+    }
+
+    final long budget = (long) (maxSeconds * 1000L);
+    startTime = now;
+    softLimit = now + budget;
+    hardLimit = softLimit + Math.min(bank, (long) (budget * MAX_EXTENSION));
+    startVisits = -1;
+    extended = false;
+    active = enabled;
+
+    return active ? hardLimit : softLimit;
+  }
+
+  /**
+   * @param root Root of the search tree
+   * @param iteration Number of iterations made by the calling thread
+   * @return Whether the search should stop now
+   */
+  public boolean stop(final Node root, final int iteration) {
+    if (!active || (iteration & CHECK_MASK) != 0)
+      return false;
+
+    final List<Node> children = root.children;
+    int best = 0;
+    int second = 0;
+    for (int i = 0; i < children.size(); i++) {
+      final int visits = children.get(i).visitCount;
+      if (visits > best) {
+        second = best;
+        best = visits;
+      } else if (visits > second) {
+        second = visits;
+      }
+    }
+    return stop(best, second, root.visitCount);
+  }
+
+  /**
+   * @param arena Arena tree
+   * @param iteration Number of iterations made
+   * @return Whether the search should stop now
+   */
+  public boolean stop(final NodeArena arena, final int iteration) {
+    if (!active || (iteration & CHECK_MASK) != 0)
+      return false;
+
+    int best = 0;
+    int second = 0;
+    for (int i = 0; i < arena.numExpanded(NodeArena.ROOT); i++) {
+      final int visits = arena.visitCount(arena.child(NodeArena.ROOT, i));
+      if (visits > best) {
+        second = best;
+        best = visits;
+      } else if (visits > second) {
+        second = visits;
+      }
+    }
+    return stop(best, second, arena.visitCount(NodeArena.ROOT));
+  }
+
+  /**
+   * Ends the search for a move: the time it did not use goes into the bank,
+   * and the time it used past its budget is taken out of it
+   */
+  public void finish() {
+    if (!active)
+      return;
+
+    active = false;
+    final long elapsed = System.currentTimeMillis() - startTime;
+    final long budget = softLimit - startTime;
+
+    if (elapsed < budget) {
+      bank += budget - elapsed;
+      savedMillis += budget - elapsed;
+      earlyStops++;
+    } else {
+      bank = Math.max(0, bank - (elapsed - budget));
+      borrowedMillis += elapsed - budget;
+      if (extended) {
+        extendedMoves++;
+      }
+    }
+  }
+
+  /**
+   * Empties the bank and the counters, for a new game
+   */
+  public void reset() {
+    active = false;
+    bank = 0;
+    savedMillis = 0;
+    borrowedMillis = 0;
+    earlyStops = 0;
+    extendedMoves = 0;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return Time in the bank, in milliseconds
+   */
+  public long bank() {
+    return bank;
+  }
+
+  /**
+   * @return Milliseconds not used by the moves that stopped before their budget, since the last reset
+   */
+  public long savedMillis() {
+    return savedMillis;
+  }
+
+  /**
+   * @return Milliseconds used past their budget by all moves, since the last reset
+   */
+  public long borrowedMillis() {
+    return borrowedMillis;
+  }
+
+  public int earlyStops() {
+    return earlyStops;
+  }
+
+  public int extendedMoves() {
+    return extendedMoves;
+  }
+
+  // Decides from the visits of the two best children of the root and of the root itself
+  private boolean stop(final int best, final int second, final int rootVisits) {
+    final long now = System.currentTimeMillis();
+    if (startVisits < 0) {
+      startVisits = rootVisits;
+    }
+
+    // Past the budget, only a critical move goes on (the loop itself stops at the hard limit)
+    final boolean critical = second >= CRITICAL_RATIO * best;
+    if (now >= softLimit) {
+      if (!critical || now >= hardLimit)
+        return true;
+
+      extended = true;
+    }
+
+    // Not enough time has passed to know how fast the search is
+    final long elapsed = now - startTime;
+    final long budget = softLimit - startTime;
+    if (elapsed < MIN_ELAPSED_FRACTION * budget || elapsed == 0)
+      return false;
+
+    // The best child cannot be overtaken if the others cannot get enough visits in the time left
+    final double visitsPerMilli = (double) (rootVisits - startVisits) / elapsed;
+    final long remaining = (extended ? hardLimit : softLimit) - now;
+    return best - second > visitsPerMilli * remaining;
+  }
+}
@@ -0,0 +1,160 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+import other.context.Context;
+
+/**
+ * Transposition table of a search tree: finds the node of a state from the Ludii hash of
+ * its context, so a state reached through different move orders is only searched once.
+ *
+ * When a node is expanded into a state that already has a node, that node is linked as a
+ * child of the expanded node instead of creating a duplicate (see Node.expand), which turns
+ * the tree into a directed acyclic graph. The number of moves of the trial is part of the key,
+ * so a node can only be linked below nodes one ply above it and the graph has no cycles.
+ *
+ * The table is not thread-safe, it is used by the searches in which a single thread goes
+ * down the tree (sequential and leaf-parallel search).
+ *
+ * @author Kiran Gupta
+ */
+public class TranspositionTable {
+  /** Default number of slots, always a power of 2 */
+  private static final int DEFAULT_CAPACITY = 1 << 12;
+
+  /** Full hash of the state in every slot */
+  private long[] hashes;
+
+  /** Number of moves of the trial in every slot */
+  private int[] numMoves;
+
+  /** Node in every slot, null for empty slots */
+  private Node[] nodes;
+
+  /** Number of nodes in the table */
+  private int size = 0;
+
+  /** Number of lookups since the table was last cleared */
+  private int lookups = 0;
+
+  /** Number of lookups that found a node since the table was last cleared */
+  private int hits = 0;
+
+  /**
+   * Constructor
+   */
+  public TranspositionTable() {
+    allocate(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Returns the node in the same state as a context, and counts the lookup
+   * @param context
+   * @return Node in the same state, or null if there is none
+   */
+  public Node get(final Context context) {
+    final long hash = context.state().fullHash();
+    final int moves = context.trial().numMoves();
+    lookups++;
+
+    final int mask = nodes.length - 1;
+    for (int slot = index(hash, moves, mask); nodes[slot] != null; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && numMoves[slot] == moves) {
+        hits++;
+        return nodes[slot];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the node of the state of a context
+   * @param context Context in the state of the node
+   * @param node
+   */
+  public void put(final Context context, final Node node) {
+    // Keep the table at most half full, so the probe sequences stay short
+    if (2 * (size + 1) > nodes.length) {
+      resize(nodes.length * 2);
+    }
+    insert(context.state().fullHash(), context.trial().numMoves(), node);
+  }
+
+  /**
+   * Removes all nodes and resets the hit counts, for a new search
+   */
+  public void clear() {
+    Arrays.fill(nodes, null);
+    size = 0;
+    lookups = 0;
+    hits = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int lookups() {
+    return lookups;
+  }
+
+  /**
+   * @return Number of lookups that found a node, which is also the number of nodes that were not created
+   */
+  public int hits() {
+    return hits;
+  }
+
+  /**
+   * @return Percentage of the lookups that found a node
+   */
+  public double hitRate() {
+    return (lookups == 0) ? 0.0 : 100.0 * hits / lookups;
+  }
+
+  // Adds a node to the first free slot of its probe sequence
+  private void insert(final long hash, final int moves, final Node node) {
+    final int mask = nodes.length - 1;
+    int slot = index(hash, moves, mask);
+    while (nodes[slot] != null) {
+      if (hashes[slot] == hash && numMoves[slot] == moves) {
+        nodes[slot] = node;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    hashes[slot] = hash;
+    numMoves[slot] = moves;
+    nodes[slot] = node;
+    size++;
+  }
+
+  // Moves all nodes to a table with the given number of slots
+  private void resize(final int capacity) {
+    final long[] oldHashes = hashes;
+    final int[] oldNumMoves = numMoves;
+    final Node[] oldNodes = nodes;
+
+    allocate(capacity);
+    size = 0;
+    for (int slot = 0; slot < oldNodes.length; slot++) {
+      if (oldNodes[slot] != null) {
+        insert(oldHashes[slot], oldNumMoves[slot], oldNodes[slot]);
+      }
+    }
+  }
+
+  // Creates empty arrays with the given number of slots
+  private void allocate(final int capacity) {
+    hashes = new long[capacity];
+    numMoves = new int[capacity];
+    nodes = new Node[capacity];
+  }
+
+  // First slot of the probe sequence of a state
+  private static int index(final long hash, final int moves, final int mask) {
+    final long mixed = (hash ^ moves) * 0x9E3779B97F4A7C15L;
+    return (int) (mixed >>> 32) & mask;
+  }
+}
@@ -0,0 +1,153 @@
+package DataStructures;
+
+import other.context.Context;
+import other.trial.Trial;
+
+/**
+ * Keeps the search tree of an agent between two calls of selectAction.
+ *
+ * When the agent has to move again, the moves played since the last search (our own move
+ * and the replies of the other players) are read from the trial, and the subtree they lead
+ * to becomes the new root, together with all the visits it already has.
+ *
+ * @author Kiran Gupta
+ */
+public class TreeReuse {
+  /** Whether trees are kept between searches */
+  private boolean enabled = true;
+
+  /** Root of the last search, null if there is none */
+  private Node lastRoot = null;
+
+  /** Number of moves in the trial when the last search started */
+  private int lastRootNumMoves = 0;
+
+  /** Visits of the current root that were inherited from the last search */
+  private int inheritedVisits = 0;
+
+  /**
+   * Returns the root for a new search: the subtree of the last search that matches the
+   * moves played since, or a new node if there is no such subtree
+   *
+   * @param context Context of the game, as given to selectAction
+   * @param concurrent Whether the tree will be searched by several threads at once
+   * @param checkpointInterval Every how many plies a node keeps its context (see Node)
+   * @return Root node
+   */
+  public Node root(final Context context, final boolean concurrent, final int checkpointInterval) {
+    return root(context, concurrent, checkpointInterval, null);
+  }
+
+  /**
+   * Same as root, for a tree that may use a transposition table
+   * A DAG is never reused: its linked nodes can have parents outside of the subtree
+   *
+   * @param context Context of the game, as given to selectAction
+   * @param concurrent Whether the tree will be searched by several threads at once
+   * @param checkpointInterval Every how many plies a node keeps its context (see Node)
+   * @param transpositions Transposition table of the new tree, null to keep a tree
+   * @return Root node
+   */
+  public Node root(
+    final Context context, 
+    final boolean concurrent, 
+    final int checkpointInterval, 
+    final TranspositionTable transpositions
+  ) {
+    final Node reused = (transpositions == null) ? findSubtree(context, concurrent, checkpointInterval) : null;
+
+    // Drop the rest of the old tree
+    lastRoot = null;
+    lastRootNumMoves = context.trial().numMoves();
+
+    if (reused == null) {
+      inheritedVisits = 0;
+      return new Node(null, null, context, concurrent, checkpointInterval, transpositions);
+    }
+
+    // Without a parent the node is a root: selection adds no virtual loss to it, so backpropagation removes none
+    reused.parent = null;
+    reused.selectedFrom = null;
+    inheritedVisits = reused.visitCount;
+    return reused;
+  }
+
+  /**
+   * Remembers the tree of the search that just finished, so the next search can reuse it
+   * @param root Root of the tree, null if it cannot be reused
+   */
+  public void store(final Node root) {
+    lastRoot = enabled ? root : null;
+  }
+
+  /**
+   * @return Visits of the current root that were inherited from the last search
+   */
+  public int inheritedVisits() {
+    return inheritedVisits;
+  }
+
+  /**
+   * Forgets the last tree, for example when a new game starts
+   */
+  public void clear() {
+    lastRoot = null;
+    lastRootNumMoves = 0;
+    inheritedVisits = 0;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      clear();
+    }
+  }
+
+  // Follows the moves played since the last search down the last tree
+  // Returns null if the tree does not contain the current state
+  private Node findSubtree(final Context context, final boolean concurrent, final int checkpointInterval) {
+    if (
+      lastRoot == null || 
+      lastRoot.concurrent != concurrent || 
+      lastRoot.checkpointInterval != checkpointInterval || 
+      lastRoot.transpositions != null
+    )
+      return null;
+
+    final Trial trial = context.trial();
+    if (trial.numMoves() <= lastRootNumMoves)
+      return null;
+
+    Node node = lastRoot;
+    for (int i = lastRootNumMoves; i < trial.numMoves(); i++) {
+      final long code = MoveCodec.encode(trial.getMove(i));
+
+      Node next = null;
+      for (Node child : node.children) {
+        if (MoveCodec.encode(node.moveTo(child)) == code) {
+          next = child;
+          break;
+        }
+      }
+
+      if (next == null)
+        return null;
+
+      node = next;
+    }
+
+    // The moves only identify the subtree if they lead to the same state (e.g. not after an undo)
+    final Context nodeContext = node.stateContext();
+    if (nodeContext.state().fullHash() != context.state().fullHash())
+      return null;
+
+    // A root always keeps its context, the nodes below replay their moves from it
+    node.context = nodeContext;
+
+    return node;
+  }
+}
@@ -0,0 +1,177 @@
+package DataStructures;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Selects a child with the UCT equation, from the visit counts and score sums of the
+ * children stored in contiguous arrays.
+ *
+ * The UCT values are computed first, with the vector API (jdk.incubator.vector) when the
+ * module is available and with a scalar loop otherwise. Both compute the same values bit for
+ * bit, and the child is then chosen by the same loop as before (random tie-breaking over the
+ * values in order), so for a fixed random seed both paths make the same choices.
+ *
+ * The vector kernel lives in its own source root (vector/), so that src/ compiles without the
+ * incubator module. It is loaded by name when the module has been added to the JVM with
+ * --add-modules jdk.incubator.vector and its class is on the classpath, the scalar loop is
+ * used otherwise.
+ *
+ * @author Kiran Gupta
+ */
+public final class UCTKernel {
+  /** Exploration constant of the UCT equation */
+  public static final double EXPLORATION = Math.sqrt(2.0);
+
+  /** Name of the class of the vector kernel, in the vector/ source root */
+  private static final String VECTOR_KERNEL = "DataStructures.VectorUCTKernel";
+
+  /** Vector kernel, null if the vector API cannot be used */
+  private static final UCTValues VECTOR_VALUES = loadVectorKernel();
+
+  /** Whether the vector API can be used */
+  public static final boolean VECTORISED = VECTOR_VALUES != null;
+
+  /** Nodes with fewer children are scored by the scalar loop, gathering them is not worth it */
+  private static final int MIN_VECTOR_CHILDREN = 8;
+
+  /** Arrays the children of a Node are gathered into, one set per search thread */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  private UCTKernel() {
+  }
+
+  /**
+   * Selects one of the children of a Node with the UCT equation
+   * The children are gathered into contiguous arrays first, so they can be scored by select
+   * @param children
+   * @param mover Player to move in the parent
+   * @param parentVisits Visit count of the parent
+   * @param random
+   * @return Selected child, or null if there are no children
+   */
+  public static Node selectChild(final List<Node> children, final int mover, final int parentVisits, final Random random) {
+    final int numChildren = children.size();
+    final Scratch scratch = SCRATCH.get();
+    scratch.ensureCapacity(numChildren);
+
+    for (int i = 0; i < numChildren; i++) {
+      final Node child = children.get(i);
+      scratch.visitCounts[i] = child.visitCount;
+      scratch.scoreSums[i] = child.scoreSums[mover];
+    }
+
+    final int best = select(scratch.visitCounts, scratch.scoreSums, 0, numChildren, Math.log(parentVisits), scratch.values, random);
+    return (best < 0) ? null : children.get(best);
+  }
+
+  /**
+   * Selects the child with the highest UCT value, ties are broken at random
+   * @param visitCounts Visit counts, the children are at [from, to)
+   * @param scoreSums Score sums of the player to move in the parent, the children are at [from, to)
+   * @param from
+   * @param to
+   * @param logParentVisits Natural logarithm of the visit count of the parent
+   * @param values Scratch array with room for to - from values
+   * @param random
+   * @return Index of the selected child, or -1 if there is none
+   */
+  public static int select(
+    final int[] visitCounts,
+    final double[] scoreSums,
+    final int from,
+    final int to,
+    final double logParentVisits,
+    final double[] values,
+    final Random random
+  ) {
+    if (VECTORISED && to - from >= MIN_VECTOR_CHILDREN) {
+      VECTOR_VALUES.values(visitCounts, scoreSums, from, to, logParentVisits, values);
+    } else {
+      scalarValues(visitCounts, scoreSums, from, to, logParentVisits, values, 0);
+    }
+    return pick(values, from, to - from, random);
+  }
+
+  /**
+   * Same as select, but always computes the values with the scalar loop
+   */
+  public static int selectScalar(
+    final int[] visitCounts,
+    final double[] scoreSums,
+    final int from,
+    final int to,
+    final double logParentVisits,
+    final double[] values,
+    final Random random
+  ) {
+    scalarValues(visitCounts, scoreSums, from, to, logParentVisits, values, 0);
+    return pick(values, from, to - from, random);
+  }
+
+  // UCT value of every child, values[valuesOffset + i] is the value of child from + i
+  static void scalarValues(
+    final int[] visitCounts,
+    final double[] scoreSums,
+    final int from,
+    final int to,
+    final double logParentVisits,
+    final double[] values,
+    final int valuesOffset
+  ) {
+    for (int child = from; child < to; child++) {
+      final double ni = (double) visitCounts[child];
+      final double vi = scoreSums[child] / ni;
+      values[valuesOffset + child - from] = vi + EXPLORATION * Math.sqrt(logParentVisits / ni);
+    }
+  }
+
+  // Loads the vector kernel, or returns null if the module was not added or the kernel was not compiled
+  private static UCTValues loadVectorKernel() {
+    if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+      return null;
+
+    try {
+      return (UCTValues) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+    } catch (final ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  // Returns from + the index of the highest value, with the random tie-breaking used by all the agents
+  private static int pick(final double[] values, final int from, final int numValues, final Random random) {
+    int best = -1;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    int numBestFound = 0;
+
+    for (int i = 0; i < numValues; i++) {
+      final double value = values[i];
+
+      if (value > bestValue) {
+        bestValue = value;
+        best = i;
+        numBestFound = 1;
+      } else if (value == bestValue && random.nextInt() % ++numBestFound == 0) {
+        best = i;
+      }
+    }
+
+    return (best < 0) ? -1 : from + best;
+  }
+
+  // Contiguous copies of the statistics of the children of a Node
+  private static final class Scratch {
+    int[] visitCounts = new int[64];
+    double[] scoreSums = new double[64];
+    double[] values = new double[64];
+
+    void ensureCapacity(final int capacity) {
+      if (capacity > visitCounts.length) {
+        final int newCapacity = Math.max(capacity, visitCounts.length * 2);
+        visitCounts = new int[newCapacity];
+        scoreSums = new double[newCapacity];
+        values = new double[newCapacity];
+      }
+    }
+  }
+}
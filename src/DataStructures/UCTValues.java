@@ -0,0 +1,27 @@
+package DataStructures;
+
+/**
+ * Computes the UCT values of contiguous children, implemented by the vector kernel of the
+ * vector/ source root (see UCTKernel).
+ *
+ * @author Kiran Gupta
+ */
+interface UCTValues {
+  /**
+   * UCT value of every child, values[i] is the value of child from + i
+   * @param visitCounts Visit counts, the children are at [from, to)
+   * @param scoreSums Score sums of the player to move in the parent, the children are at [from, to)
+   * @param from
+   * @param to
+   * @param logParentVisits Natural logarithm of the visit count of the parent
+   * @param values Array with room for to - from values
+   */
+  void values(
+    final int[] visitCounts,
+    final double[] scoreSums,
+    final int from,
+    final int to,
+    final double logParentVisits,
+    final double[] values
+  );
+}
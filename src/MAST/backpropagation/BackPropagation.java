@@ -12,7 +12,7 @@ public class BackPropagation {
   public static Node backpropagate(final Context contextEnd, Node current, Game game) {
     final double[] utilities = RankUtils.utilities(contextEnd);
 			
-    // Backpropagate utilities through the tree
+    // Backpropagate utilities up the path of the selection (the tree may be a DAG, see Node.expand)
     while (current != null)
     {
       current.visitCount += 1;
@@ -20,8 +20,41 @@ public class BackPropagation {
       {
         current.scoreSums[p] += utilities[p];
       }
+      current = current.selectedFrom;
+    }
+    return null;
+  }
+
+  // Method for the Back-Propagation Phase of tree-parallel search
+  // Same as backpropagate, but the updates are atomic as other threads share the tree,
+  // and the virtual loss that was added during selection is taken off again
+  public static Node backpropagateConcurrent(final Context contextEnd, Node current, Game game, int virtualLoss) {
+    final double[] utilities = RankUtils.utilities(contextEnd);
+    final int numPlayers = game.players().count();
+
+    // Backpropagate utilities through the tree
+    while (current != null)
+    {
+      current.addVisitConcurrent(utilities, numPlayers, virtualLoss);
       current = current.parent;
     }
     return null;
   }
+
+  // Method for the Back-Propagation Phase of leaf-parallel search
+  // Adds a whole batch of playouts from the same node at once,
+  // using the utilities of all players summed over the batch
+  public static Node backpropagateBatch(final double[] utilitySums, final int numPlayouts, Node current, Game game) {
+    // Backpropagate utilities up the path of the selection (the tree may be a DAG, see Node.expand)
+    while (current != null)
+    {
+      current.visitCount += numPlayouts;
+      for (int p = 1; p <= game.players().count(); ++p)
+      {
+        current.scoreSums[p] += utilitySums[p];
+      }
+      current = current.selectedFrom;
+    }
+    return null;
+  }
 }
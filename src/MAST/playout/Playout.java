@@ -1,6 +1,5 @@
 package MAST.playout;
 
-import java.util.Map;
 import java.util.List;
 
 import game.Game;
@@ -20,7 +19,7 @@ public class Playout {
   // Uses the GAS & epsilon in order to bias the choices in the simulation
   // Updates the statistics for all the moves in the trial after simulation
   // Returns a trial object
-  public static Trial playoutPhase(final Context context, Map<MoveKey, ActionStatistics> globalActionStats, double epsilon) {
+  public static Trial playoutPhase(final Context context, ActionStatsStore globalActionStats, double epsilon) {
 
     final Game game = context.game();
     final Trial trial = context.trial();
@@ -50,23 +49,8 @@ public class Playout {
     // Loop through each move, editing the stats stored in the mapping
     for (Move currentMove : trialMoves) {
       double currentUtility = utilities[currentMove.mover()];     // Ask about what stats should be stored.
-      MoveKey currentMoveKey = new MoveKey(currentMove, 0);
-
-      // Get the statistics object relating to the current action
-      ActionStatistics currentStats = globalActionStats.get(currentMoveKey);
-
-      // If the object doesn't exist yet, set the statistics and then input the stats into the mapping
-      if (currentStats == null) {
-        currentStats = new ActionStatistics();
-        currentStats.visitCount = 1.0;
-        currentStats.accumulatedScore = currentUtility;
-        globalActionStats.put(currentMoveKey, currentStats);
-
-      // If the object exists, increment the statistics
-      } else {
-        currentStats.visitCount += 1.0;
-        currentStats.accumulatedScore += currentUtility;
-      }
+      // Add the result to the statistics of the current action
+      globalActionStats.record(MoveCodec.encode(currentMove), currentUtility);
     }
    
     return trial;
@@ -1,6 +1,5 @@
 package MASTLGR.playout;
 
-import java.util.Map;
 import java.util.List;
 
 import game.Game;
@@ -22,8 +21,9 @@ import MASTLGR.selection.Selection;
 public class Playout {
   public static Trial playoutPhase(
     final Context context, 
-    Map<MoveKey, ActionStatistics> globalActionStats,
-    Map<MoveKey, LGRNode> lastGoodReplies,
+    ActionStatsStore globalActionStats,
+    LastGoodReplyStore lastGoodReplies,
+    MoveHistory history,
     double epsilon  
   ) {
 
@@ -37,20 +37,23 @@ public class Playout {
 
       // If there are no legal moves, we have reached the terminal state
       if (legal.moves().size() == 0) {
-        game.apply(context, Game.createPassMove(context, true));
+        final Move passMove = Game.createPassMove(context, true);
+        game.apply(context, passMove);
+        history.push(passMove);
         continue;
       }
 
       // *** Choosing move using stats *** //
       // Find an appropriate move using epsilon greedy & apply it
       // First check if there is a last good reply
-      Move selectedMove = LGRFunctions.lgrSelect(legal.moves(), lastGoodReplies, context);
+      Move selectedMove = LGRFunctions.lgrSelect(legal.moves(), lastGoodReplies, history);
       
       // If there isn't, choose a move using the epsilon-greedy method
       if (selectedMove == null) {
         selectedMove = Selection.epsilonGreedySelect(legal.moves(), globalActionStats, epsilon);
       }
       game.apply(context, selectedMove);
+      history.push(selectedMove);
     }
 
     // *** Recording Stats from Trial *** //
@@ -67,35 +70,21 @@ public class Playout {
     }
 
     // Loop through each move, editing the stats stored in the mapping
-    MoveKey lastMoveKey = null;
-    MoveKey penultimateMoveKey = null;
+    long lastMoveCode = LastGoodReplyTable.NONE;
+    long penultimateMoveCode = LastGoodReplyTable.NONE;
     for (Move currentMove : trialMoves) {
       double currentUtility = utilities[currentMove.mover()];     // Ask about what stats should be stored.
-      
+      final long currentMoveCode = MoveCodec.encode(currentMove);
+
       // Store the LGRs
-      LGRFunctions.lgrStore(currentMove, lastMoveKey, penultimateMoveKey, currentUtility, highestUtility, lastGoodReplies);
+      LGRFunctions.lgrStore(currentMoveCode, lastMoveCode, penultimateMoveCode, currentUtility, highestUtility, lastGoodReplies);
       
-      MoveKey currentMoveKey = new MoveKey(currentMove, 0);
-
-      // Get the statistics object relating to the current action
-      ActionStatistics currentStats = globalActionStats.get(currentMoveKey);
-
-      // If the object doesn't exist yet, set the statistics and then input the stats into the mapping
-      if (currentStats == null) {
-        currentStats = new ActionStatistics();
-        currentStats.visitCount = 1.0;
-        currentStats.accumulatedScore = currentUtility;
-        globalActionStats.put(currentMoveKey, currentStats);
-
-      // If the object exists, increment the statistics
-      } else {
-        currentStats.visitCount += 1.0;
-        currentStats.accumulatedScore += currentUtility;
-      }
+      // Add the result to the statistics of the current action
+      globalActionStats.record(currentMoveCode, currentUtility);
 
-      // Shift the move keys to record next move
-      penultimateMoveKey = lastMoveKey;
-      lastMoveKey = new MoveKey(currentMove, 0);
+      // Shift the move codes to record next move
+      penultimateMoveCode = lastMoveCode;
+      lastMoveCode = currentMoveCode;
     }
    
     return trial;
@@ -1,7 +1,7 @@
 package MASTLGR.selection;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.Map;
 
+import game.Game;
 import other.context.Context;
 import other.move.Move;
 import DataStructures.*;
@@ -15,20 +15,112 @@ public class Selection {
   // Returns the Node in which we simulate from
   public static Node selectionPhase(
     final Node root, 
-    Map<MoveKey, ActionStatistics> globalActionStats,
-    Map<MoveKey, LGRNode> lastGoodReplies,
+    ActionStatsStore globalActionStats,
+    LastGoodReplyStore lastGoodReplies,
     double epsilon
+  ) {
+    return selectionPhase(root, globalActionStats, lastGoodReplies, epsilon, MoveHistory.of(root.context.trial(), MoveHistory.DEFAULT_LENGTH), 0);
+  }
+
+  // Selection Phase for tree-parallel search
+  // The history starts with the moves up to the root, and every move made on the way down is added to it
+  // Adds a virtual loss to every node on the way down, so other threads choose different paths
+  public static Node selectionPhase(
+    final Node root, 
+    ActionStatsStore globalActionStats,
+    LastGoodReplyStore lastGoodReplies,
+    double epsilon,
+    MoveHistory history,
+    int virtualLoss
   ) {
     Node current = root;
 
     while (true) {
-      if (current.context.trial().over()) {
+      if (current.terminal) {
         break;
       }
 
-      current = selectNode(current, globalActionStats, lastGoodReplies, epsilon);
+      final Node next = selectNode(current, globalActionStats, lastGoodReplies, epsilon, history);
+
+      // Other threads are still creating the children of this node, so simulate from here
+      if (next == null) {
+        break;
+      }
+
+      // Backpropagation goes back up the path of this iteration (a linked node has several parents)
+      next.selectedFrom = current;
+      history.push(current.moveTo(next));
+      current = next;
+      final boolean unvisited = (current.visitCount == 0);
+      current.addVirtualLoss(virtualLoss);
       
-      if (current.visitCount == 0) {
+      if (unvisited) {
+        break;
+      }
+    }
+
+    return current;
+  }
+
+  // Selection Phase on an arena tree (sequential search)
+  // The moves on the way down are applied to the given context, which ends up in the state of the selected node
+  // Returns the id of the node in which we simulate from
+  public static int selectionPhase(
+    final NodeArena arena, 
+    final Context context,
+    ActionStatsStore globalActionStats,
+    LastGoodReplyStore lastGoodReplies,
+    double epsilon,
+    MoveHistory history
+  ) {
+    final Game game = context.game();
+    int current = NodeArena.ROOT;
+
+    while (true) {
+      if (context.trial().over()) {
+        break;
+      }
+
+      // The children of a node are reserved the first time the search goes through it
+      if (!arena.hasChildren(current)) {
+        final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+        arena.reserveChildren(current, context.state().mover(), game.moves(context).moves());
+        if (PhaseTimer.ENABLED) {
+          PhaseTimer.expansion(expansionStart);
+        }
+      }
+
+      // If there is a move that hasn't been chosen, choose one of those, otherwise use UCT
+      final int next;
+      if (arena.hasUnexpandedMoves(current)) {
+        final FastArrayList<Move> unexpandedMoves = arena.unexpandedMoves(current);
+
+        // First check if there is a last good reply
+        Move selectedMove = LGRFunctions.lgrSelect(unexpandedMoves, lastGoodReplies, history);
+
+        // If there isn't, choose a move using the epsilon-greedy method
+        if (selectedMove == null) {
+          selectedMove = epsilonGreedySelect(unexpandedMoves, globalActionStats, epsilon);
+        }
+        next = arena.expand(current, selectedMove);
+      } else {
+        next = arena.selectUCT(current);
+      }
+
+      // There are no legal moves, so simulate from here
+      if (next == NodeArena.NONE) {
+        break;
+      }
+
+      current = next;
+      final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      game.apply(context, arena.move(current));
+      if (PhaseTimer.ENABLED) {
+        PhaseTimer.expansion(expansionStart);
+      }
+      history.push(arena.move(current));
+
+      if (arena.visitCount(current) == 0) {
         break;
       }
     }
@@ -40,70 +132,58 @@ public class Selection {
   // Uses the globalActionStats to select a child of the current node
   public static Node selectNode(
     final Node current, 
-    Map<MoveKey, ActionStatistics> globalActionStats,
-    Map<MoveKey, LGRNode> lastGoodReplies,
-    double epsilon
+    ActionStatsStore globalActionStats,
+    LastGoodReplyStore lastGoodReplies,
+    double epsilon,
+    MoveHistory history
   ) {
 
     // If there is a node that hasn't been chosen, choose one of those child.
     if (!current.unexpandedMoves.isEmpty()) {
+      Move selectedMove = null;
 
-      // First check if there is a last good reply
-      Move selectedMove = LGRFunctions.lgrSelect(current.unexpandedMoves, lastGoodReplies, current.context);
+      // Only one thread at a time may claim an unexpanded move (tree-parallel search)
+      synchronized (current.unexpandedMoves) {
+        if (!current.unexpandedMoves.isEmpty()) {
+          // First check if there is a last good reply
+          selectedMove = LGRFunctions.lgrSelect(current.unexpandedMoves, lastGoodReplies, history);
 
-      // If there isn't, choose a move using the epsilon-greedy method
-      if (selectedMove == null) {
-        selectedMove = epsilonGreedySelect(current.unexpandedMoves, globalActionStats, epsilon);
-      }
+          // If there isn't, choose a move using the epsilon-greedy method
+          if (selectedMove == null) {
+            selectedMove = epsilonGreedySelect(current.unexpandedMoves, globalActionStats, epsilon);
+          }
 
-      current.unexpandedMoves.remove(current.unexpandedMoves.indexOf(selectedMove));
+          current.unexpandedMoves.remove(current.unexpandedMoves.indexOf(selectedMove));
+        }
+      }
 
-			// create a copy of context
-			final Context context = new Context(current.context);
-			
-			// apply the move
-			context.game().apply(context, selectedMove);
-			
-			// create new node and return it
-			return new Node(current, selectedMove, context);
+      if (selectedMove != null) {
+        final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+
+        // create a copy of context (replayed from the last checkpoint in a context-light tree)
+        final Context context = current.copyContext();
+        
+        // apply the move
+        context.game().apply(context, selectedMove);
+        
+        // create new node (or link the node of the same state) and return it
+        final Node child = current.expand(selectedMove, context);
+        if (PhaseTimer.ENABLED) {
+          PhaseTimer.expansion(expansionStart);
+        }
+        return child;
+      }
 		}
 
     // Otherwise use UCT equation to select from all children
-    Node bestChild = null;
-    double bestValue = Double.NEGATIVE_INFINITY;
-    int numBestFound = 0;
-
-    final int childrenNum = current.children.size();
-    final int mover = current.context.state().mover();
-
-    for (int i = 0; i < childrenNum; i++) {
-
-      // Get the first child and calculate their UCT score
-      final Node child = current.children.get(i);
-
-      final double vi = (child.scoreSums[mover] / child.visitCount);
-      final double c = Math.sqrt(2.0);
-      final double np = (double) current.visitCount;
-      final double ni = (double) child.visitCount;
-      final double uctValue = vi + c * Math.sqrt(Math.log(np)/ni);
-
-      if (uctValue > bestValue) {
-        bestValue = uctValue;
-        bestChild = child;
-        numBestFound = 1;
-      } else if (uctValue == bestValue && ThreadLocalRandom.current().nextInt() % ++numBestFound == 0) {
-        bestChild = child;
-      }
-    }
-    
-    return bestChild;
+    return UCTKernel.selectChild(current.children, current.mover, current.visitCount, ThreadLocalRandom.current());
   }
 
   // epsilonGreedySelect Function
   // Takes a list of moves and stats and performs an epsilon-greedy select on that list using the GAS
   // Returns a Move from the list of Moves
   // Used in both the selection and playout phases
-  public static Move epsilonGreedySelect(FastArrayList<Move> moves, Map<MoveKey, ActionStatistics> globalActionStats, double epsilon) {
+  public static Move epsilonGreedySelect(FastArrayList<Move> moves, ActionStatsStore globalActionStats, double epsilon) {
     
     // First we must find and record the move with the highest score average
     double highestScore = Double.NEGATIVE_INFINITY;
@@ -111,12 +191,10 @@ public class Selection {
 
     // Loop through all the moves looking for the largest
     for (Move currentMove : moves) {
-      MoveKey currentMoveKey = new MoveKey(currentMove, 0);
-      ActionStatistics currentStats = globalActionStats.get(currentMoveKey);
+      final double currentMoveScore = globalActionStats.meanScore(MoveCodec.encode(currentMove));
 
       // If there are stats recorded for a move, check the score
-      if (currentStats != null) {
-        final double currentMoveScore = currentStats.accumulatedScore / currentStats.visitCount;
+      if (!Double.isNaN(currentMoveScore)) {
         // If it's higher than the previously recorded, replace both score + move
         if (currentMoveScore > highestScore) {
           highestScore = currentMoveScore;
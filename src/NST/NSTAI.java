@@ -1,17 +1,22 @@
 package NST;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.HashMap;
 
 import game.Game;
 import other.AI;
 import other.context.Context;
+import other.RankUtils;
 import other.move.Move;
 import DataStructures.*;
 import NST.backpropagation.BackPropagation;
 import NST.finalmoveselection.FinalMoveSelection;
 import NST.playout.Playout;
 import NST.selection.Selection;
+import Parallel.LeafParallel;
+import Parallel.ParallelMode;
+import Parallel.SearchThreads;
 
 /*
  *  NST AI agent for Ludii
@@ -22,7 +27,7 @@ import NST.selection.Selection;
  * 
  *  @author Kiran Gupta
  */
-public class NSTAI extends AI 
+public class NSTAI extends AI implements SearchCounters
 {
 	/** Our player index */
 	protected int player = -1;
@@ -30,33 +35,91 @@ public class NSTAI extends AI
   protected int movesMade = 0;
 
   protected String analysisReport = null;
+
+  protected final Map<String, Double> searchCounters = new LinkedHashMap<String, Double>(); // counters of the last search, see SearchCounters
+
+  protected int numThreads = 1;                                           // threads used for parallel search
+
+  protected ParallelMode parallelMode = ParallelMode.TREE;                // how the threads share the search
+
+  protected int virtualLoss = 1;                                          // virtual loss used by tree-parallel search
+
+  protected LeafParallel leafParallel = null;                             // worker pool for leaf-parallel playouts
+
+  protected final TreeReuse treeReuse = new TreeReuse();                 // search tree kept between moves
+
+  protected int checkpointInterval = 1;                                   // every how many plies a tree node keeps its context
+
+  protected boolean arenaTree = false;                                    // whether sequential search uses the arena tree
+
+  protected NodeArena arena = null;                                       // arena tree, reused by every sequential search
+
+  protected boolean transpositionTable = false;                           // whether sequential and leaf-parallel search merge transpositions
+
+  protected final TranspositionTable transpositions = new TranspositionTable(); // states of the last tree, when it was searched as a DAG
+
+  protected final TimeManager timeManager = new TimeManager();            // decides when a search stops (at the fixed deadline unless enabled)
+
+  protected final PhaseTimer phaseTimer = new PhaseTimer();               // times the phases of the iterations (with -DphaseTiming=true)
   
   protected double epsilon = 0.2;                                         // epsilon value used for e-greedy
 
-  /** Used to store the data of actions **/
-  protected final Map<MoveKey, NgramNode> ngramStats;
+  protected double decay = 1.0;                                           // factor the playout statistics are multiplied by at every move
+
+  protected int maxTableEntries = 0;                                      // most entries kept by each playout table (0: no limit)
+
+  protected long maxTableBytes = 0;                                       // most bytes used by each playout table (0: no limit)
+
+  /** Used to store the data of n-grams **/
+  protected NgramStatsStore ngramStats;
 	
   /*
    * Constructor 
    */
   public NSTAI() {
     this.friendlyName = "NST AI";
-    ngramStats = new HashMap<MoveKey, NgramNode>();
+    ngramStats = new NgramStatsTable();
+  }
+
+  /*
+   * Constructor for a tree-parallel agent
+   * All threads search the same tree
+   */
+  public NSTAI(final int numThreads) {
+    this();
+    setNumThreads(numThreads);
+  }
+
+  /*
+   * Constructor for a parallel agent using the given parallelisation
+   */
+  public NSTAI(final int numThreads, final ParallelMode parallelMode) {
+    this(numThreads);
+    setParallelMode(parallelMode);
   }
 
   @Override
 	public void initAI(final Game game, final int playerID)
 	{
 		this.player = playerID;
-    ngramStats.clear();
+    timeManager.reset();
+    treeReuse.clear();
+    ngramStats = newNgramStats(game);
     movesMade = 0;
 	}
 
   @Override
 	public void closeAI()
 	{
+    treeReuse.clear();
+    arena = null;
+    transpositions.clear();
     ngramStats.clear();
     movesMade = 0;
+    if (leafParallel != null) {
+      leafParallel.shutdown();
+      leafParallel = null;
+    }
 	}
 	
 	@Override
@@ -81,6 +144,11 @@ public class NSTAI extends AI
 		return analysisReport;
 	}
 
+  @Override
+  public Map<String, Double> searchCounters() {
+    return searchCounters;
+  }
+
   /*
    * SelectAction Function
    * Takes the game and its context and returns a move that the AI chooses
@@ -94,55 +162,440 @@ public class NSTAI extends AI
     final int maxIterations,
     final int maxDepth
   ) {
-    // Create a root node for the tree
-    final Node root = new Node(null, null, context);
-
     // Check and store all iterations and time limitations
     final int iterationLimit = 
       (maxIterations >= 0) ? 
         maxIterations : 
         Integer.MAX_VALUE;
     
-    final long timeLimit = 
-      (maxSeconds >= 0) ? 
-        System.currentTimeMillis() + (long)(maxSeconds * 1000L) : 
-        Long.MAX_VALUE;             
+    final long timeLimit = timeManager.start(maxSeconds);
+    phaseTimer.clear();
+
+    prepareNgramStats(game);
+
+    // The statistics of earlier moves count for less at every move (decayed lazily)
+    ngramStats.decay(decay);
+
+    // Keep the playout tables within their limits, entries are evicted while searching
+    ngramStats.setLimits(maxTableEntries, maxTableBytes);
+
+    final Node root;
+    final int[] iterations;
+
+    if (numThreads > 1 && parallelMode == ParallelMode.LEAF) {
+      // Leaf parallelisation: one tree, and a batch of playouts per selected node
+      root = treeReuse.root(context, false, checkpointInterval, transpositions());
+      iterations = new int[] { searchLeafParallel(game, root, iterationLimit, timeLimit) };
+    } else if (numThreads > 1) {
+      // Tree parallelisation: all threads search the same tree, and record into the same n-gram statistics
+      root = treeReuse.root(context, true, checkpointInterval);
+      iterations = SearchThreads.run(numThreads, t -> search(
+        game, 
+        root, 
+        ngramStats, 
+        SearchThreads.iterationShare(iterationLimit, numThreads, t), 
+        timeLimit
+      ));
+    } else if (arenaTree) {
+      // Sequential search on the arena tree, which starts over at every move
+      treeReuse.clear();
+      root = null;
+      iterations = new int[] { searchArena(game, context, iterationLimit, timeLimit) };
+    } else {
+      // Create a root node for the tree
+      root = treeReuse.root(context, false, checkpointInterval, transpositions());
+      iterations = new int[] { search(game, root, ngramStats, iterationLimit, timeLimit) };
+    }
+
+    // Bank the time the search did not use
+    timeManager.finish();
+
+    // Update variables for output (analysis tab)
+    movesMade += 1;
+    searchCounters.clear();
+    analysisReport = friendlyName + ": (i: " + SearchThreads.total(iterations);
+    searchCounters.put("i", (double) SearchThreads.total(iterations));
+    if (iterations.length > 1) {
+      analysisReport += " " + Arrays.toString(iterations);
+      for (int t = 0; t < iterations.length; t++) {
+        searchCounters.put("i-thread-" + (t + 1), (double) iterations[t]);
+      }
+    }
+    if (numThreads > 1 && parallelMode == ParallelMode.LEAF) {
+      analysisReport += ", batch: " + numThreads;
+      searchCounters.put("batch", (double) numThreads);
+    }
+    if (root == null) {
+      analysisReport += ", arena: " + arena.size() + " nodes";
+      searchCounters.put("arena-nodes", (double) arena.size());
+    } else if (treeReuse.isEnabled()) {
+      analysisReport += ", inherited: " + treeReuse.inheritedVisits();
+      searchCounters.put("inherited", (double) treeReuse.inheritedVisits());
+    }
+    if (root != null && root.transpositions != null) {
+      analysisReport += 
+        ", tt: " + transpositions.hits() + "/" + transpositions.lookups() + " hits" + 
+        " (" + String.format("%.1f", transpositions.hitRate()) + "%)";
+      searchCounters.put("tt-hits", (double) transpositions.hits());
+      searchCounters.put("tt-lookups", (double) transpositions.lookups());
+    }
+    if (timeManager.isEnabled()) {
+      analysisReport += ", bank: " + timeManager.bank() + " ms";
+      searchCounters.put("bank-ms", (double) timeManager.bank());
+    }
+    analysisReport += ", m: " + movesMade + ", n-grams: " + ngramStats.size() + " (" + ngramStats.memoryBytes() / 1024 + " KB)";
+    searchCounters.put("m", (double) movesMade);
+    searchCounters.put("n-grams", (double) ngramStats.size());
+    searchCounters.put("n-gram-bytes", (double) ngramStats.memoryBytes());
+    if (maxTableEntries > 0 || maxTableBytes > 0) {
+      analysisReport += ", evicted: " + ngramStats.evictions();
+      searchCounters.put("evicted", (double) ngramStats.evictions());
+    }
+    if (PhaseTimer.ENABLED) {
+      analysisReport += ", " + phaseTimer.report();
+      phaseTimer.addCounters(searchCounters);
+    }
+    analysisReport += ")";
+
+    // Keep the tree for the next move
+    treeReuse.store(root);
+
+    // Return the move we wish to play
+		return (root == null) ? arena.finalMoveSelection() : FinalMoveSelection.finalMoveSelection(root);
+  }
+
+  /*
+   * Search Function
+   * Runs MCTS iterations on the given tree until the iteration or time limit is reached
+   * Returns the number of iterations that were made
+   */
+  protected int search
+  (
+    final Game game,
+    final Node root,
+    final NgramStatsStore ngramStats,
+    final int iterationLimit,
+    final long timeLimit
+  ) {
+    // Only add virtual losses when other threads share the tree
+    final int treeVirtualLoss = root.concurrent ? virtualLoss : 0;
 
     int i = 0;
 
+    // Times the phases of every iteration (only with -DphaseTiming=true)
+    final PhaseTimer.Recorder timer = PhaseTimer.ENABLED ? phaseTimer.recorder() : null;
+
     // Whilst we can still loop through
     while (
       i < iterationLimit &&                                       // Whilst we still have iterations left
       System.currentTimeMillis() < timeLimit &&                   // Whilst there is still time left
-      !wantsInterrupt                                             // GUI user clicking the pause button
+      !wantsInterrupt &&                                          // GUI user clicking the pause button
+      !timeManager.stop(root, i)                                  // The best move is settled (adaptive time management)
     ) {
       
       // Selection (and Expansion)
-      Node selectedNode = Selection.selectionPhase(root, ngramStats, epsilon);
+      final long selectionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      Node selectedNode = Selection.selectionPhase(root, ngramStats, epsilon, treeVirtualLoss);
       Context selectedContext = selectedNode.context;
 
       // Simulation
+      final long playoutStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      if (!selectedNode.terminal) {
+        selectedContext = selectedNode.copyPathContext();
+        Playout.playoutPhase(selectedContext, ngramStats, epsilon);
+      }
+
+      // Backpropagation
+      final long backpropagationStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      if (root.concurrent) {
+        BackPropagation.backpropagateConcurrent(selectedContext, selectedNode, game, treeVirtualLoss);
+      } else {
+        BackPropagation.backpropagate(selectedContext, selectedNode, game);
+      }
+
+      // Time the phases of this iteration
+      if (PhaseTimer.ENABLED) {
+        timer.record(selectionStart, playoutStart, backpropagationStart, System.nanoTime());
+      }
+
+      // Increment the counter
+      i++;
+    }
+
+    return i;
+  }
+
+  /*
+   * Arena Search Function
+   * Runs MCTS iterations on the arena tree, starting from a new tree for the given context
+   * Every iteration applies the moves on the way down to one copy of the context, and plays out from there
+   * Returns the number of iterations that were made
+   */
+  protected int searchArena(final Game game, final Context context, final int iterationLimit, final long timeLimit) {
+    final NodeArena arena = arena(game);
+
+    int i = 0;
+
+    // Times the phases of every iteration (only with -DphaseTiming=true)
+    final PhaseTimer.Recorder timer = PhaseTimer.ENABLED ? phaseTimer.recorder() : null;
+
+    // Whilst we can still loop through
+    while (
+      i < iterationLimit &&                                       // Whilst we still have iterations left
+      System.currentTimeMillis() < timeLimit &&                   // Whilst there is still time left
+      !wantsInterrupt &&                                          // GUI user clicking the pause button
+      !timeManager.stop(arena, i)                                 // The best move is settled (adaptive time management)
+    ) {
+      
+      // Selection (and Expansion)
+      final long selectionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      final Context selectedContext = new Context(context);
+      if (PhaseTimer.ENABLED) {
+        PhaseTimer.expansion(selectionStart);
+      }
+      final int selectedNode = Selection.selectionPhase(arena, selectedContext, ngramStats, epsilon);
+
+      // Simulation
+      final long playoutStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
       if (!selectedContext.trial().over()) {
-        selectedContext = new Context(selectedContext);
         Playout.playoutPhase(selectedContext, ngramStats, epsilon);
       }
 
       // Backpropagation
-      BackPropagation.backpropagate(selectedContext, selectedNode, game);
+      final long backpropagationStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      arena.backpropagate(selectedNode, RankUtils.utilities(selectedContext));
+
+      // Time the phases of this iteration
+      if (PhaseTimer.ENABLED) {
+        timer.record(selectionStart, playoutStart, backpropagationStart, System.nanoTime());
+      }
 
       // Increment the counter
       i++;
     }
 
-    // Update variables for output (analysis tab)
-    movesMade += 1;
-    analysisReport = friendlyName + ": (i: " + i + ", m: " + movesMade + ", actions: " + ngramStats.size() + ")";
+    return i;
+  }
 
-    // Return the move we wish to play
-		return FinalMoveSelection.finalMoveSelection(root);
+  /*
+   * Leaf-Parallel Search Function
+   * Runs MCTS iterations on the given tree, with a batch of playouts from every selected node
+   * Returns the number of iterations that were made
+   */
+  protected int searchLeafParallel
+  (
+    final Game game,
+    final Node root,
+    final int iterationLimit,
+    final long timeLimit
+  ) {
+    final LeafParallel leafPlayouts = leafParallel();
+
+    int i = 0;
+
+    // Times the phases of every iteration (only with -DphaseTiming=true)
+    final PhaseTimer.Recorder timer = PhaseTimer.ENABLED ? phaseTimer.recorder() : null;
+
+    // Whilst we can still loop through
+    while (
+      i < iterationLimit &&                                       // Whilst we still have iterations left
+      System.currentTimeMillis() < timeLimit &&                   // Whilst there is still time left
+      !wantsInterrupt &&                                          // GUI user clicking the pause button
+      !timeManager.stop(root, i)                                  // The best move is settled (adaptive time management)
+    ) {
+      
+      // Selection (and Expansion)
+      final long selectionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      Node selectedNode = Selection.selectionPhase(root, ngramStats, epsilon);
+      final Context selectedContext = selectedNode.pathStateContext();
+
+      // Simulation, with all playouts of the batch at once
+      final long playoutStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      final double[] utilitySums;
+      if (!selectedNode.terminal) {
+        utilitySums = leafPlayouts.playouts(selectedContext, (playoutContext, k) -> 
+          Playout.playoutPhase(playoutContext, ngramStats, epsilon)
+        );
+      } else {
+        utilitySums = leafPlayouts.terminalUtilities(selectedContext);
+      }
+
+      // Backpropagation of the whole batch
+      final long backpropagationStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      BackPropagation.backpropagateBatch(utilitySums, leafPlayouts.numPlayouts(), selectedNode, game);
+
+      // Time the phases of this iteration
+      if (PhaseTimer.ENABLED) {
+        timer.record(selectionStart, playoutStart, backpropagationStart, System.nanoTime());
+      }
+
+      // Increment the counter
+      i++;
+    }
+
+    return i;
+  }
+
+  // Creates empty n-gram statistics sized for the game, thread-safe when several threads search at once
+  protected NgramStatsStore newNgramStats(final Game game) {
+    return (numThreads > 1) ? ConcurrentNgramStats.forGame(game) : NgramStatsTable.forGame(game);
+  }
+
+  // Makes sure the n-gram statistics are thread-safe when several threads search at once, and a primitive table otherwise
+  // The statistics start over when the number of threads changes between the two
+  protected void prepareNgramStats(final Game game) {
+    if (ngramStats.isConcurrent() != (numThreads > 1)) {
+      ngramStats = newNgramStats(game);
+    }
+  }
+
+  // Returns the worker pool for leaf-parallel playouts, creating a new one if the number of threads changed
+  protected LeafParallel leafParallel() {
+    if (leafParallel == null || leafParallel.numPlayouts() != numThreads) {
+      if (leafParallel != null) {
+        leafParallel.shutdown();
+      }
+      leafParallel = new LeafParallel(numThreads);
+    }
+    return leafParallel;
+  }
+
+  // Returns the arena tree, emptied for a new search, creating a new one if the number of players changed
+  protected NodeArena arena(final Game game) {
+    if (arena == null || arena.numPlayers() != game.players().count()) {
+      arena = new NodeArena(game.players().count());
+    } else {
+      arena.clear();
+    }
+    return arena;
+  }
+
+  // Returns the transposition table, emptied for a new search, or null if the tree is not searched as a DAG
+  protected TranspositionTable transpositions() {
+    if (!transpositionTable)
+      return null;
+
+    transpositions.clear();
+    return transpositions;
   }
 
   public double getEpsilon() {
     return epsilon;
   }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  public void setNumThreads(final int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1, got: " + numThreads);
+    }
+    this.numThreads = numThreads;
+  }
+
+  public int getVirtualLoss() {
+    return virtualLoss;
+  }
+
+  public void setVirtualLoss(final int virtualLoss) {
+    if (virtualLoss < 0) {
+      throw new IllegalArgumentException("Virtual loss cannot be negative, got: " + virtualLoss);
+    }
+    this.virtualLoss = virtualLoss;
+  }
+
+  public ParallelMode getParallelMode() {
+    return parallelMode;
+  }
+
+  public void setParallelMode(final ParallelMode parallelMode) {
+    if (parallelMode == null) {
+      throw new IllegalArgumentException("Parallel mode cannot be null");
+    }
+    if (parallelMode == ParallelMode.ROOT) {
+      throw new IllegalArgumentException("Root parallelisation is only supported by the MAST agent");
+    }
+    this.parallelMode = parallelMode;
+  }
+
+  public boolean getReuseTree() {
+    return treeReuse.isEnabled();
+  }
+
+  public void setReuseTree(final boolean reuseTree) {
+    treeReuse.setEnabled(reuseTree);
+  }
+
+  public int getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  public void setCheckpointInterval(final int checkpointInterval) {
+    if (checkpointInterval < 0) {
+      throw new IllegalArgumentException("Checkpoint interval cannot be negative, got: " + checkpointInterval);
+    }
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  public boolean getArenaTree() {
+    return arenaTree;
+  }
+
+  public void setArenaTree(final boolean arenaTree) {
+    this.arenaTree = arenaTree;
+  }
+
+  public boolean getTranspositionTable() {
+    return transpositionTable;
+  }
+
+  public void setTranspositionTable(final boolean transpositionTable) {
+    this.transpositionTable = transpositionTable;
+  }
+
+  public double getDecay() {
+    return decay;
+  }
+
+  public void setDecay(final double decay) {
+    if (!(decay > 0.0 && decay <= 1.0)) {
+      throw new IllegalArgumentException("Decay factor must be in (0, 1], got: " + decay);
+    }
+    this.decay = decay;
+  }
+
+  public int getMaxTableEntries() {
+    return maxTableEntries;
+  }
+
+  public void setMaxTableEntries(final int maxTableEntries) {
+    if (maxTableEntries < 0) {
+      throw new IllegalArgumentException("Maximum number of table entries cannot be negative, got: " + maxTableEntries);
+    }
+    this.maxTableEntries = maxTableEntries;
+  }
+
+  public long getMaxTableBytes() {
+    return maxTableBytes;
+  }
+
+  public void setMaxTableBytes(final long maxTableBytes) {
+    if (maxTableBytes < 0) {
+      throw new IllegalArgumentException("Maximum number of table bytes cannot be negative, got: " + maxTableBytes);
+    }
+    this.maxTableBytes = maxTableBytes;
+  }
+
+  public boolean getAdaptiveTime() {
+    return timeManager.isEnabled();
+  }
+
+  public void setAdaptiveTime(final boolean adaptiveTime) {
+    timeManager.setEnabled(adaptiveTime);
+  }
+
+  public TimeManager getTimeManager() {
+    return timeManager;
+  }
 }
\ No newline at end of file
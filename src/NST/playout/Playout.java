@@ -1,6 +1,5 @@
 package NST.playout;
 
-import java.util.Map;
 import java.util.List;
 
 import game.Game;
@@ -19,7 +18,7 @@ import NST.selection.Selection;
 // Updates the statistics for all the moves in the trial after simulation
 // Returns a trial object
 public class Playout {
-  public static Trial playoutPhase(final Context context, Map<MoveKey,  NgramNode> ngramStats, double epsilon) {
+  public static Trial playoutPhase(final Context context, NgramStatsStore ngramStats, double epsilon) {
 
     final Game game = context.game();
     final Trial trial = context.trial();
@@ -59,52 +58,20 @@ public class Playout {
     // Get the moves from the trial and record their statistics in actionStatistics
     final double[] utilities = RankUtils.utilities(context);
     final List<Move> trialMoves = trial.generateCompleteMovesList();
-    previousMove = null;
-    secondLastMove = null;
+    long previousCode = NgramStatsTable.NONE;
+    long secondLastCode = NgramStatsTable.NONE;
 
     // Loop through each move, editing the stats stored in the mapping
     for (Move currentMove : trialMoves) {
       double utility = utilities[currentMove.mover()];     // Ask about what stats should be stored.
       
-      // Set the 1-gram stats
-      NgramNode node1 = recordStats(ngramStats, utility, currentMove);
-      
-      // Set the 2-gram stats if previousMove exists
-      if (previousMove != null) {
-        NgramNode node2 = recordStats(node1.ngramStats, utility, previousMove);
-      
-        // Set the 3-gram stats if secondLastMove exists
-        if (secondLastMove != null) {
-          recordStats(node2.ngramStats, utility, secondLastMove);
-        }
-      }
+      // Set the 1-gram stats, and the 2-gram and 3-gram stats if previousMove and secondLastMove exist
+      final long currentCode = MoveCodec.encode(currentMove);
+      ngramStats.record(currentCode, previousCode, secondLastCode, utility);
 
-      secondLastMove = previousMove;
-      previousMove = currentMove;
+      secondLastCode = previousCode;
+      previousCode = currentCode;
     }   
     return trial;
   }
-
-  // Records the stats of the node in the map provided
-  // Returns the NgramNode relating to the move
-  public static NgramNode recordStats(
-    Map<MoveKey,  NgramNode> statsMap,
-    double utility,
-    Move move
-  ) {
-    // First get the move from the map
-    MoveKey moveKey = new MoveKey(move, 0);
-    NgramNode moveNode = statsMap.get(moveKey); 
-
-    if (moveNode == null) {
-      moveNode = new NgramNode();
-      moveNode.visitCount = 1.0;
-      moveNode.accumulatedScore = utility;
-      statsMap.put(moveKey, moveNode);
-    } else {
-      moveNode.visitCount += 1.0;
-      moveNode.accumulatedScore += utility;
-    }
-    return moveNode;
-  }
 }
@@ -1,6 +1,5 @@
 package NSTLGR.playout;
 
-import java.util.Map;
 import java.util.List;
 
 import game.Game;
@@ -22,24 +21,14 @@ import NSTLGR.selection.Selection;
 public class Playout {
   public static Trial playoutPhase(
     final Context context, 
-    Map<MoveKey, NgramNode> ngramStats,
-    Map<MoveKey, LGRNode> lastGoodReplies,
+    NgramStatsStore ngramStats,
+    LastGoodReplyStore lastGoodReplies,
+    MoveHistory history,
     double epsilon 
   ) {
 
     final Game game = context.game();
     final Trial trial = context.trial();
-    final List<Move> movesList = trial.generateCompleteMovesList();
-    Move previousMove = null;
-    Move secondLastMove = null;
-    
-    if (movesList.size() > 0) {
-      previousMove = movesList.get(movesList.size()-1);
-    }
-
-    if (movesList.size() > 1) {
-      secondLastMove = movesList.get(movesList.size()-2);
-    }
 
     while (!trial.over()) {
       
@@ -48,31 +37,31 @@ public class Playout {
 
       // If there are no legal moves, we have reached the terminal state
       if (legal.moves().size() == 0) {
-        game.apply(context, Game.createPassMove(context, true));
+        final Move passMove = Game.createPassMove(context, true);
+        game.apply(context, passMove);
+        history.push(passMove);
         continue;
       }
 
       // *** Choosing move using stats *** //
       // Find an appropriate move using epsilon greedy & apply it
       // First check if there is a last good reply
-      Move selectedMove = LGRFunctions.lgrSelect(legal.moves(), lastGoodReplies, context);
+      Move selectedMove = LGRFunctions.lgrSelect(legal.moves(), lastGoodReplies, history);
     
       // If there isn't, choose a move using the epsilon-greedy method
       if (selectedMove == null) {
-        selectedMove = Selection.epsilonGreedySelect(legal.moves(), ngramStats, epsilon, previousMove, secondLastMove);
+        selectedMove = Selection.epsilonGreedySelect(legal.moves(), ngramStats, epsilon, history.back(0), history.back(1));
       }
       game.apply(context, selectedMove);
-
-      secondLastMove = previousMove;
-      previousMove = selectedMove;
+      history.push(selectedMove);
     }
 
     // *** Recording Stats from Trial *** //
     // Get the moves from the trial and record their statistics in actionStatistics
     final double[] utilities = RankUtils.utilities(context);
     final List<Move> trialMoves = trial.generateCompleteMovesList();
-    previousMove = null;
-    secondLastMove = null;
+    long previousCode = NgramStatsTable.NONE;
+    long secondLastCode = NgramStatsTable.NONE;
 
     // First we need to get the highest utility
     double highestUtility = Double.NEGATIVE_INFINITY;
@@ -87,55 +76,15 @@ public class Playout {
       double utility = utilities[currentMove.mover()];
 
       // Store the LGRs
-      MoveKey lastMoveKey = null;
-      MoveKey penultimateMoveKey = null;
-      if (previousMove != null) {
-        lastMoveKey = new MoveKey(previousMove, 0);
-      }
-      if (secondLastMove != null) {
-        penultimateMoveKey = new MoveKey(secondLastMove, 0);
-      }
-      LGRFunctions.lgrStore(currentMove, lastMoveKey, penultimateMoveKey, utility, highestUtility, lastGoodReplies);
-      
-      // Set the 1-gram stats
-      NgramNode node1 = recordStats(ngramStats, utility, currentMove);
+      final long currentCode = MoveCodec.encode(currentMove);
+      LGRFunctions.lgrStore(currentCode, previousCode, secondLastCode, utility, highestUtility, lastGoodReplies);
       
-      // Set the 2-gram stats if previousMove exists
-      if (previousMove != null) {
-        NgramNode node2 = recordStats(node1.ngramStats, utility, previousMove);
-      
-        // Set the 3-gram stats if secondLastMove exists
-        if (secondLastMove != null) {
-          recordStats(node2.ngramStats, utility, secondLastMove);
-        }
-      }
+      // Set the 1-gram stats, and the 2-gram and 3-gram stats if previousMove and secondLastMove exist
+      ngramStats.record(currentCode, previousCode, secondLastCode, utility);
 
-      secondLastMove = previousMove;
-      previousMove = currentMove;
+      secondLastCode = previousCode;
+      previousCode = currentCode;
     }   
     return trial;
   }
-
-  // Records the stats of the node in the map provided
-  // Returns the NgramNode relating to the move
-  public static NgramNode recordStats(
-    Map<MoveKey,  NgramNode> statsMap,
-    double utility,
-    Move move
-  ) {
-    // First get the move from the map
-    MoveKey moveKey = new MoveKey(move, 0);
-    NgramNode moveNode = statsMap.get(moveKey); 
-
-    if (moveNode == null) {
-      moveNode = new NgramNode();
-      moveNode.visitCount = 1.0;
-      moveNode.accumulatedScore = utility;
-      statsMap.put(moveKey, moveNode);
-    } else {
-      moveNode.visitCount += 1.0;
-      moveNode.accumulatedScore += utility;
-    }
-    return moveNode;
-  }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package Parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import other.context.Context;
+import other.RankUtils;
+
+/*
+ *  Worker pool used by leaf-parallel MCTS
+ *  A batch of playouts is run from the same selected node at once, and the utilities
+ *  of all of them are added up so they can be backpropagated as a single update
+ * 
+ *  @author Kiran Gupta
+ */
+public class LeafParallel {
+
+  // A single playout, run on its own copy of the selected node's context
+  // The playout index is in [0, number of playouts) and can be used to pick per-worker tables
+  public interface PlayoutTask {
+    void playout(Context context, int playoutIndex);
+  }
+
+  /** Number of playouts run in each batch */
+  private final int numPlayouts;
+
+  /** Threads that run all playouts of a batch except for the first one */
+  private final ExecutorService pool;
+
+  /*
+   * Constructor
+   * The calling thread runs one playout of every batch itself, so the pool gets one thread less
+   */
+  public LeafParallel(final int numPlayouts) {
+    this.numPlayouts = numPlayouts;
+    this.pool = Executors.newFixedThreadPool(Math.max(1, numPlayouts - 1), runnable -> {
+      final Thread thread = new Thread(runnable, "leaf-playout");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // Runs a batch of playouts from the given context
+  // Returns the utilities of all players, summed over the batch
+  public double[] playouts(final Context leafContext, final PlayoutTask task) {
+    final List<Future<double[]>> results = new ArrayList<Future<double[]>>(numPlayouts - 1);
+    for (int k = 1; k < numPlayouts; k++) {
+      final int playoutIndex = k;
+      results.add(pool.submit(() -> runPlayout(leafContext, task, playoutIndex)));
+    }
+
+    // The calling thread would otherwise just be waiting
+    final double[] utilitySums = runPlayout(leafContext, task, 0);
+
+    for (Future<double[]> result : results) {
+      final double[] utilities = getResult(result);
+      for (int p = 0; p < utilitySums.length; p++) {
+        utilitySums[p] += utilities[p];
+      }
+    }
+
+    return utilitySums;
+  }
+
+  // Utilities of a terminal context, counted once for every playout of a batch
+  // Used when the selected node is terminal, so it gets the same weight as a batch of playouts
+  public double[] terminalUtilities(final Context terminalContext) {
+    final double[] utilitySums = RankUtils.utilities(terminalContext).clone();
+    for (int p = 0; p < utilitySums.length; p++) {
+      utilitySums[p] *= numPlayouts;
+    }
+    return utilitySums;
+  }
+
+  public int numPlayouts() {
+    return numPlayouts;
+  }
+
+  // Stops the worker threads, the pool cannot be used afterwards
+  public void shutdown() {
+    pool.shutdownNow();
+  }
+
+  // Copies the context, runs the playout on the copy and returns the utilities at the end
+  private static double[] runPlayout(final Context leafContext, final PlayoutTask task, final int playoutIndex) {
+    final Context context = new Context(leafContext);
+    task.playout(context, playoutIndex);
+    return RankUtils.utilities(context);
+  }
+
+  // Waits for a playout from the pool to finish
+  private static double[] getResult(final Future<double[]> result) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return result.get();
+        } catch (final InterruptedException e) {
+          interrupted = true;
+        } catch (final ExecutionException e) {
+          throw new RuntimeException("Leaf playout failed", e.getCause());
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
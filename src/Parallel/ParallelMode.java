@@ -0,0 +1,17 @@
+package Parallel;
+
+/*
+ *  The ways in which an agent can spread its search over several threads
+ * 
+ *  @author Kiran Gupta
+ */
+public enum ParallelMode {
+  /** Every thread grows its own tree, and the root children are merged at the end */
+  ROOT,
+
+  /** All threads grow one shared tree, using virtual loss to spread out over the siblings */
+  TREE,
+
+  /** One thread grows the tree, and every selected node gets a batch of playouts run at once */
+  LEAF
+}
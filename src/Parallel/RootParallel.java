@@ -0,0 +1,81 @@
+package Parallel;
+
+import java.util.Arrays;
+import java.util.List;
+
+import DataStructures.MoveCodec;
+import DataStructures.Node;
+
+/*
+ *  Functions used by root-parallel MCTS
+ *  Every thread grows its own tree from the same root context, all of them recording into the
+ *  shared MAST statistics (ConcurrentActionStats), and the trees are merged once all threads
+ *  have finished
+ * 
+ *  @author Kiran Gupta
+ */
+public class RootParallel {
+
+  // Merges the children of all roots into the first root
+  // Children reached through the same move have their visit counts and score sums added up,
+  // children only one thread has expanded are attached to the first root as they are
+  // Returns the merged root, which can be given to finalMoveSelection
+  public static Node mergeRoots(final List<Node> roots) {
+    final Node merged = roots.get(0);
+
+    // Index the children of the merged root by the packed code of their move, in an open-addressing
+    // table with room for the children of all roots, so no key is allocated per child
+    int numChildren = 0;
+    for (final Node root : roots) {
+      numChildren += root.children.size();
+    }
+    final int capacity = Integer.highestOneBit(Math.max(2, numChildren) * 4 - 1);
+    final long[] codes = new long[capacity];
+    final Node[] mergedChildren = new Node[capacity];
+    Arrays.fill(codes, -1L);
+    for (final Node child : merged.children) {
+      final long code = MoveCodec.encode(child.moveFromParent);
+      final int slot = slot(codes, code);
+      codes[slot] = code;
+      mergedChildren[slot] = child;
+    }
+
+    for (int r = 1; r < roots.size(); r++) {
+      final Node root = roots.get(r);
+      merged.visitCount += root.visitCount;
+
+      for (final Node child : root.children) {
+        final long code = MoveCodec.encode(child.moveFromParent);
+        final int slot = slot(codes, code);
+        final Node mergedChild = mergedChildren[slot];
+
+        // Only this thread expanded the move, so take the child over as it is
+        if (mergedChild == null) {
+          merged.children.add(child);
+          codes[slot] = code;
+          mergedChildren[slot] = child;
+          continue;
+        }
+
+        mergedChild.visitCount += child.visitCount;
+        for (int p = 0; p < mergedChild.scoreSums.length; p++) {
+          mergedChild.scoreSums[p] += child.scoreSums[p];
+        }
+      }
+    }
+
+    return merged;
+  }
+
+  // Returns the slot of the code in the table, or the free slot (code -1) where it belongs
+  // Move codes are never negative, and the table is at most a quarter full
+  private static int slot(final long[] codes, final long code) {
+    final int mask = codes.length - 1;
+    final long h = code * 0x9E3779B97F4A7C15L;
+    int slot = (int) (h ^ (h >>> 32)) & mask;
+    while (codes[slot] != code && codes[slot] != -1L) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+}
@@ -0,0 +1,85 @@
+package Parallel;
+
+import java.util.function.IntUnaryOperator;
+
+/*
+ *  Helper for running the same search loop on several threads at once
+ *  Worker 0 runs on the calling thread, the rest are started as daemon threads
+ *  so that a search which is abandoned (e.g. GUI closed) cannot keep the JVM alive
+ * 
+ *  @author Kiran Gupta
+ */
+public class SearchThreads {
+
+  // Runs the worker once for every thread index in [0, numThreads)
+  // The worker returns the number of iterations it completed
+  // Returns the iteration counts, indexed by thread
+  public static int[] run(final int numThreads, final IntUnaryOperator worker) {
+    final int[] iterations = new int[numThreads];
+    final Throwable[] failures = new Throwable[numThreads];
+    final Thread[] threads = new Thread[numThreads];
+
+    for (int t = 1; t < numThreads; t++) {
+      final int threadIndex = t;
+      threads[t] = new Thread(() -> {
+        try {
+          iterations[threadIndex] = worker.applyAsInt(threadIndex);
+        } catch (final Throwable e) {
+          failures[threadIndex] = e;
+        }
+      }, "search-" + t);
+      threads[t].setDaemon(true);
+      threads[t].start();
+    }
+
+    // The calling thread does its share of the work as well
+    try {
+      iterations[0] = worker.applyAsInt(0);
+    } catch (final Throwable e) {
+      failures[0] = e;
+    }
+
+    // Wait for everyone, the Thread.join gives us visibility of the iteration counts
+    boolean interrupted = false;
+    for (int t = 1; t < numThreads; t++) {
+      boolean joined = false;
+      while (!joined) {
+        try {
+          threads[t].join();
+          joined = true;
+        } catch (final InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    for (final Throwable failure : failures) {
+      if (failure != null) {
+        throw new RuntimeException("Search thread failed", failure);
+      }
+    }
+
+    return iterations;
+  }
+
+  // Splits an iteration budget over the threads, so that the total stays the same
+  public static int iterationShare(final int iterationLimit, final int numThreads, final int threadIndex) {
+    if (iterationLimit == Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+    return iterationLimit / numThreads + ((threadIndex < iterationLimit % numThreads) ? 1 : 0);
+  }
+
+  // Sums the iterations completed by all threads
+  public static int total(final int[] iterations) {
+    int total = 0;
+    for (final int i : iterations) {
+      total += i;
+    }
+    return total;
+  }
+}
@@ -3,7 +3,10 @@ package Trials;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 import game.Game;
 import game.types.state.GameType;
@@ -36,7 +39,7 @@ import NSTLGR.NSTLGRAI;
 public class AITrials
 {
 
-	public static void main(final String[] args)
+	public static void main(final String[] args) throws IOException
 	{	
 
 		// Change Board Size here
@@ -79,26 +82,68 @@ public class AITrials
 		final int moveLimit = Integer.MAX_VALUE;
 		System.out.println("Limited Number of Moves: " + moveLimit);
 
-		
-		// to be able to play the game, we need to instantiate "Trial" and "Context" objects
-		Trial trial = new Trial(game);
-		Context context = new Context(game, trial);
+		// Stop searches early once the best move is settled, and bank the time saved
+		final boolean adaptiveTime = false;
+		System.out.println("Adaptive time management: " + adaptiveTime);
+
+		// Games played at the same time, each on its own thread with its own agents
+		final int numParallelGames = Runtime.getRuntime().availableProcessors();
+		System.out.println("Games played in parallel: " + numParallelGames);
+
+		// Most searches running at once (0: no cap), lower it for agents that search with several threads
+		// so that every search gets the cores it expects
+		final int maxConcurrentSearches = 0;
+
+		// Every move and game is appended to this file (null: no log), read it with TrialLogReader
+		final String logFile = "trial-log.jsonl";
+		System.out.println("Trial log: " + logFile);
+
+		// Finished games are saved here (null: no checkpoint), running the trial again resumes it from
+		// the first unfinished game. Delete the file to start the trial over.
+		final String checkpointFile = "checkpoint-" + game.name().replace(' ', '_') + ".jsonl";
+		System.out.println("Checkpoint: " + checkpointFile);
+
+		// Seed of the trial (a resumed trial keeps the seed of its checkpoint), and the random
+		// moves played from the seed of every game before the agents take over (0: every game
+		// starts from the initial position). With paired games, set it above 0 (e.g. 4) to give
+		// every pair its own opening, whose luck then cancels out within the pair.
+		final long seed = System.nanoTime();
+		final int openingMoves = 0;
+		System.out.println("Random opening moves: " + openingMoves);
+
+		// Off: AI #1 is always player 1, as in the baseline experiments. On: play every seed twice, the
+		// second time with the seats swapped, so that the first-move advantage and the opening cancel
+		// out within a pair (numGames should be even, and openingMoves above 0 so that the pairs get
+		// different openings), the win-rate is then also given from the pairs
+		final boolean pairedGames = false;
+		System.out.println("Paired games: " + pairedGames);
+
+		// Sequential test that stops the trial once its result is settled (null: always play all games)
+		// e.g. SPRT.elo(0, 50, 0.05, 0.05): is AI #1 50 Elo stronger than AI #2, or not stronger at all,
+		// with 5% error rates
+		final SPRT sequentialTest = null;
+		System.out.println("Sequential test: " + ((sequentialTest != null) ? sequentialTest : "none"));
 		
 		//---------------------------------------------------------------------
 
 		// now we're going to have a look at playing a few full games, using AI
 		
-		// first, let's instantiate some agents
-		final List<AI> agents = new ArrayList<AI>();
-		agents.add(null);	// insert null at index 0, because player indices start at 1
-	
 		// Change Agents HERE
-		// NOTE: in our following loop through number of games, the different
-		// agents are always assigned the same player number.
+		// NOTE: without paired games the different agents are always assigned the same player number.
+		// Every game gets new agents from these factories, p1 and p2 are only used to print their settings
 		MASTLGRAI p1 = new MASTLGRAI();      // Player 1
 	  UCTAI p2 = new UCTAI();     // Player 2
-		agents.add(p1);   
-		agents.add(p2);   
+		final List<Supplier<AI>> agents = new ArrayList<Supplier<AI>>();
+		agents.add(() -> {
+			final MASTLGRAI agent = new MASTLGRAI();
+			agent.setAdaptiveTime(adaptiveTime);
+			return agent;
+		});
+		agents.add(() -> {
+			final UCTAI agent = new UCTAI();
+			agent.setAdaptiveTime(adaptiveTime);
+			return agent;
+		});
 		
 		System.out.println("\n--------- AI Data: ---------");
 		System.out.println("AI #1: " + p1.friendlyName);
@@ -110,87 +155,91 @@ public class AITrials
 		if (p2.getEpsilon() != 0) {
 			System.out.println("Epsilon value: " + p2.getEpsilon());
 		}
-		
-		// Score counters for wins and losses in games
-    int p1Score = 0;
-    int p2Score = 0;
-    int otherScore = 0;
 
-		long startTime = System.currentTimeMillis();
+		final TrialRunner runner = new TrialRunner(game, agents);
+		runner.setGivenTime(givenTime);
+		runner.setMoveLimit(moveLimit);
+		runner.setNumParallelGames(numParallelGames);
+		runner.setMaxConcurrentSearches(maxConcurrentSearches);
+		runner.setSeed(seed);
+		runner.setOpeningMoves(openingMoves);
+		runner.setPairedGames(pairedGames);
+		runner.setSequentialTest(sequentialTest);
+
+		// Print every game as it finishes (games finish out of order when they are played in parallel)
+		runner.addListener(result -> {
+			String line = "Game " + (result.gameIndex + 1) + ": " + 
+				((result.winner == 0) ? "no winner" : "won by " + result.agentNames[result.winner]);
+			if (result.moveLimitHit) {
+				line += " (Move Limit Hit)";
+			}
 
-		System.out.println("\n--------- Running Trials (" + numGames + " Games) ---------");
-		for (int i = 0; i < numGames; ++i)
-		{
-			// (re)start our game
-			game.start(context);
-			
-			// (re)initialise our agents
-			for (int p = 1; p < agents.size(); ++p)
-			{
-				agents.get(p).initAI(game, p);
-      }
-
-			int moveCount = 0;
-			
-			// keep going until the game is over
-			while (!context.trial().over() && moveCount < moveLimit)
-			{
-				// figure out which player is to move
-				final int mover = context.state().mover();
-								
-				// retrieve mover from list of agents
-				final AI agent = agents.get(mover);
-				
-				// ask agent to select a move
-				// we'll give them a search time limit of 0.2 seconds per decision
-				// IMPORTANT: pass a copy of the context, not the context object directly
-				final Move move = agent.selectAction
-						(
-							game, 
-							new Context(context),
-							givenTime,
-							-1,
-							-1
-						);
-								
-				// apply the chosen move
-				game.apply(context, move);
-
-				moveCount++;
+			// Time saved in this game, negative if the agents used more than they were given
+			line += ", time saved in seconds:";
+			for (int p = 1; p <= result.numPlayers(); ++p) {
+				final double saved = result.moves[p] * givenTime - result.searchNanos[p] / 1e9;
+				line += " " + result.agentNames[p] + " " + String.format("%.2f", saved) + ((p < result.numPlayers()) ? "," : "");
 			}
+			System.out.println(line);
+		});
+
+		// Every setting that changes the results is in the key, so a checkpoint is only resumed with the same ones
+		final String campaign = game.name() + ": " + p1.friendlyName + " vs " + p2.friendlyName +
+			", " + numGames + " games, " + givenTime + " s per move, move limit " + moveLimit +
+			", " + openingMoves + " opening moves" + (pairedGames ? ", paired" : "") +
+			(adaptiveTime ? ", adaptive time" : "") +
+			", " + ((sequentialTest != null) ? sequentialTest.toString() : "no sequential test");
+		final TrialCheckpoint checkpoint = (checkpointFile != null) ?
+			new TrialCheckpoint(Paths.get(checkpointFile), campaign, seed) : null;
+		if (checkpoint != null) {
+			System.out.println("Seed: " + checkpoint.seed() + ", games already finished: " + checkpoint.finishedGames().size());
+		}
 
-			if (moveCount == moveLimit) {
-				System.out.println("Move Limit Hit");
+		final TrialLog log = (logFile != null) ? new TrialLog(Paths.get(logFile)) : null;
+		if (log != null) {
+			runner.addListener(log);
+		}
+
+		long startTime = System.currentTimeMillis();
+
+		System.out.println("\n--------- Running Trials (" + numGames + " Games) ---------");
+		final TrialResults results;
+		try {
+			results = runner.run(numGames, checkpoint);
+		} finally {
+			if (log != null) {
+				log.close();
 			}
-			
-			// let's see who won
-			final int gameCount = i+1;
-			System.out.println("Game " + gameCount + ": " + context.trial().status());
-			if (context.trial().status() != null) {
-				if (context.trial().status().winner() == 1) {
-					p1Score++;
-				} else if (context.trial().status().winner() == 2) {
-					p2Score++;
-				} else {
-					otherScore++;
-				}
-			} else {
-				otherScore++;
+			if (checkpoint != null) {
+				checkpoint.close();
 			}
-
-      
 		}
 
 		long endTime = System.currentTimeMillis();
 
-		System.out.println("\n--------- Trial Results (" + numGames + " Games) ---------");
-    System.out.println("Times the " + p1.friendlyName + " won: " + p1Score);
-    System.out.println("Times the " + p2.friendlyName + " won: " + p2Score);
-    System.out.println("Times other results happened: " + otherScore);
+		System.out.println("\n--------- Trial Results (" + results.numGames() + " Games) ---------");
+    System.out.println("Times the " + p1.friendlyName + " won: " + results.wins(1));
+    System.out.println("Times the " + p2.friendlyName + " won: " + results.wins(2));
+    System.out.println("Times other results happened: " + results.otherResults());
+    System.out.println("Win-rate(%) of the " + p1.friendlyName + ": " +
+      TrialLogReader.winRate(results.wins(1) + 0.5 * results.otherResults(), results.numGames()));
+    if (pairedGames) {
+      System.out.println("Win-rate(%) of the " + p1.friendlyName + " from the " + results.pairScores().length + " pairs: " +
+        TrialLogReader.pairedWinRate(results.pairScores()));
+    }
+    if (sequentialTest != null) {
+      System.out.println("Sequential test: " + sequentialTest.describe(results.wins(1), results.otherResults(), results.wins(2)));
+    }
 
 		long timeElapsed = (endTime - startTime)/1000;
  
     System.out.println("Execution time in Seconds: " + timeElapsed);
+    final String[] names = { null, p1.friendlyName, p2.friendlyName };
+    for (int p = 1; p < names.length; ++p) {
+      final double totalSaved = results.moves(p) * givenTime - results.searchNanos(p) / 1e9;
+      System.out.println("Time saved by the " + names[p] + ": " + 
+        String.format("%.2f", totalSaved) + " seconds in total, " + 
+        String.format("%.2f", totalSaved / results.numGames()) + " per game");
+    }
 	}
-}
-
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package Trials;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of one game of a trial, with the moves and search time of every player.
+ * Arrays are indexed by player (index 0 is unused, like the agents of AITrials).
+ *
+ * @author Kiran Gupta
+ */
+public class GameResult {
+  /** Index of the game in its trial */
+  public final int gameIndex;
+
+  /** Seed of the game, which chooses its random opening moves */
+  public final long seed;
+
+  /**
+   * Whether the two agents played in each other's seats: the second game of a pair, where the
+   * agent of player 1 is the second agent of the trial and the other way around
+   */
+  public final boolean seatsSwapped;
+
+  /** Player who won the game, 0 for a draw or a game that did not finish */
+  public final int winner;
+
+  /** Whether the game was stopped by the move limit */
+  public final boolean moveLimitHit;
+
+  /** Friendly name of the agent of every player */
+  public final String[] agentNames;
+
+  /** Moves made by every player */
+  public final int[] moves;
+
+  /** Time spent in selectAction by every player, in nanoseconds */
+  public final long[] searchNanos;
+
+  /**
+   * Constructor
+   * @param gameIndex
+   * @param seed
+   * @param seatsSwapped
+   * @param winner
+   * @param moveLimitHit
+   * @param agentNames
+   * @param moves
+   * @param searchNanos
+   */
+  public GameResult(
+    final int gameIndex,
+    final long seed,
+    final boolean seatsSwapped,
+    final int winner,
+    final boolean moveLimitHit,
+    final String[] agentNames,
+    final int[] moves,
+    final long[] searchNanos
+  ) {
+    this.gameIndex = gameIndex;
+    this.seed = seed;
+    this.seatsSwapped = seatsSwapped;
+    this.winner = winner;
+    this.moveLimitHit = moveLimitHit;
+    this.agentNames = agentNames;
+    this.moves = moves;
+    this.searchNanos = searchNanos;
+  }
+
+  /**
+   * @return Number of players of the game
+   */
+  public int numPlayers() {
+    return agentNames.length - 1;
+  }
+
+  /**
+   * @param player
+   * @return Index of the agent of the player in the trial (1 for the first agent), the player itself
+   *   unless the seats were swapped
+   */
+  public int agentOf(final int player) {
+    return (seatsSwapped && player != 0) ? 3 - player : player;
+  }
+
+  /**
+   * @return Score of the first agent of the trial: 1 for a win, 0.5 for a draw or a game that did not finish
+   */
+  public double firstAgentScore() {
+    if (winner == 0)
+      return 0.5;
+    return (agentOf(winner) == 1) ? 1.0 : 0.0;
+  }
+
+  /**
+   * @return Number of moves made in the game
+   */
+  public int totalMoves() {
+    int total = 0;
+    for (int p = 1; p < moves.length; p++) {
+      total += moves[p];
+    }
+    return total;
+  }
+
+  /**
+   * @return The result as one line of JSON, read back by fromJson
+   */
+  public String toJson() {
+    final StringBuilder line = new StringBuilder(256);
+    line.append("{\"type\":\"game\",\"game\":").append(gameIndex)
+      .append(",\"seed\":").append(seed)
+      .append(",\"seatsSwapped\":").append(seatsSwapped)
+      .append(",\"winner\":").append(winner)
+      .append(",\"moveLimitHit\":").append(moveLimitHit)
+      .append(",\"agents\":[");
+    for (int p = 0; p < agentNames.length; p++) {
+      line.append((p == 0) ? "" : ",");
+      Json.appendString(line, agentNames[p]);
+    }
+    line.append("],\"moves\":[");
+    for (int p = 0; p < moves.length; p++) {
+      line.append((p == 0) ? "" : ",").append(moves[p]);
+    }
+    line.append("],\"searchNanos\":[");
+    for (int p = 0; p < searchNanos.length; p++) {
+      line.append((p == 0) ? "" : ",").append(searchNanos[p]);
+    }
+    line.append("]}");
+    return line.toString();
+  }
+
+  /**
+   * Reads a result written by toJson
+   * @param record Parsed JSON object of the result
+   * @return Result
+   * @throws IllegalArgumentException If the record is not a game result
+   */
+  public static GameResult fromJson(final Map<?, ?> record) {
+    if (!"game".equals(record.get("type")))
+      throw new IllegalArgumentException("Not a game result: " + record.get("type"));
+
+    final List<?> agents = (List<?>) record.get("agents");
+    final List<?> moveList = (List<?>) record.get("moves");
+    final List<?> nanosList = (List<?>) record.get("searchNanos");
+    final String[] agentNames = new String[agents.size()];
+    final int[] moves = new int[moveList.size()];
+    final long[] searchNanos = new long[nanosList.size()];
+    for (int p = 0; p < agentNames.length; p++) {
+      agentNames[p] = (agents.get(p) == null) ? null : agents.get(p).toString();
+      moves[p] = ((Number) moveList.get(p)).intValue();
+      searchNanos[p] = ((Number) nanosList.get(p)).longValue();
+    }
+
+    final Object seed = record.get("seed");
+    return new GameResult(
+      ((Number) record.get("game")).intValue(),
+      (seed == null) ? 0L : ((Number) seed).longValue(),
+      Boolean.TRUE.equals(record.get("seatsSwapped")),
+      ((Number) record.get("winner")).intValue(),
+      Boolean.TRUE.equals(record.get("moveLimitHit")),
+      agentNames,
+      moves,
+      searchNanos
+    );
+  }
+}
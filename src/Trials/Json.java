@@ -0,0 +1,235 @@
+package Trials;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The little JSON the trial files need: writing strings and numbers, and reading a line back.
+ *
+ * @author Kiran Gupta
+ */
+final class Json {
+  private Json() {
+  }
+
+  /**
+   * Parses a JSON value
+   * @param text
+   * @return Maps for objects, lists for arrays, longs for whole numbers, doubles for other numbers,
+   *   strings, booleans or null
+   * @throws IllegalArgumentException If the text is not valid JSON
+   */
+  static Object parse(final String text) {
+    return new Parser(text).parse();
+  }
+
+  /**
+   * Appends a JSON string, or null
+   * @param line
+   * @param value
+   */
+  static void appendString(final StringBuilder line, final String value) {
+    if (value == null) {
+      line.append("null");
+      return;
+    }
+
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  /**
+   * Appends a JSON number, without a fraction for whole numbers
+   * @param line
+   * @param value
+   */
+  static void appendNumber(final StringBuilder line, final double value) {
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      line.append((long) value);
+    } else {
+      line.append(value);
+    }
+  }
+
+  /**
+   * Parser of the JSON written by the trial classes: objects, arrays, strings, numbers, booleans and null.
+   * Objects are read as maps, arrays as lists and numbers as longs (whole numbers, so that seeds
+   * keep all their bits) or doubles.
+   */
+  private static class Parser {
+    private final String text;
+
+    private int position = 0;
+
+    Parser(final String text) {
+      this.text = text;
+    }
+
+    Object parse() {
+      final Object value = value();
+      skipSpaces();
+      if (position != text.length())
+        throw error("trailing characters");
+      return value;
+    }
+
+    private Object value() {
+      skipSpaces();
+      if (position >= text.length())
+        throw error("unexpected end");
+
+      final char c = text.charAt(position);
+      if (c == '{')
+        return object();
+      if (c == '[')
+        return array();
+      if (c == '"')
+        return string();
+      if (text.startsWith("true", position)) {
+        position += 4;
+        return Boolean.TRUE;
+      }
+      if (text.startsWith("false", position)) {
+        position += 5;
+        return Boolean.FALSE;
+      }
+      if (text.startsWith("null", position)) {
+        position += 4;
+        return null;
+      }
+      return number();
+    }
+
+    private Map<String, Object> object() {
+      final Map<String, Object> object = new LinkedHashMap<String, Object>();
+      position++;
+      skipSpaces();
+      if (peek() == '}') {
+        position++;
+        return object;
+      }
+
+      while (true) {
+        skipSpaces();
+        final String key = string();
+        skipSpaces();
+        expect(':');
+        object.put(key, value());
+        skipSpaces();
+        if (peek() == '}') {
+          position++;
+          return object;
+        }
+        expect(',');
+      }
+    }
+
+    private List<Object> array() {
+      final List<Object> array = new ArrayList<Object>();
+      position++;
+      skipSpaces();
+      if (peek() == ']') {
+        position++;
+        return array;
+      }
+
+      while (true) {
+        array.add(value());
+        skipSpaces();
+        if (peek() == ']') {
+          position++;
+          return array;
+        }
+        expect(',');
+      }
+    }
+
+    private String string() {
+      expect('"');
+      final StringBuilder string = new StringBuilder();
+      while (true) {
+        final char c = next();
+        if (c == '"')
+          return string.toString();
+
+        if (c != '\\') {
+          string.append(c);
+          continue;
+        }
+
+        final char escaped = next();
+        switch (escaped) {
+          case 'b': string.append('\b'); break;
+          case 'f': string.append('\f'); break;
+          case 'n': string.append('\n'); break;
+          case 'r': string.append('\r'); break;
+          case 't': string.append('\t'); break;
+          case 'u':
+            if (position + 4 > text.length())
+              throw error("unexpected end");
+            string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+            position += 4;
+            break;
+          default: string.append(escaped);
+        }
+      }
+    }
+
+    private Number number() {
+      final int start = position;
+      boolean whole = true;
+      while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+        whole &= "+-0123456789".indexOf(text.charAt(position)) >= 0;
+        position++;
+      }
+      if (start == position)
+        throw error("unexpected character '" + text.charAt(position) + "'");
+      final String number = text.substring(start, position);
+      try {
+        return whole ? Long.valueOf(number) : Double.valueOf(number);
+      } catch (final NumberFormatException e) {
+        // Whole numbers too large for a long
+        return Double.valueOf(number);
+      }
+    }
+
+    private void skipSpaces() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+    }
+
+    private char peek() {
+      if (position >= text.length())
+        throw error("unexpected end");
+      return text.charAt(position);
+    }
+
+    private char next() {
+      final char c = peek();
+      position++;
+      return c;
+    }
+
+    private void expect(final char expected) {
+      if (next() != expected)
+        throw error("expected '" + expected + "'");
+    }
+
+    private IllegalArgumentException error(final String message) {
+      return new IllegalArgumentException(message + " at column " + (position + 1));
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package Trials;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import other.AI;
+import DataStructures.SearchCounters;
+
+/**
+ * One move of a trial game: who made it, how long the search took, and the counters of the
+ * agent's search for the move (iterations, inherited visits, table sizes..., see SearchCounters).
+ *
+ * @author Kiran Gupta
+ */
+public class MoveRecord {
+  /** Index of the game in its trial */
+  public final int gameIndex;
+
+  /** Number of the move in the game, starting at 0 */
+  public final int ply;
+
+  /** Player who made the move */
+  public final int mover;
+
+  /** Friendly name of the agent that made the move */
+  public final String agentName;
+
+  /** Move made, as printed by Ludii */
+  public final String move;
+
+  /** Time spent in selectAction, in nanoseconds */
+  public final long elapsedNanos;
+
+  /** Counters of the search, in the order of the agent's report (empty if the agent keeps none) */
+  public final Map<String, Double> counters;
+
+  /**
+   * Constructor
+   * @param gameIndex
+   * @param ply
+   * @param mover
+   * @param agentName
+   * @param move
+   * @param elapsedNanos
+   * @param counters
+   */
+  public MoveRecord(
+    final int gameIndex,
+    final int ply,
+    final int mover,
+    final String agentName,
+    final String move,
+    final long elapsedNanos,
+    final Map<String, Double> counters
+  ) {
+    this.gameIndex = gameIndex;
+    this.ply = ply;
+    this.mover = mover;
+    this.agentName = agentName;
+    this.move = move;
+    this.elapsedNanos = elapsedNanos;
+    this.counters = counters;
+  }
+
+  /**
+   * Copies the counters of the last search of an agent, such as "i", "inherited" and "actions"
+   * @param agent
+   * @return Counters by name, empty if the agent does not keep any
+   */
+  public static Map<String, Double> counters(final AI agent) {
+    if (!(agent instanceof SearchCounters))
+      return new LinkedHashMap<String, Double>();
+    return new LinkedHashMap<String, Double>(((SearchCounters) agent).searchCounters());
+  }
+}
@@ -0,0 +1,150 @@
+package Trials;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Two agents playing each other in one game of a tournament, half of the games with each agent
+ * as player 1. Game i of both seatings has the same seed, so both agents get the same openings.
+ *
+ * @author Kiran Gupta
+ */
+public class Pairing {
+  /** Name of the game, with its options */
+  public final String gameName;
+
+  /** Names of the agents, agent A is player 1 in the first seating */
+  public final String agentA;
+  public final String agentB;
+
+  /** Results of the games with agent A as player 1, and with agent B as player 1 */
+  final TrialResults aFirst = new TrialResults(2);
+  final TrialResults bFirst = new TrialResults(2);
+
+  /** Whether the sequential test of the pairing has been decided, it stays decided once it is */
+  private boolean settled = false;
+
+  /** Whether the games of every index are skipped, decided when the first game of the index starts */
+  private final Map<Integer, Boolean> skipped = new HashMap<Integer, Boolean>();
+
+  /**
+   * Constructor
+   * @param gameName
+   * @param agentA
+   * @param agentB
+   */
+  public Pairing(final String gameName, final String agentA, final String agentB) {
+    this.gameName = gameName;
+    this.agentA = agentA;
+    this.agentB = agentB;
+  }
+
+  /**
+   * @return Number of finished games, in both seatings
+   */
+  public int numGames() {
+    return aFirst.numGames() + bFirst.numGames();
+  }
+
+  /**
+   * @param agent Agent A or agent B
+   * @return Number of games won by the agent, in both seatings
+   */
+  public int wins(final String agent) {
+    if (agent.equals(agentA))
+      return aFirst.wins(1) + bFirst.wins(2);
+    if (agent.equals(agentB))
+      return aFirst.wins(2) + bFirst.wins(1);
+    throw new IllegalArgumentException(agent + " does not play in " + this);
+  }
+
+  /**
+   * @return Number of draws and of games that did not finish, in both seatings
+   */
+  public int otherResults() {
+    return aFirst.otherResults() + bFirst.otherResults();
+  }
+
+  /**
+   * @param agent Agent A or agent B
+   * @return Wins of the agent, draws counting as half a win
+   */
+  public double score(final String agent) {
+    return wins(agent) + 0.5 * otherResults();
+  }
+
+  /**
+   * @param test Test of the score of agent A
+   * @return Whether the test has been decided, now or after fewer games
+   */
+  public synchronized boolean settled(final SPRT test) {
+    if (!settled) {
+      settled = test.decide(wins(agentA), otherResults(), wins(agentB)) != SPRT.Decision.CONTINUE;
+    }
+    return settled;
+  }
+
+  /**
+   * Tells whether a game should be skipped because the test is decided. The games with the same
+   * index in both seatings make a pair, so both get the answer given to the first of them.
+   * @param gameIndex
+   * @param test Test of the score of agent A
+   * @return Whether to skip the game
+   */
+  public synchronized boolean skip(final int gameIndex, final SPRT test) {
+    return skipped.computeIfAbsent(gameIndex, key -> settled(test));
+  }
+
+  /**
+   * @return Scores of agent A in the pairs of games (same index in both seatings) that have both finished
+   */
+  public double[] pairScores() {
+    return TrialResults.pairScores(aFirst, bFirst);
+  }
+
+  /**
+   * @param agent Agent A or agent B
+   * @return Scores of the agent in the pairs of games that have both finished
+   */
+  public double[] pairScores(final String agent) {
+    final double[] scores = pairScores();
+    if (agent.equals(agentB)) {
+      for (int i = 0; i < scores.length; i++) {
+        scores[i] = 1.0 - scores[i];
+      }
+    } else if (!agent.equals(agentA)) {
+      throw new IllegalArgumentException(agent + " does not play in " + this);
+    }
+    return scores;
+  }
+
+  /**
+   * @param test Test of the score of agent A
+   * @return Decision of the test after all finished games, e.g. "H1 accepted (LLR 2.95, bounds [-2.94, 2.94])"
+   */
+  public synchronized String describe(final SPRT test) {
+    final String decision = test.describe(wins(agentA), otherResults(), wins(agentB));
+    if (settled && test.decide(wins(agentA), otherResults(), wins(agentB)) == SPRT.Decision.CONTINUE)
+      return "stopped when decided, then the games in progress left it " + decision;
+    return decision;
+  }
+
+  /**
+   * @return Results of the games with agent A as player 1
+   */
+  public TrialResults aFirst() {
+    return aFirst;
+  }
+
+  /**
+   * @return Results of the games with agent B as player 1
+   */
+  public TrialResults bFirst() {
+    return bFirst;
+  }
+
+  @Override
+  public String toString() {
+    return gameName + ": " + agentA + " vs " + agentB;
+  }
+}
@@ -0,0 +1,152 @@
+package Trials;
+
+/**
+ * Sequential probability ratio test, to stop a trial as soon as its result is settled instead of
+ * always playing all its games.
+ *
+ * The test is about the score of one agent (wins, draws counting as half a win): H0 says it
+ * scores score0, H1 that it scores score1 (score1 > score0). The scores can be given as Elo
+ * differences, an agent that is elo stronger scores 1 / (1 + 10^(-elo / 400)). After every game
+ * the log-likelihood ratio of the games so far is compared with two bounds made from the error
+ * rates: above the upper bound H1 is accepted, below the lower bound H0 is accepted, and in
+ * between the trial goes on (until it has played all its games, when the test is left undecided).
+ *
+ * The games have three results, so the ratio uses the normal approximation of the score
+ * (the generalised SPRT used by chess engine testing):
+ *   LLR = (score1 - score0) * (2 * sum - n * (score0 + score1)) / (2 * variance)
+ * with the variance of a game's score estimated from the games so far.
+ *
+ * @author Kiran Gupta
+ */
+public class SPRT {
+  /** Result of the test after some games */
+  public enum Decision {
+    CONTINUE,
+    ACCEPT_H0,
+    ACCEPT_H1
+  }
+
+  /** Score of the agent under H0 and under H1 */
+  private final double score0;
+  private final double score1;
+
+  /** Error rates: of accepting H1 when H0 holds, and of accepting H0 when H1 holds */
+  private final double alpha;
+  private final double beta;
+
+  /** Bounds of the log-likelihood ratio */
+  private final double lowerBound;
+  private final double upperBound;
+
+  /**
+   * Constructor
+   * @param score0 Score (0 to 1) of the agent under H0
+   * @param score1 Score (0 to 1) of the agent under H1, greater than score0
+   * @param alpha Probability of accepting H1 when H0 holds
+   * @param beta Probability of accepting H0 when H1 holds
+   */
+  public SPRT(final double score0, final double score1, final double alpha, final double beta) {
+    if (!(0 < score0 && score0 < score1 && score1 < 1)) {
+      throw new IllegalArgumentException("Need 0 < score0 < score1 < 1, got: " + score0 + ", " + score1);
+    }
+    if (!(0 < alpha && alpha < 0.5 && 0 < beta && beta < 0.5)) {
+      throw new IllegalArgumentException("Error rates must be between 0 and 0.5, got: " + alpha + ", " + beta);
+    }
+    this.score0 = score0;
+    this.score1 = score1;
+    this.alpha = alpha;
+    this.beta = beta;
+    lowerBound = Math.log(beta / (1 - alpha));
+    upperBound = Math.log((1 - beta) / alpha);
+  }
+
+  /**
+   * Test with Elo hypotheses, e.g. elo(0, 50, 0.05, 0.05): is the agent 50 Elo stronger, or not stronger at all?
+   * @param elo0 Elo difference of the agent over its opponent under H0
+   * @param elo1 Elo difference under H1, greater than elo0
+   * @param alpha Probability of accepting H1 when H0 holds
+   * @param beta Probability of accepting H0 when H1 holds
+   * @return Test
+   */
+  public static SPRT elo(final double elo0, final double elo1, final double alpha, final double beta) {
+    return new SPRT(eloToScore(elo0), eloToScore(elo1), alpha, beta);
+  }
+
+  /**
+   * @param elo Elo difference
+   * @return Expected score of the stronger agent
+   */
+  public static double eloToScore(final double elo) {
+    return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+  }
+
+  /**
+   * @param score Expected score, between 0 and 1
+   * @return Elo difference
+   */
+  public static double scoreToElo(final double score) {
+    return 400.0 * Math.log10(score / (1.0 - score));
+  }
+
+  /**
+   * @param wins Wins of the agent
+   * @param draws Draws and games that did not finish
+   * @param losses
+   * @return Log-likelihood ratio of H1 over H0
+   */
+  public double llr(final int wins, final int draws, final int losses) {
+    final int n = wins + draws + losses;
+    if (n == 0)
+      return 0;
+
+    final double sum = wins + 0.5 * draws;
+
+    // Variance of a game's score, with one more win and one more loss so that it is never 0
+    // (after a few wins in a row it would be, and the first game would decide the test)
+    final double mean = (sum + 1) / (n + 2);
+    final double variance = (wins + 1 + 0.25 * draws) / (n + 2) - mean * mean;
+
+    return (score1 - score0) * (2 * sum - n * (score0 + score1)) / (2 * variance);
+  }
+
+  /**
+   * @param wins Wins of the agent
+   * @param draws Draws and games that did not finish
+   * @param losses
+   * @return Decision of the test after these games
+   */
+  public Decision decide(final int wins, final int draws, final int losses) {
+    final double llr = llr(wins, draws, losses);
+    if (llr >= upperBound)
+      return Decision.ACCEPT_H1;
+    if (llr <= lowerBound)
+      return Decision.ACCEPT_H0;
+    return Decision.CONTINUE;
+  }
+
+  /**
+   * @param wins Wins of the agent
+   * @param draws Draws and games that did not finish
+   * @param losses
+   * @return Decision and log-likelihood ratio, e.g. "H1 accepted (LLR 2.95, bounds [-2.94, 2.94])"
+   */
+  public String describe(final int wins, final int draws, final int losses) {
+    final String decision;
+    switch (decide(wins, draws, losses)) {
+      case ACCEPT_H0: decision = "H0 accepted"; break;
+      case ACCEPT_H1: decision = "H1 accepted"; break;
+      default: decision = "undecided";
+    }
+    return decision + String.format(
+      " (LLR %.2f, bounds [%.2f, %.2f])", llr(wins, draws, losses), lowerBound, upperBound
+    );
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "SPRT H0: score %.1f%% (%+.0f Elo), H1: score %.1f%% (%+.0f Elo), alpha %.3f, beta %.3f",
+      100 * score0, scoreToElo(score0), 100 * score1, scoreToElo(score1), alpha, beta
+    );
+  }
+}
@@ -0,0 +1,471 @@
+package Trials;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+import game.Game;
+import other.AI;
+import other.GameLoader;
+import Random.RandomAI;
+
+import UCT.UCTAI;
+import UCTLGR.UCTLGRAI;
+import MAST.MASTAI;
+import MASTLGR.MASTLGRAI;
+import NST.NSTAI;
+import NSTLGR.NSTLGRAI;
+
+/**
+ * Round-robin tournament: every agent plays every other agent in every game, half of the games
+ * of a pairing with each agent as player 1, and the results are printed as one cross-table per
+ * game (the win-rate of the agent of the row against the agent of the column) and one over all
+ * games. Game i of both seatings of a pairing has the same seed, and the win-rates and their
+ * confidence intervals are computed from these pairs of games.
+ *
+ * The games of all pairings share one pool of threads (one per core by default). They are queued
+ * game index by game index across the pairings, so all pairings progress together and a stopped
+ * tournament has a bit of every pairing. With a checkpoint directory every seating of a pairing
+ * gets its own TrialCheckpoint, and running the tournament again plays only the missing games.
+ * With a sequential test a pairing stops as soon as its result is settled, and its remaining
+ * games are skipped, so the cores go to the close pairings.
+ *
+ * @author Kiran Gupta
+ */
+public class Tournament {
+  private final Map<String, Game> games = new LinkedHashMap<String, Game>();   // games by name (with options)
+
+  private final Map<String, Supplier<AI>> agents = new LinkedHashMap<String, Supplier<AI>>(); // agent factories by name
+
+  private int gamesPerPairing = 150;                          // games of every pairing in every game, half in each seating
+
+  private double givenTime = 5.0;                             // seconds given to every move (negative: no limit)
+
+  private int maxIterations = -1;                             // iterations given to every move (negative: no limit)
+
+  private int moveLimit = Integer.MAX_VALUE;                  // most moves played in a game
+
+  private int numParallelGames = Runtime.getRuntime().availableProcessors(); // games played at once
+
+  private int maxConcurrentSearches = 0;                      // most searches running at once (0: no cap)
+
+  private long seed = System.nanoTime();                      // seed of the tournament, every game gets its own seed from it
+
+  private int openingMoves = 0;                               // random moves played from the seed of a game before the agents play
+
+  private SPRT sequentialTest = null;                         // stops a pairing once the result of agent A is settled (null: play all games)
+
+  private Path checkpointDirectory = null;                    // directory of the checkpoints of the seatings (null: no checkpoints)
+
+  private final List<TrialListener> listeners = new ArrayList<TrialListener>(); // told about every move and game
+
+  public static void main(final String[] args) throws IOException {
+    final Tournament tournament = new Tournament();
+
+    // Change games HERE, with their options (e.g. Arrays.asList("Board Size/6x6"))
+    tournament.addGame("Breakthrough.lud", Arrays.asList());
+    tournament.addGame("Knightthrough.lud", Arrays.asList());
+    tournament.addGame("Gomoku.lud", Arrays.asList());
+    tournament.addGame("Othello.lud", Arrays.asList());
+    tournament.addGame("Connect Four.lud", Arrays.asList());
+    tournament.addGame("Atari Go.lud", Arrays.asList());
+
+    // Change agents HERE, every agent is created anew for every game
+    final boolean adaptiveTime = false;
+    tournament.addAgent("UCT", () -> {
+      final UCTAI agent = new UCTAI();
+      agent.setAdaptiveTime(adaptiveTime);
+      return agent;
+    });
+    tournament.addAgent("UCT-LGR", () -> {
+      final UCTLGRAI agent = new UCTLGRAI();
+      agent.setAdaptiveTime(adaptiveTime);
+      return agent;
+    });
+    tournament.addAgent("MAST", () -> {
+      final MASTAI agent = new MASTAI();
+      agent.setAdaptiveTime(adaptiveTime);
+      return agent;
+    });
+    tournament.addAgent("MAST-LGR", () -> {
+      final MASTLGRAI agent = new MASTLGRAI();
+      agent.setAdaptiveTime(adaptiveTime);
+      return agent;
+    });
+    tournament.addAgent("NST", () -> {
+      final NSTAI agent = new NSTAI();
+      agent.setAdaptiveTime(adaptiveTime);
+      return agent;
+    });
+    tournament.addAgent("NST-LGR", () -> {
+      final NSTLGRAI agent = new NSTLGRAI();
+      agent.setAdaptiveTime(adaptiveTime);
+      return agent;
+    });
+    tournament.addAgent("Random", () -> new RandomAI());
+
+    tournament.setGamesPerPairing(150);
+    tournament.setGivenTime(5.0);
+    tournament.setCheckpointDirectory(Paths.get("tournament"));
+
+    // All games are played, to stop a pairing once it is settled whether agent A is 50 Elo stronger or
+    // not stronger at all, add: tournament.setSequentialTest(SPRT.elo(0, 50, 0.05, 0.05));
+
+    final TrialLog log = new TrialLog(Paths.get("tournament-log.jsonl"));
+    tournament.addListener(log);
+
+    final List<Pairing> pairings;
+    try {
+      pairings = tournament.run();
+    } finally {
+      log.close();
+    }
+    tournament.printCrossTables(pairings);
+  }
+
+  /**
+   * Adds a game, every agent plays every other agent in it
+   * @param name Name of the game in Ludii, e.g. "Breakthrough.lud"
+   * @param options Options of the game, e.g. "Board Size/6x6"
+   */
+  public void addGame(final String name, final List<String> options) {
+    final String label = options.isEmpty() ? name : name + " " + options;
+    final Game game = options.isEmpty() ? GameLoader.loadGameFromName(name) : GameLoader.loadGameFromName(name, options);
+    if (game.players().count() != 2) {
+      throw new IllegalArgumentException(label + " is not a 2-player game");
+    }
+    games.put(label, game);
+  }
+
+  /**
+   * Adds an agent, which plays every other agent in every game
+   * @param name Name of the agent in the cross-tables
+   * @param agent Factory of the agent, called for every game
+   */
+  public void addAgent(final String name, final Supplier<AI> agent) {
+    agents.put(name, agent);
+  }
+
+  /**
+   * Adds a listener, told about every move and game of every pairing
+   * @param listener
+   */
+  public void addListener(final TrialListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Plays all pairings, and waits until all of them have finished
+   * @return Every pairing of every game, agent A of a pairing added before agent B
+   * @throws IOException If a checkpoint cannot be read or written
+   */
+  public List<Pairing> run() throws IOException {
+    final List<Pairing> pairings = new ArrayList<Pairing>();
+    final List<TrialRunner> runners = new ArrayList<TrialRunner>();
+    final List<TrialResults> results = new ArrayList<TrialResults>();
+    final List<TrialCheckpoint> checkpoints = new ArrayList<TrialCheckpoint>();
+    final int gamesPerSeating = gamesPerPairing / 2;
+    final int totalGames = 2 * gamesPerSeating * games.size() * agents.size() * (agents.size() - 1) / 2;
+
+    final AtomicInteger finishedGames = new AtomicInteger();
+
+    try {
+      if (checkpointDirectory != null) {
+        Files.createDirectories(checkpointDirectory);
+      }
+
+      // Two seatings for every pairing, with the same seed so that game i of both has the same opening
+      // (a resumed seating keeps the seed of its checkpoint). Every game has its own seed, so the
+      // games of a pairing never share a seed across games in the log.
+      final List<String> names = new ArrayList<String>(agents.keySet());
+      int gameNumber = 0;
+      for (final Map.Entry<String, Game> game : games.entrySet()) {
+        final long pairingSeed = TrialRunner.gameSeed(seed, gameNumber++);
+        for (int a = 0; a < names.size(); a++) {
+          for (int b = a + 1; b < names.size(); b++) {
+            final Pairing pairing = new Pairing(game.getKey(), names.get(a), names.get(b));
+            pairings.add(pairing);
+
+            final TrialCheckpoint aFirstCheckpoint = checkpoint(game.getKey(), pairing.agentA, pairing.agentB, pairingSeed);
+            final TrialCheckpoint bFirstCheckpoint = checkpoint(
+              game.getKey(), pairing.agentB, pairing.agentA, (aFirstCheckpoint != null) ? aFirstCheckpoint.seed() : pairingSeed
+            );
+            addSeating(game.getValue(), pairing.agentA, pairing.agentB, pairing.aFirst, aFirstCheckpoint, runners, results, checkpoints);
+            addSeating(game.getValue(), pairing.agentB, pairing.agentA, pairing.bFirst, bFirstCheckpoint, runners, results, checkpoints);
+
+            final TrialListener progress = progress(game.getKey(), finishedGames, totalGames);
+            runners.get(runners.size() - 2).addListener(progress);
+            runners.get(runners.size() - 1).addListener(progress);
+            runners.get(runners.size() - 2).setSeed(pairingSeed);
+            runners.get(runners.size() - 1).setSeed(pairingSeed);
+          }
+        }
+      }
+
+      for (final TrialResults seatingResults : results) {
+        finishedGames.addAndGet(seatingResults.numGames());
+      }
+
+      final Semaphore searches = (maxConcurrentSearches > 0) ? new Semaphore(maxConcurrentSearches, true) : null;
+      final ExecutorService pool = TrialRunner.newGamePool(numParallelGames);
+      try {
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < gamesPerSeating; i++) {
+          for (int s = 0; s < runners.size(); s++) {
+            final TrialCheckpoint checkpoint = checkpoints.get(s);
+            if (checkpoint == null || !checkpoint.isFinished(i)) {
+              // The two seatings of a pairing are next to each other
+              final Pairing pairing = pairings.get(s / 2);
+              final IntPredicate skip = (sequentialTest == null) ? null : gameIndex -> pairing.skip(gameIndex, sequentialTest);
+              final long trialSeed = (checkpoint != null) ? checkpoint.seed() : runners.get(s).getSeed();
+              futures.add(runners.get(s).submitGame(pool, i, trialSeed, searches, checkpoint, results.get(s), skip));
+            }
+          }
+        }
+        TrialRunner.awaitAll(futures);
+      } finally {
+        pool.shutdownNow();
+      }
+    } finally {
+      for (final TrialCheckpoint checkpoint : checkpoints) {
+        if (checkpoint != null) {
+          checkpoint.close();
+        }
+      }
+    }
+
+    return pairings;
+  }
+
+  /**
+   * Prints the cross-table of every game, and of all games together, in the format of the
+   * tables of the README: the win-rate (%) of the agent of the row against the agent of the
+   * column, with its 95% confidence interval
+   * @param pairings Pairings played by run
+   */
+  public void printCrossTables(final List<Pairing> pairings) {
+    for (final String game : games.keySet()) {
+      final List<Pairing> gamePairings = new ArrayList<Pairing>();
+      for (final Pairing pairing : pairings) {
+        if (pairing.gameName.equals(game)) {
+          gamePairings.add(pairing);
+        }
+      }
+      printCrossTable(game, gamePairings);
+    }
+    printCrossTable("All games", pairings);
+
+    if (sequentialTest != null) {
+      int played = 0;
+      System.out.println("\n### " + sequentialTest + ", score of the first agent");
+      for (final Pairing pairing : pairings) {
+        System.out.println("- " + pairing + ": " + pairing.numGames() + " games, " + pairing.describe(sequentialTest));
+        played += pairing.numGames();
+      }
+      System.out.println("Games played: " + played + " of " + pairings.size() * gamesPerPairing);
+    }
+  }
+
+  // Prints the win-rates of every agent against every other agent in the pairings, and against all of them
+  private void printCrossTable(final String title, final List<Pairing> pairings) {
+    final List<String> names = new ArrayList<String>(agents.keySet());
+
+    System.out.println("\n### Win-rate(%) of the row against the column, " + title);
+    String header = "| Agent |";
+    String rule = "|-------|";
+    for (final String name : names) {
+      header += " " + name + " |";
+      rule += "---|";
+    }
+    System.out.println(header + " All |");
+    System.out.println(rule + "---|");
+
+    // The win-rates come from the pairs of games with the same seed in both seatings
+    for (final String row : names) {
+      String line = "| " + row + " |";
+      final List<Double> allScores = new ArrayList<Double>();
+      for (final String column : names) {
+        final List<Double> scores = new ArrayList<Double>();
+        for (final Pairing pairing : pairings) {
+          if ((pairing.agentA.equals(row) && pairing.agentB.equals(column)) ||
+              (pairing.agentA.equals(column) && pairing.agentB.equals(row))) {
+            for (final double score : pairing.pairScores(row)) {
+              scores.add(score);
+            }
+          }
+        }
+        line += " " + (row.equals(column) ? "-" : TrialLogReader.pairedWinRate(TrialResults.toArray(scores))) + " |";
+        allScores.addAll(scores);
+      }
+      System.out.println(line + " " + TrialLogReader.pairedWinRate(TrialResults.toArray(allScores)) + " |");
+    }
+  }
+
+  // Prints every game of a game as it finishes
+  private static TrialListener progress(final String game, final AtomicInteger finishedGames, final int totalGames) {
+    return result -> System.out.println(
+      "[" + finishedGames.incrementAndGet() + "/" + totalGames + "] " + game + ": " +
+      result.agentNames[1] + " vs " + result.agentNames[2] + ", " +
+      ((result.winner == 0) ? "no winner" : "won by " + result.agentNames[result.winner]) +
+      (result.moveLimitHit ? " (Move Limit Hit)" : "")
+    );
+  }
+
+  // Creates the runner of one seating, and adds the results of its checkpoint
+  private void addSeating(
+    final Game game,
+    final String first,
+    final String second,
+    final TrialResults seatingResults,
+    final TrialCheckpoint checkpoint,
+    final List<TrialRunner> runners,
+    final List<TrialResults> results,
+    final List<TrialCheckpoint> checkpoints
+  ) {
+    final TrialRunner runner = new TrialRunner(game, Arrays.asList(agents.get(first), agents.get(second)));
+    runner.setGivenTime(givenTime);
+    runner.setMaxIterations(maxIterations);
+    runner.setMoveLimit(moveLimit);
+    runner.setOpeningMoves(openingMoves);
+    for (final TrialListener listener : listeners) {
+      runner.addListener(listener);
+    }
+
+    if (checkpoint != null) {
+      for (final GameResult result : checkpoint.finishedGames()) {
+        if (result.gameIndex < gamesPerPairing / 2) {
+          seatingResults.add(result);
+        }
+      }
+    }
+
+    runners.add(runner);
+    results.add(seatingResults);
+    checkpoints.add(checkpoint);
+  }
+
+  // Opens the checkpoint of a seating, null without a checkpoint directory
+  private TrialCheckpoint checkpoint(
+    final String game,
+    final String first,
+    final String second,
+    final long seatingSeed
+  ) throws IOException {
+    if (checkpointDirectory == null)
+      return null;
+
+    // Every setting that changes the results is in the key, so a checkpoint is only resumed with the same ones
+    final String key = game + ": " + first + " vs " + second + ", " + gamesPerPairing + " games per pairing, " +
+      givenTime + " s per move, " + maxIterations + " iterations per move, move limit " + moveLimit + ", " +
+      openingMoves + " opening moves, " + ((sequentialTest != null) ? sequentialTest.toString() : "no sequential test");
+    final String file = (game + "-" + first + "-vs-" + second).replaceAll("[^A-Za-z0-9.-]+", "_") + ".jsonl";
+    return new TrialCheckpoint(checkpointDirectory.resolve(file), key, seatingSeed);
+  }
+
+  public int getGamesPerPairing() {
+    return gamesPerPairing;
+  }
+
+  public void setGamesPerPairing(final int gamesPerPairing) {
+    if (gamesPerPairing < 2 || gamesPerPairing % 2 != 0) {
+      throw new IllegalArgumentException("Games per pairing must be even and at least 2, got: " + gamesPerPairing);
+    }
+    this.gamesPerPairing = gamesPerPairing;
+  }
+
+  public double getGivenTime() {
+    return givenTime;
+  }
+
+  public void setGivenTime(final double givenTime) {
+    this.givenTime = givenTime;
+  }
+
+  public int getMaxIterations() {
+    return maxIterations;
+  }
+
+  public void setMaxIterations(final int maxIterations) {
+    this.maxIterations = maxIterations;
+  }
+
+  public int getMoveLimit() {
+    return moveLimit;
+  }
+
+  public void setMoveLimit(final int moveLimit) {
+    if (moveLimit < 1) {
+      throw new IllegalArgumentException("Move limit must be at least 1, got: " + moveLimit);
+    }
+    this.moveLimit = moveLimit;
+  }
+
+  public int getNumParallelGames() {
+    return numParallelGames;
+  }
+
+  public void setNumParallelGames(final int numParallelGames) {
+    if (numParallelGames < 1) {
+      throw new IllegalArgumentException("Number of parallel games must be at least 1, got: " + numParallelGames);
+    }
+    this.numParallelGames = numParallelGames;
+  }
+
+  public int getMaxConcurrentSearches() {
+    return maxConcurrentSearches;
+  }
+
+  public void setMaxConcurrentSearches(final int maxConcurrentSearches) {
+    if (maxConcurrentSearches < 0) {
+      throw new IllegalArgumentException("Max concurrent searches cannot be negative, got: " + maxConcurrentSearches);
+    }
+    this.maxConcurrentSearches = maxConcurrentSearches;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(final long seed) {
+    this.seed = seed;
+  }
+
+  public int getOpeningMoves() {
+    return openingMoves;
+  }
+
+  public void setOpeningMoves(final int openingMoves) {
+    if (openingMoves < 0) {
+      throw new IllegalArgumentException("Opening moves cannot be negative, got: " + openingMoves);
+    }
+    this.openingMoves = openingMoves;
+  }
+
+  public SPRT getSequentialTest() {
+    return sequentialTest;
+  }
+
+  public void setSequentialTest(final SPRT sequentialTest) {
+    this.sequentialTest = sequentialTest;
+  }
+
+  public Path getCheckpointDirectory() {
+    return checkpointDirectory;
+  }
+
+  public void setCheckpointDirectory(final Path checkpointDirectory) {
+    this.checkpointDirectory = checkpointDirectory;
+  }
+}
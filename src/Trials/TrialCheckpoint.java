@@ -0,0 +1,154 @@
+package Trials;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checkpoint of a long trial, so that it can be resumed after the JVM dies.
+ *
+ * The file is a JSON lines file: the first line names the campaign (the game and agents) and
+ * holds its seed, and every following line is the result of a finished game, written with
+ * GameResult.toJson and forced to the disk before the game counts as finished:
+ *   {"type":"campaign","key":"Knightthrough: MAST-LGR AI vs MCTS-UCT AI","seed":1873625591}
+ *   {"type":"game","game":0,"seed":-4962768465676381896,"winner":1,...}
+ *
+ * When the file already exists, the finished games are read back and the campaign seed of the
+ * file is used instead of the one given, so the games still to play get the same seeds as in
+ * the first run. TrialRunner.run skips the finished games and plays the others, starting from
+ * the first unfinished one. A line cut off by a crash is dropped.
+ *
+ * @author Kiran Gupta
+ */
+public class TrialCheckpoint implements AutoCloseable {
+  private final Path file;
+
+  private final FileChannel channel;
+
+  /** Seed of the campaign, from which the seed of every game is made */
+  private final long seed;
+
+  /** Finished games, by game index */
+  private final Map<Integer, GameResult> finished = new TreeMap<Integer, GameResult>();
+
+  /**
+   * Opens the checkpoint of a campaign, creating it if it does not exist yet
+   * @param file
+   * @param key Name of the campaign, e.g. the game and agents, which must match the one of the file
+   * @param seed Seed of the campaign, used if the file does not exist yet
+   * @throws IOException
+   * @throws IllegalStateException If the file is the checkpoint of another campaign
+   */
+  public TrialCheckpoint(final Path file, final String key, final long seed) throws IOException {
+    this.file = file;
+    final List<String> lines = readCompleteLines(file);
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+    if (lines.isEmpty()) {
+      this.seed = seed;
+      channel.truncate(0);
+      final StringBuilder header = new StringBuilder("{\"type\":\"campaign\",\"key\":");
+      Json.appendString(header, key);
+      header.append(",\"seed\":").append(seed).append('}');
+      write(header.toString());
+      return;
+    }
+
+    final Map<?, ?> header = (Map<?, ?>) Json.parse(lines.get(0));
+    if (!"campaign".equals(header.get("type")) || !key.equals(header.get("key"))) {
+      channel.close();
+      throw new IllegalStateException(
+        file + " is the checkpoint of another campaign: " + header.get("key") + ", expected: " + key
+      );
+    }
+    this.seed = ((Number) header.get("seed")).longValue();
+
+    for (int i = 1; i < lines.size(); i++) {
+      final GameResult result = GameResult.fromJson((Map<?, ?>) Json.parse(lines.get(i)));
+      finished.put(result.gameIndex, result);
+    }
+
+    // Drop the line that was being written when the JVM died, if any
+    long length = 0;
+    for (final String line : lines) {
+      length += line.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+    channel.truncate(length);
+  }
+
+  /**
+   * @return Seed of the campaign
+   */
+  public long seed() {
+    return seed;
+  }
+
+  /**
+   * @param gameIndex
+   * @return Whether the game has finished in this run or an earlier one
+   */
+  public synchronized boolean isFinished(final int gameIndex) {
+    return finished.containsKey(gameIndex);
+  }
+
+  /**
+   * @return Results of the finished games, ordered by game index
+   */
+  public synchronized List<GameResult> finishedGames() {
+    return new ArrayList<GameResult>(finished.values());
+  }
+
+  /**
+   * Writes the result of a finished game, and waits until it is on the disk
+   * @param result
+   * @throws IOException
+   */
+  public synchronized void save(final GameResult result) throws IOException {
+    write(result.toJson());
+    finished.put(result.gameIndex, result);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  @Override
+  public String toString() {
+    return file.toString();
+  }
+
+  // Appends a line and forces it to the disk, a game takes minutes so this is not worth batching
+  private void write(final String line) throws IOException {
+    final ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+    channel.position(channel.size());
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    channel.force(false);
+  }
+
+  // Reads the lines of the file that end with a line break, a missing file has no lines
+  private static List<String> readCompleteLines(final Path file) throws IOException {
+    final List<String> lines = new ArrayList<String>();
+    if (!Files.exists(file))
+      return lines;
+
+    final String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    int start = 0;
+    int end;
+    while ((end = text.indexOf('\n', start)) >= 0) {
+      lines.add(text.substring(start, end));
+      start = end + 1;
+    }
+    return lines;
+  }
+}
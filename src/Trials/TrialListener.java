@@ -0,0 +1,23 @@
+package Trials;
+
+/**
+ * Receives the results of a trial while it runs.
+ * Games are played on several threads at once, so the methods may be called from any of them
+ * at the same time.
+ *
+ * @author Kiran Gupta
+ */
+public interface TrialListener {
+  /**
+   * Called after every move of every game, once the move has been applied
+   * @param record
+   */
+  default void moveMade(MoveRecord record) {
+  }
+
+  /**
+   * Called when a game has finished, before its result is added to the trial results
+   * @param result
+   */
+  void gameFinished(GameResult result);
+}
@@ -0,0 +1,133 @@
+package Trials;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Streams the moves and results of a trial to a JSON lines file, one record per line:
+ *   {"type":"move","game":3,"ply":12,"mover":1,"agent":"MAST AI","move":"...","nanos":4999102311,"counters":{"i":31022,...}}
+ *   {"type":"game","game":3,"seed":-4962768465676381896,"seatsSwapped":false,"winner":1,"moveLimitHit":false,"agents":[null,"MAST AI","MCTS-UCT AI"],"moves":[0,31,30],"searchNanos":[0,...]}
+ *
+ * The game threads only format a record and put it in a queue; a single writer thread takes
+ * the records out and writes them through a buffer, so the searches never wait for the disk.
+ * The file is opened for appending, so several trials can be logged into the same file.
+ * TrialLogReader aggregates the file.
+ *
+ * @author Kiran Gupta
+ */
+public class TrialLog implements TrialListener, Closeable {
+  /** Put in the queue by close, tells the writer thread to stop */
+  private static final String END = new String("end");
+
+  private final BlockingQueue<String> records = new LinkedBlockingQueue<String>();
+
+  private final BufferedWriter writer;
+
+  private final Thread writerThread;
+
+  /** First error of the writer thread, thrown by close */
+  private volatile IOException failure = null;
+
+  /**
+   * Opens the log, creating the file if it does not exist yet
+   * @param file
+   * @throws IOException
+   */
+  public TrialLog(final Path file) throws IOException {
+    writer = Files.newBufferedWriter(
+      file,
+      StandardCharsets.UTF_8,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.APPEND
+    );
+
+    writerThread = new Thread(this::writeRecords, "trial-log");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @Override
+  public void moveMade(final MoveRecord record) {
+    final StringBuilder line = new StringBuilder(256);
+    line.append("{\"type\":\"move\",\"game\":").append(record.gameIndex)
+      .append(",\"ply\":").append(record.ply)
+      .append(",\"mover\":").append(record.mover)
+      .append(",\"agent\":");
+    Json.appendString(line, record.agentName);
+    line.append(",\"move\":");
+    Json.appendString(line, record.move);
+    line.append(",\"nanos\":").append(record.elapsedNanos).append(",\"counters\":{");
+
+    boolean first = true;
+    for (final Map.Entry<String, Double> counter : record.counters.entrySet()) {
+      if (!first) {
+        line.append(',');
+      }
+      Json.appendString(line, counter.getKey());
+      line.append(':');
+      Json.appendNumber(line, counter.getValue());
+      first = false;
+    }
+    line.append("}}");
+    records.add(line.toString());
+  }
+
+  @Override
+  public void gameFinished(final GameResult result) {
+    records.add(result.toJson());
+  }
+
+  /**
+   * Writes the records that are still queued, and closes the file
+   */
+  @Override
+  public void close() throws IOException {
+    records.add(END);
+    boolean interrupted = false;
+    while (writerThread.isAlive()) {
+      try {
+        writerThread.join();
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    writer.close();
+    if (failure != null)
+      throw failure;
+  }
+
+  // Writer thread: writes the records until close, flushing whenever the queue is empty
+  private void writeRecords() {
+    try {
+      while (true) {
+        String record = records.poll();
+        if (record == null) {
+          writer.flush();
+          record = records.take();
+        }
+        if (record == END)
+          return;
+
+        writer.write(record);
+        writer.newLine();
+      }
+    } catch (final IOException e) {
+      failure = e;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
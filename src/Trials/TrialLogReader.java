@@ -0,0 +1,238 @@
+package Trials;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads trial logs written by TrialLog and prints, for every agent and opponent, the win-rate
+ * with its 95% confidence interval (in the format of the tables of the README), followed by
+ * the mean search time and iterations of every agent per move.
+ *
+ * Games of two players are also grouped into pairs: two games with the same seed and the same
+ * agents in each other's seats, as played by paired trials and by the two seatings of a
+ * tournament pairing. The win-rate from the pairs is printed next to the one from the games.
+ *
+ * Usage: TrialLogReader <log file>...
+ *
+ * Draws and games that did not finish count as half a win, and the interval is the normal
+ * approximation p +- 1.96 * sqrt(p * (1 - p) / n).
+ *
+ * @author Kiran Gupta
+ */
+public class TrialLogReader {
+  /** z value of a two-sided 95% confidence interval */
+  public static final double Z_95 = 1.96;
+
+  /** Games of an agent against the same opponents */
+  private static class Pairing {
+    int games = 0;
+    int wins = 0;
+    int draws = 0;
+    final List<Double> pairScores = new ArrayList<Double>();
+  }
+
+  /** Moves of an agent */
+  private static class AgentMoves {
+    long moves = 0;
+    long nanos = 0;
+    long movesWithIterations = 0;
+    double iterations = 0;
+  }
+
+  private final Map<String, Pairing> pairings = new LinkedHashMap<String, Pairing>();
+
+  private final Map<String, AgentMoves> agentMoves = new LinkedHashMap<String, AgentMoves>();
+
+  /** Games of two players still waiting for the other game of their pair, by seed and agents */
+  private final Map<String, GameResult> unpaired = new HashMap<String, GameResult>();
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: TrialLogReader <log file>...");
+      System.exit(2);
+    }
+
+    final TrialLogReader reader = new TrialLogReader();
+    for (final String file : args) {
+      reader.read(file);
+    }
+    reader.print();
+  }
+
+  /**
+   * Adds the records of a log file
+   * @param file
+   * @throws IOException
+   */
+  public void read(final String file) throws IOException {
+    try (BufferedReader lines = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = lines.readLine()) != null) {
+        lineNumber++;
+        if (line.trim().isEmpty())
+          continue;
+
+        try {
+          final Map<?, ?> record = (Map<?, ?>) Json.parse(line);
+          if ("move".equals(record.get("type"))) {
+            addMove(record);
+          } else if ("game".equals(record.get("type"))) {
+            addGame(record);
+          }
+        } catch (final RuntimeException e) {
+          // The last line of a log whose trial was killed may be cut off
+          System.err.println(file + ":" + lineNumber + ": skipped, " + e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Prints the win-rates and the moves of every agent
+   */
+  public void print() {
+    System.out.println("| Agent | Opponent | Games | Wins | Draws | Win-rate(%) | Pairs | Paired win-rate(%) |");
+    System.out.println("|-------|----------|-------|------|-------|-------------|-------|--------------------|");
+    for (final Map.Entry<String, Pairing> entry : pairings.entrySet()) {
+      final Pairing pairing = entry.getValue();
+      System.out.println(
+        "| " + entry.getKey() + " | " + pairing.games + " | " + pairing.wins + " | " + pairing.draws + " | " +
+        winRate(pairing.wins + 0.5 * pairing.draws, pairing.games) + " | " +
+        pairing.pairScores.size() + " | " + pairedWinRate(TrialResults.toArray(pairing.pairScores)) + " |"
+      );
+    }
+
+    System.out.println();
+    System.out.println("| Agent | Moves | Mean time per move (ms) | Mean iterations per move |");
+    System.out.println("|-------|-------|-------------------------|--------------------------|");
+    for (final Map.Entry<String, AgentMoves> entry : agentMoves.entrySet()) {
+      final AgentMoves moves = entry.getValue();
+      System.out.println(
+        "| " + entry.getKey() + " | " + moves.moves + " | " +
+        String.format("%.1f", moves.nanos / 1e6 / Math.max(1, moves.moves)) + " | " +
+        ((moves.movesWithIterations > 0) ? String.format("%.0f", moves.iterations / moves.movesWithIterations) : "-") + " |"
+      );
+    }
+  }
+
+  /**
+   * Formats a win-rate like the tables of the README, e.g. "70.7 (&#177;5.19)"
+   * @param score Wins, draws counting as half a win
+   * @param games
+   * @return Win-rate in percent with the half-width of its 95% confidence interval
+   */
+  public static String winRate(final double score, final int games) {
+    if (games == 0)
+      return "-";
+
+    final double p = score / games;
+    final double halfWidth = Z_95 * Math.sqrt(p * (1.0 - p) / games);
+    return String.format("%.1f (&#177;%.2f)", 100.0 * p, 100.0 * halfWidth);
+  }
+
+  /**
+   * Formats the win-rate of paired games like winRate, with the confidence interval of the mean
+   * score of the pairs. The two games of a pair share their seed and swap the seats, so the
+   * first-move advantage cancels out within a pair, and so does the luck of the opening when the
+   * seed chooses some random opening moves. The scores of the pairs then vary less than the
+   * scores of single games.
+   * @param pairScores Score of every pair, the mean of the scores of its two games
+   * @return Win-rate in percent with the half-width of its 95% confidence interval
+   */
+  public static String pairedWinRate(final double[] pairScores) {
+    final int n = pairScores.length;
+    if (n == 0)
+      return "-";
+
+    double sum = 0;
+    double sumOfSquares = 0;
+    for (final double score : pairScores) {
+      sum += score;
+      sumOfSquares += score * score;
+    }
+    final double mean = sum / n;
+    final double variance = Math.max(0.0, sumOfSquares / n - mean * mean);
+    final double halfWidth = Z_95 * Math.sqrt(variance / n);
+    return String.format("%.1f (&#177;%.2f)", 100.0 * mean, 100.0 * halfWidth);
+  }
+
+  // Adds a game to the pairing of every player with its opponents, and pairs it up if it has two players
+  private void addGame(final Map<?, ?> record) {
+    final List<?> agents = (List<?>) record.get("agents");
+    final int winner = ((Number) record.get("winner")).intValue();
+
+    for (int p = 1; p < agents.size(); p++) {
+      String opponents = "";
+      for (int q = 1; q < agents.size(); q++) {
+        if (q != p) {
+          opponents += (opponents.isEmpty() ? "" : ", ") + agents.get(q);
+        }
+      }
+
+      final Pairing pairing = pairings.computeIfAbsent(agents.get(p) + " | " + opponents, key -> new Pairing());
+      pairing.games++;
+      if (winner == p) {
+        pairing.wins++;
+      } else if (winner == 0) {
+        pairing.draws++;
+      }
+    }
+
+    if (agents.size() == 3) {
+      addToPair(GameResult.fromJson(record));
+    }
+  }
+
+  // Pairs a game with the game of the same seed and agents in the other seats, if it was read already
+  // The seats count as swapped when the agents are (a tournament plays each seating as its own
+  // trial) or when the game says so (a paired trial, where both agents may have the same name)
+  private void addToPair(final GameResult game) {
+    final String agent1 = game.agentNames[1];
+    final String agent2 = game.agentNames[2];
+    final String key = game.seed + " | " + ((agent1.compareTo(agent2) <= 0) ? agent1 + " | " + agent2 : agent2 + " | " + agent1);
+
+    final GameResult first = unpaired.get(key);
+    if (first == null) {
+      unpaired.put(key, game);
+      return;
+    }
+    if (first.seatsSwapped == game.seatsSwapped && first.agentNames[1].equals(agent1))
+      return;
+
+    // The agent of player p in the first game is the agent of player 3 - p in the second one
+    unpaired.remove(key);
+    for (int p = 1; p <= 2; p++) {
+      final Pairing pairing = pairings.get(first.agentNames[p] + " | " + first.agentNames[3 - p]);
+      pairing.pairScores.add(0.5 * (score(first, p) + score(game, 3 - p)));
+    }
+  }
+
+  // Score of a player in a game: 1 for a win, 0.5 for a draw or a game that did not finish
+  private static double score(final GameResult game, final int player) {
+    if (game.winner == 0)
+      return 0.5;
+    return (game.winner == player) ? 1.0 : 0.0;
+  }
+
+  // Adds the time and iterations of a move to its agent
+  private void addMove(final Map<?, ?> record) {
+    final AgentMoves moves = agentMoves.computeIfAbsent(String.valueOf(record.get("agent")), key -> new AgentMoves());
+    moves.moves++;
+    moves.nanos += ((Number) record.get("nanos")).longValue();
+
+    final Map<?, ?> counters = (Map<?, ?>) record.get("counters");
+    if (counters != null && counters.get("i") instanceof Number) {
+      moves.movesWithIterations++;
+      moves.iterations += ((Number) counters.get("i")).doubleValue();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package Trials;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of all the games of a trial. Games played at the same time on different threads
+ * add their results here, so every method is synchronized.
+ *
+ * The results are counted by agent rather than by seat: agent 1 is player 1 of the games whose
+ * seats were not swapped, and player 2 of the others. Without paired games they are the same.
+ *
+ * @author Kiran Gupta
+ */
+public class TrialResults {
+  /** Results of the finished games, in the order in which they finished */
+  private final List<GameResult> games = new ArrayList<GameResult>();
+
+  /** Wins of every agent, index 0 counts the draws and the games that did not finish */
+  private final int[] wins;
+
+  /** Moves and search time of every agent over all games */
+  private final long[] moves;
+  private final long[] searchNanos;
+
+  /**
+   * Constructor
+   * @param numPlayers
+   */
+  public TrialResults(final int numPlayers) {
+    wins = new int[numPlayers + 1];
+    moves = new long[numPlayers + 1];
+    searchNanos = new long[numPlayers + 1];
+  }
+
+  /**
+   * Adds the result of a finished game
+   * @param result
+   */
+  public synchronized void add(final GameResult result) {
+    games.add(result);
+    wins[result.agentOf(result.winner)]++;
+    for (int p = 1; p < wins.length; p++) {
+      moves[result.agentOf(p)] += result.moves[p];
+      searchNanos[result.agentOf(p)] += result.searchNanos[p];
+    }
+  }
+
+  /**
+   * @return Number of finished games
+   */
+  public synchronized int numGames() {
+    return games.size();
+  }
+
+  /**
+   * @param agent
+   * @return Number of games won by the agent
+   */
+  public synchronized int wins(final int agent) {
+    return wins[agent];
+  }
+
+  /**
+   * @return Number of draws and of games that did not finish
+   */
+  public synchronized int otherResults() {
+    return wins[0];
+  }
+
+  /**
+   * @param agent
+   * @return Number of moves made by the agent in all games
+   */
+  public synchronized long moves(final int agent) {
+    return moves[agent];
+  }
+
+  /**
+   * @param agent
+   * @return Time spent in selectAction by the agent in all games, in nanoseconds
+   */
+  public synchronized long searchNanos(final int agent) {
+    return searchNanos[agent];
+  }
+
+  /**
+   * Scores of the first agent in the pairs whose two games have both finished, when the games are
+   * played in pairs (game 2k, and game 2k + 1 with the same seed and the seats swapped)
+   * @return Score of every pair: the mean of the scores of its two games (0, 0.25, 0.5, 0.75 or 1)
+   */
+  public synchronized double[] pairScores() {
+    final Map<Integer, GameResult> byIndex = new HashMap<Integer, GameResult>();
+    for (final GameResult result : games) {
+      byIndex.put(result.gameIndex, result);
+    }
+
+    final List<Double> scores = new ArrayList<Double>();
+    for (final GameResult result : games) {
+      final GameResult second = byIndex.get(result.gameIndex + 1);
+      if (result.gameIndex % 2 == 0 && second != null) {
+        scores.add((result.firstAgentScore() + second.firstAgentScore()) / 2);
+      }
+    }
+    return toArray(scores);
+  }
+
+  /**
+   * Scores of agent 1 of a seating in the pairs made by the games with the same index (and seed) in
+   * two seatings of the same agents, such as the seatings of a tournament pairing
+   * @param firstSeating Results with the agent as agent 1
+   * @param secondSeating Results with the agent as agent 2
+   * @return Score of every pair whose two games have both finished
+   */
+  public static double[] pairScores(final TrialResults firstSeating, final TrialResults secondSeating) {
+    final Map<Integer, GameResult> seconds = new HashMap<Integer, GameResult>();
+    for (final GameResult result : secondSeating.games()) {
+      seconds.put(result.gameIndex, result);
+    }
+
+    final List<Double> scores = new ArrayList<Double>();
+    for (final GameResult result : firstSeating.games()) {
+      final GameResult second = seconds.get(result.gameIndex);
+      if (second != null) {
+        scores.add((result.firstAgentScore() + 1.0 - second.firstAgentScore()) / 2);
+      }
+    }
+    return toArray(scores);
+  }
+
+  // Unboxes scores
+  static double[] toArray(final List<Double> scores) {
+    final double[] array = new double[scores.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = scores.get(i);
+    }
+    return array;
+  }
+
+  /**
+   * @return Results of the finished games, ordered by game index
+   */
+  public synchronized List<GameResult> games() {
+    final List<GameResult> sorted = new ArrayList<GameResult>(games);
+    sorted.sort(Comparator.comparingInt(result -> result.gameIndex));
+    return sorted;
+  }
+}
@@ -0,0 +1,423 @@
+package Trials;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+import game.Game;
+import main.collections.FastArrayList;
+import other.AI;
+import other.context.Context;
+import other.move.Move;
+import other.trial.Trial;
+
+/**
+ * Plays the games of a trial on a pool of threads, several games at once.
+ *
+ * Every game gets its own Context and a new agent for every player (from the factories), so
+ * nothing is shared between games except the Game, which Ludii does not change while playing.
+ * The results are added to a TrialResults as the games finish.
+ *
+ * Games only run one search at a time (the players move in turn), but with more games than
+ * cores the searches would share the cores and get less CPU time than they are given. The
+ * number of searches running at once can be capped: a search waits for its turn before its
+ * clock starts, in the order in which the searches asked for it.
+ *
+ * Every game gets a seed made from the seed of the trial and its index, which chooses the random
+ * opening moves played before the agents take over. With a TrialCheckpoint the finished games
+ * are saved as they finish, and a trial that was stopped plays only the games it had not finished.
+ * With a sequential test the games that have not started yet are skipped once the test is decided
+ * (the games already being played still finish and count).
+ *
+ * With paired games (two players only) games 2k and 2k + 1 have the same seed, and game 2k + 1 is
+ * played with the seats swapped, so each agent plays both sides of the same opening. The results
+ * are still counted by agent (see TrialResults), and a pair is played or skipped as a whole.
+ *
+ * @author Kiran Gupta
+ */
+public class TrialRunner {
+  private final Game game;
+
+  private final List<Supplier<AI>> agents;                    // factory of the agent of every player (player 1 first)
+
+  private double givenTime = 5.0;                             // seconds given to every move (negative: no limit)
+
+  private int maxIterations = -1;                             // iterations given to every move (negative: no limit)
+
+  private int moveLimit = Integer.MAX_VALUE;                  // most moves played in a game
+
+  private int numParallelGames = Runtime.getRuntime().availableProcessors(); // games played at once
+
+  private int maxConcurrentSearches = 0;                      // most searches running at once (0: no cap)
+
+  private long seed = System.nanoTime();                      // seed of the trial, from which every game gets its own
+
+  private int openingMoves = 0;                               // random moves played from the seed of a game before the agents play
+
+  private boolean pairedGames = false;                        // play every seed twice, the second time with the seats swapped
+
+  private SPRT sequentialTest = null;                         // stops the trial once the result of player 1 is settled (null: play all games)
+
+  private final List<TrialListener> listeners = new CopyOnWriteArrayList<TrialListener>(); // told about every move and game
+
+  /**
+   * Constructor
+   * @param game Game to play, shared by all games of the trial
+   * @param agents Factory of the agent of every player, player 1 first
+   */
+  public TrialRunner(final Game game, final List<Supplier<AI>> agents) {
+    if (agents.size() != game.players().count()) {
+      throw new IllegalArgumentException(
+        "Need one agent for each of the " + game.players().count() + " players, got: " + agents.size()
+      );
+    }
+    this.game = game;
+    this.agents = new ArrayList<Supplier<AI>>(agents);
+  }
+
+  /**
+   * Plays the games, and waits until all of them have finished
+   * @param numGames
+   * @return Results of all games
+   */
+  public TrialResults run(final int numGames) {
+    return run(numGames, null);
+  }
+
+  /**
+   * Plays the games that the checkpoint has not seen finish, and waits until all of them have finished.
+   * The seeds of the games come from the seed of the checkpoint.
+   * @param numGames
+   * @param checkpoint Checkpoint of the trial, null for none
+   * @return Results of all games, including the ones finished before
+   */
+  public TrialResults run(final int numGames, final TrialCheckpoint checkpoint) {
+    final TrialResults results = new TrialResults(agents.size());
+    final long trialSeed = (checkpoint != null) ? checkpoint.seed() : seed;
+    if (checkpoint != null) {
+      for (final GameResult result : checkpoint.finishedGames()) {
+        if (result.gameIndex < numGames) {
+          results.add(result);
+        }
+      }
+    }
+    final Semaphore searches = (maxConcurrentSearches > 0) ? new Semaphore(maxConcurrentSearches, true) : null;
+
+    // Once decided the test stays decided, even if the games still being played would change its mind.
+    // The two games of a pair share the decision taken when the first of them starts.
+    final AtomicBoolean settled = new AtomicBoolean(false);
+    final Map<Integer, Boolean> skipped = new ConcurrentHashMap<Integer, Boolean>();
+    final IntPredicate skip = (sequentialTest == null) ? null : gameIndex -> skipped.computeIfAbsent(
+      pairedGames ? gameIndex / 2 : gameIndex,
+      key -> {
+        if (!settled.get()) {
+          final int wins = results.wins(1);
+          final int draws = results.otherResults();
+          settled.set(sequentialTest.decide(wins, draws, results.numGames() - wins - draws) != SPRT.Decision.CONTINUE);
+        }
+        return settled.get();
+      }
+    );
+
+    final ExecutorService pool = newGamePool(numParallelGames);
+    try {
+      final List<Future<?>> futures = new ArrayList<Future<?>>(numGames);
+      for (int i = 0; i < numGames; i++) {
+        if (checkpoint == null || !checkpoint.isFinished(i)) {
+          futures.add(submitGame(pool, i, trialSeed, searches, checkpoint, results, skip));
+        }
+      }
+      awaitAll(futures);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return results;
+  }
+
+  /**
+   * Queues one game on a pool, so that the games of several runners can share the same threads
+   * @param pool
+   * @param gameIndex
+   * @param trialSeed Seed of the trial, from which the game gets its seed
+   * @param searches Permits for the searches, null if they are not capped
+   * @param checkpoint Checkpoint the result is saved to, null for none
+   * @param results Results the result is added to
+   * @param skip Tells whether the game (by index) should be skipped when its turn comes, null to always play it
+   * @return Future of the game
+   */
+  Future<?> submitGame(
+    final ExecutorService pool,
+    final int gameIndex,
+    final long trialSeed,
+    final Semaphore searches,
+    final TrialCheckpoint checkpoint,
+    final TrialResults results,
+    final IntPredicate skip
+  ) {
+    return pool.submit(() -> {
+      if (skip != null && skip.test(gameIndex))
+        return null;
+
+      final boolean seatsSwapped = pairedGames && gameIndex % 2 == 1;
+      final long seed = gameSeed(trialSeed, pairedGames ? gameIndex / 2 : gameIndex);
+      final GameResult result = playGame(gameIndex, seed, seatsSwapped, searches);
+      if (checkpoint != null) {
+        checkpoint.save(result);
+      }
+      for (final TrialListener listener : listeners) {
+        listener.gameFinished(result);
+      }
+      results.add(result);
+      return null;
+    });
+  }
+
+  /**
+   * @param numThreads
+   * @return Pool of daemon threads for games, so a trial which is abandoned cannot keep the JVM alive
+   */
+  static ExecutorService newGamePool(final int numThreads) {
+    return Executors.newFixedThreadPool(numThreads, task -> {
+      final Thread thread = new Thread(task, "trial-game");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Waits until all games have finished
+   * @param futures
+   * @throws RuntimeException If a game failed or the wait was interrupted
+   */
+  static void awaitAll(final List<Future<?>> futures) {
+    try {
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Trial interrupted", e);
+    } catch (final ExecutionException e) {
+      throw new RuntimeException("Trial game failed", e.getCause());
+    }
+  }
+
+  /**
+   * @param trialSeed
+   * @param gameIndex
+   * @return Seed of a game of a trial (SplitMix64, so that close indices get unrelated seeds)
+   */
+  public static long gameSeed(final long trialSeed, final int gameIndex) {
+    long z = trialSeed + (gameIndex + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Plays one game with new agents
+   * @param gameIndex
+   * @param gameSeed Seed of the random opening moves
+   * @param seatsSwapped Whether the first agent plays as player 2 and the second as player 1
+   * @param searches Permits for the searches, null if they are not capped
+   * @return Result of the game
+   */
+  protected GameResult playGame(
+    final int gameIndex,
+    final long gameSeed,
+    final boolean seatsSwapped,
+    final Semaphore searches
+  ) throws InterruptedException {
+    final int numPlayers = agents.size();
+    final AI[] players = new AI[numPlayers + 1];
+    final String[] agentNames = new String[numPlayers + 1];
+    final Context context = new Context(game, new Trial(game));
+    game.start(context);
+
+    for (int p = 1; p <= numPlayers; p++) {
+      players[p] = agents.get(seatsSwapped ? numPlayers - p : p - 1).get();
+      players[p].initAI(game, p);
+      agentNames[p] = players[p].friendlyName;
+    }
+
+    final int[] moves = new int[numPlayers + 1];
+    final long[] searchNanos = new long[numPlayers + 1];
+    int moveCount = 0;
+
+    try {
+      // Random opening, the same for every game played with this seed
+      final Random openingRandom = new Random(gameSeed);
+      while (moveCount < openingMoves && !context.trial().over() && moveCount < moveLimit) {
+        final FastArrayList<Move> legalMoves = game.moves(context).moves();
+
+        // A player with no legal move passes, like in the playouts
+        if (legalMoves.size() == 0) {
+          game.apply(context, Game.createPassMove(context, true));
+        } else {
+          game.apply(context, legalMoves.get(openingRandom.nextInt(legalMoves.size())));
+        }
+        moveCount++;
+      }
+
+      while (!context.trial().over() && moveCount < moveLimit) {
+        final int mover = context.state().mover();
+
+        // Wait for a free core before the clock of the move starts
+        if (searches != null) {
+          searches.acquire();
+        }
+        final Move move;
+        final long elapsedNanos;
+        final long searchStart = System.nanoTime();
+        try {
+          // Pass a copy of the context, not the context object directly
+          move = players[mover].selectAction(game, new Context(context), givenTime, maxIterations, -1);
+        } finally {
+          elapsedNanos = System.nanoTime() - searchStart;
+          searchNanos[mover] += elapsedNanos;
+          if (searches != null) {
+            searches.release();
+          }
+        }
+        moves[mover]++;
+
+        game.apply(context, move);
+
+        // The report is read outside of the search clock, and only if someone is listening
+        if (!listeners.isEmpty()) {
+          final MoveRecord record = new MoveRecord(
+            gameIndex,
+            moveCount,
+            mover,
+            agentNames[mover],
+            String.valueOf(move),
+            elapsedNanos,
+            MoveRecord.counters(players[mover])
+          );
+          for (final TrialListener listener : listeners) {
+            listener.moveMade(record);
+          }
+        }
+        moveCount++;
+      }
+    } finally {
+      for (int p = 1; p <= numPlayers; p++) {
+        players[p].closeAI();
+      }
+    }
+
+    final int winner = (context.trial().status() != null) ? Math.max(0, context.trial().status().winner()) : 0;
+    return new GameResult(gameIndex, gameSeed, seatsSwapped, winner, !context.trial().over(), agentNames, moves, searchNanos);
+  }
+
+  public double getGivenTime() {
+    return givenTime;
+  }
+
+  public void setGivenTime(final double givenTime) {
+    this.givenTime = givenTime;
+  }
+
+  public int getMaxIterations() {
+    return maxIterations;
+  }
+
+  public void setMaxIterations(final int maxIterations) {
+    this.maxIterations = maxIterations;
+  }
+
+  public int getMoveLimit() {
+    return moveLimit;
+  }
+
+  public void setMoveLimit(final int moveLimit) {
+    if (moveLimit < 1) {
+      throw new IllegalArgumentException("Move limit must be at least 1, got: " + moveLimit);
+    }
+    this.moveLimit = moveLimit;
+  }
+
+  public int getNumParallelGames() {
+    return numParallelGames;
+  }
+
+  public void setNumParallelGames(final int numParallelGames) {
+    if (numParallelGames < 1) {
+      throw new IllegalArgumentException("Number of parallel games must be at least 1, got: " + numParallelGames);
+    }
+    this.numParallelGames = numParallelGames;
+  }
+
+  public int getMaxConcurrentSearches() {
+    return maxConcurrentSearches;
+  }
+
+  public void setMaxConcurrentSearches(final int maxConcurrentSearches) {
+    if (maxConcurrentSearches < 0) {
+      throw new IllegalArgumentException("Max concurrent searches cannot be negative, got: " + maxConcurrentSearches);
+    }
+    this.maxConcurrentSearches = maxConcurrentSearches;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(final long seed) {
+    this.seed = seed;
+  }
+
+  public int getOpeningMoves() {
+    return openingMoves;
+  }
+
+  public void setOpeningMoves(final int openingMoves) {
+    if (openingMoves < 0) {
+      throw new IllegalArgumentException("Opening moves cannot be negative, got: " + openingMoves);
+    }
+    this.openingMoves = openingMoves;
+  }
+
+  public boolean getPairedGames() {
+    return pairedGames;
+  }
+
+  public void setPairedGames(final boolean pairedGames) {
+    if (pairedGames && agents.size() != 2) {
+      throw new IllegalArgumentException("Paired games need 2 players, got: " + agents.size());
+    }
+    this.pairedGames = pairedGames;
+  }
+
+  public SPRT getSequentialTest() {
+    return sequentialTest;
+  }
+
+  public void setSequentialTest(final SPRT sequentialTest) {
+    this.sequentialTest = sequentialTest;
+  }
+
+  /**
+   * Adds a listener, told about every move and every finished game
+   * @param listener
+   */
+  public void addListener(final TrialListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(final TrialListener listener) {
+    listeners.remove(listener);
+  }
+}
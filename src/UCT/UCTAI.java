@@ -1,16 +1,28 @@
 package UCT;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
 import game.Game;
-import main.collections.FastArrayList;
 import other.AI;
 import other.context.Context;
 import other.RankUtils;
 import other.move.Move;
 import other.trial.*;
 import game.rules.play.moves.*;
+import main.collections.FastArrayList;
+import DataStructures.Node;
+import DataStructures.NodeArena;
+import DataStructures.PhaseTimer;
+import DataStructures.SearchCounters;
+import DataStructures.TimeManager;
+import DataStructures.TranspositionTable;
+import DataStructures.TreeReuse;
+import DataStructures.UCTKernel;
+import Parallel.LeafParallel;
+import Parallel.ParallelMode;
+import Parallel.SearchThreads;
 
 /*
  *  Base development of a MCTS-UCT AI agent for Ludii
@@ -20,12 +32,38 @@ import game.rules.play.moves.*;
  * 
  *  Edits made by Kiran Gupta
  */
-public class UCTAI extends AI 
+public class UCTAI extends AI implements SearchCounters
 {
 	/** Our player index */
 	protected int player = -1;
   
   protected String analysisReport = null;
+
+  protected final Map<String, Double> searchCounters = new LinkedHashMap<String, Double>(); // counters of the last search, see SearchCounters
+
+  protected int numThreads = 1;                                           // threads used for parallel search
+
+  protected ParallelMode parallelMode = ParallelMode.TREE;                // how the threads share the search
+
+  protected int virtualLoss = 1;                                          // virtual loss used by tree-parallel search
+
+  protected LeafParallel leafParallel = null;                             // worker pool for leaf-parallel playouts
+
+  protected final TreeReuse treeReuse = new TreeReuse();                 // search tree kept between moves
+
+  protected int checkpointInterval = 1;                                   // every how many plies a tree node keeps its context
+
+  protected boolean arenaTree = false;                                    // whether sequential search uses the arena tree
+
+  protected NodeArena arena = null;                                       // arena tree, reused by every sequential search
+
+  protected boolean transpositionTable = false;                           // whether sequential and leaf-parallel search merge transpositions
+
+  protected final TranspositionTable transpositions = new TranspositionTable(); // states of the last tree, when it was searched as a DAG
+
+  protected final TimeManager timeManager = new TimeManager();            // decides when a search stops (at the fixed deadline unless enabled)
+
+  protected final PhaseTimer phaseTimer = new PhaseTimer();               // times the phases of the iterations (with -DphaseTiming=true)
 	
   /*
    * Constructor 
@@ -34,10 +72,41 @@ public class UCTAI extends AI
     this.friendlyName = "MCTS-UCT AI";
   }
 
+  /*
+   * Constructor for a tree-parallel agent
+   * All threads search the same tree
+   */
+  public UCTAI(final int numThreads) {
+    this();
+    setNumThreads(numThreads);
+  }
+
+  /*
+   * Constructor for a parallel agent using the given parallelisation
+   */
+  public UCTAI(final int numThreads, final ParallelMode parallelMode) {
+    this(numThreads);
+    setParallelMode(parallelMode);
+  }
+
   @Override
 	public void initAI(final Game game, final int playerID)
 	{
 		this.player = playerID;
+    timeManager.reset();
+    treeReuse.clear();
+	}
+
+  @Override
+	public void closeAI()
+	{
+    treeReuse.clear();
+    arena = null;
+    transpositions.clear();
+    if (leafParallel != null) {
+      leafParallel.shutdown();
+      leafParallel = null;
+    }
 	}
 	
 	@Override
@@ -62,6 +131,11 @@ public class UCTAI extends AI
 		return analysisReport;
 	}
 
+  @Override
+  public Map<String, Double> searchCounters() {
+    return searchCounters;
+  }
+
   @Override
   public Move selectAction
   (
@@ -71,62 +145,312 @@ public class UCTAI extends AI
     final int maxIterations,
     final int maxDepth
   ) {
-    // Create a root node for the tree
-    final Node root = new Node(null, null, context);
-
     // Check and store all iterations and time limitations
     final int iterationLimit = 
       (maxIterations >= 0) ? 
         maxIterations : 
         Integer.MAX_VALUE;
     
-    final long timeLimit = 
-      (maxSeconds >= 0) ? 
-        System.currentTimeMillis() + (long)(maxSeconds * 1000L) : 
-        Long.MAX_VALUE;             
+    final long timeLimit = timeManager.start(maxSeconds);
+    phaseTimer.clear();
+
+    final Node root;
+    final int[] iterations;
+
+    if (numThreads > 1 && parallelMode == ParallelMode.LEAF) {
+      // Leaf parallelisation: one tree, and a batch of playouts per selected node
+      root = treeReuse.root(context, false, checkpointInterval, transpositions());
+      iterations = new int[] { searchLeafParallel(game, root, iterationLimit, timeLimit) };
+    } else if (numThreads > 1) {
+      // Tree parallelisation: all threads search the same tree
+      root = treeReuse.root(context, true, checkpointInterval);
+      iterations = SearchThreads.run(numThreads, t -> search(
+        game, 
+        root, 
+        SearchThreads.iterationShare(iterationLimit, numThreads, t), 
+        timeLimit
+      ));
+    } else if (arenaTree) {
+      // Sequential search on the arena tree, which starts over at every move
+      treeReuse.clear();
+      root = null;
+      iterations = new int[] { searchArena(game, context, iterationLimit, timeLimit) };
+    } else {
+      // Create a root node for the tree
+      root = treeReuse.root(context, false, checkpointInterval, transpositions());
+      iterations = new int[] { search(game, root, iterationLimit, timeLimit) };
+    }
+
+    timeManager.finish();
+
+    searchCounters.clear();
+    analysisReport = friendlyName + ": (i: " + SearchThreads.total(iterations);
+    searchCounters.put("i", (double) SearchThreads.total(iterations));
+    if (iterations.length > 1) {
+      analysisReport += " " + Arrays.toString(iterations);
+      for (int t = 0; t < iterations.length; t++) {
+        searchCounters.put("i-thread-" + (t + 1), (double) iterations[t]);
+      }
+    }
+    if (numThreads > 1 && parallelMode == ParallelMode.LEAF) {
+      analysisReport += ", batch: " + numThreads;
+      searchCounters.put("batch", (double) numThreads);
+    }
+    if (root == null) {
+      analysisReport += ", arena: " + arena.size() + " nodes";
+      searchCounters.put("arena-nodes", (double) arena.size());
+    } else if (treeReuse.isEnabled()) {
+      analysisReport += ", inherited: " + treeReuse.inheritedVisits();
+      searchCounters.put("inherited", (double) treeReuse.inheritedVisits());
+    }
+    if (root != null && root.transpositions != null) {
+      analysisReport += 
+        ", tt: " + transpositions.hits() + "/" + transpositions.lookups() + " hits" + 
+        " (" + String.format("%.1f", transpositions.hitRate()) + "%)";
+      searchCounters.put("tt-hits", (double) transpositions.hits());
+      searchCounters.put("tt-lookups", (double) transpositions.lookups());
+    }
+    if (timeManager.isEnabled()) {
+      analysisReport += ", bank: " + timeManager.bank() + " ms";
+      searchCounters.put("bank-ms", (double) timeManager.bank());
+    }
+    if (PhaseTimer.ENABLED) {
+      analysisReport += ", " + phaseTimer.report();
+      phaseTimer.addCounters(searchCounters);
+    }
+    analysisReport += ")";
+
+    // Keep the tree for the next move
+    treeReuse.store(root);
+
+    // Return the move we wish to play
+		return (root == null) ? arena.finalMoveSelection() : finalMoveSelection(root);
+  }
+
+  /*
+   * Search Function
+   * Runs MCTS iterations on the given tree until the iteration or time limit is reached
+   * Returns the number of iterations that were made
+   */
+  protected int search(final Game game, final Node root, final int iterationLimit, final long timeLimit) {
+    // Only add virtual losses when other threads share the tree
+    final int treeVirtualLoss = root.concurrent ? virtualLoss : 0;
 
     int i = 0;
 
+    // Times the phases of every iteration (only with -DphaseTiming=true)
+    final PhaseTimer.Recorder timer = PhaseTimer.ENABLED ? phaseTimer.recorder() : null;
+
     // Whilst we can still loop through
     while (
       i < iterationLimit &&                                       // Whilst we still have iterations left
       System.currentTimeMillis() < timeLimit &&                   // Whilst there is still time left
-      !wantsInterrupt                                             // GUI user clicking the pause button
+      !wantsInterrupt &&                                          // GUI user clicking the pause button
+      !timeManager.stop(root, i)                                  // The best move is settled (adaptive time management)
     ) {
       
       // Selection (and Expansion)
-      Node selectedNode = selectionPhase(root);
+      final long selectionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      Node selectedNode = selectionPhase(root, treeVirtualLoss);
       Context selectedContext = selectedNode.context;
 
       // Simulation
+      final long playoutStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      if (!selectedNode.terminal) {
+        selectedContext = selectedNode.copyPathContext();
+        playoutPhase(selectedContext);
+      }
+
+      // Backpropagation
+      final long backpropagationStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      if (root.concurrent) {
+        backpropagateConcurrent(selectedContext, selectedNode, game, treeVirtualLoss);
+      } else {
+        backpropagate(selectedContext, selectedNode, game);
+      }
+
+      // Time the phases of this iteration
+      if (PhaseTimer.ENABLED) {
+        timer.record(selectionStart, playoutStart, backpropagationStart, System.nanoTime());
+      }
+
+      // Increment the counter
+      i++;
+    }
+
+    return i;
+  }
+
+  /*
+   * Arena Search Function
+   * Runs MCTS iterations on the arena tree, starting from a new tree for the given context
+   * Every iteration applies the moves on the way down to one copy of the context, and plays out from there
+   * Returns the number of iterations that were made
+   */
+  protected int searchArena(final Game game, final Context context, final int iterationLimit, final long timeLimit) {
+    final NodeArena arena = arena(game);
+
+    int i = 0;
+
+    // Times the phases of every iteration (only with -DphaseTiming=true)
+    final PhaseTimer.Recorder timer = PhaseTimer.ENABLED ? phaseTimer.recorder() : null;
+
+    // Whilst we can still loop through
+    while (
+      i < iterationLimit &&                                       // Whilst we still have iterations left
+      System.currentTimeMillis() < timeLimit &&                   // Whilst there is still time left
+      !wantsInterrupt &&                                          // GUI user clicking the pause button
+      !timeManager.stop(arena, i)                                 // The best move is settled (adaptive time management)
+    ) {
+      
+      // Selection (and Expansion)
+      final long selectionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      final Context selectedContext = new Context(context);
+      if (PhaseTimer.ENABLED) {
+        PhaseTimer.expansion(selectionStart);
+      }
+      final int selectedNode = selectionPhase(arena, selectedContext);
+
+      // Simulation
+      final long playoutStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
       if (!selectedContext.trial().over()) {
-        selectedContext = new Context(selectedContext);
         playoutPhase(selectedContext);
       }
 
       // Backpropagation
-      backpropagate(selectedContext, selectedNode, game);
+      final long backpropagationStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      arena.backpropagate(selectedNode, RankUtils.utilities(selectedContext));
+
+      // Time the phases of this iteration
+      if (PhaseTimer.ENABLED) {
+        timer.record(selectionStart, playoutStart, backpropagationStart, System.nanoTime());
+      }
 
       // Increment the counter
       i++;
     }
 
-    // Return the move we wish to play
-		return finalMoveSelection(root);
+    return i;
+  }
+
+  /*
+   * Leaf-Parallel Search Function
+   * Runs MCTS iterations on the given tree, with a batch of playouts from every selected node
+   * Returns the number of iterations that were made
+   */
+  protected int searchLeafParallel
+  (
+    final Game game,
+    final Node root,
+    final int iterationLimit,
+    final long timeLimit
+  ) {
+    final LeafParallel leafPlayouts = leafParallel();
+
+    int i = 0;
+
+    // Times the phases of every iteration (only with -DphaseTiming=true)
+    final PhaseTimer.Recorder timer = PhaseTimer.ENABLED ? phaseTimer.recorder() : null;
+
+    // Whilst we can still loop through
+    while (
+      i < iterationLimit &&                                       // Whilst we still have iterations left
+      System.currentTimeMillis() < timeLimit &&                   // Whilst there is still time left
+      !wantsInterrupt &&                                          // GUI user clicking the pause button
+      !timeManager.stop(root, i)                                  // The best move is settled (adaptive time management)
+    ) {
+      
+      // Selection (and Expansion)
+      final long selectionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      Node selectedNode = selectionPhase(root);
+      final Context selectedContext = selectedNode.pathStateContext();
+
+      // Simulation, with all playouts of the batch at once
+      final long playoutStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      final double[] utilitySums;
+      if (!selectedNode.terminal) {
+        utilitySums = leafPlayouts.playouts(selectedContext, (playoutContext, k) -> 
+          playoutPhase(playoutContext)
+        );
+      } else {
+        utilitySums = leafPlayouts.terminalUtilities(selectedContext);
+      }
+
+      // Backpropagation of the whole batch
+      final long backpropagationStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      backpropagateBatch(utilitySums, leafPlayouts.numPlayouts(), selectedNode, game);
+
+      // Time the phases of this iteration
+      if (PhaseTimer.ENABLED) {
+        timer.record(selectionStart, playoutStart, backpropagationStart, System.nanoTime());
+      }
+
+      // Increment the counter
+      i++;
+    }
+
+    return i;
+  }
+
+  // Returns the worker pool for leaf-parallel playouts, creating a new one if the number of threads changed
+  protected LeafParallel leafParallel() {
+    if (leafParallel == null || leafParallel.numPlayouts() != numThreads) {
+      if (leafParallel != null) {
+        leafParallel.shutdown();
+      }
+      leafParallel = new LeafParallel(numThreads);
+    }
+    return leafParallel;
+  }
+
+  // Returns the arena tree, emptied for a new search, creating a new one if the number of players changed
+  protected NodeArena arena(final Game game) {
+    if (arena == null || arena.numPlayers() != game.players().count()) {
+      arena = new NodeArena(game.players().count());
+    } else {
+      arena.clear();
+    }
+    return arena;
+  }
+
+  // Returns the transposition table, emptied for a new search, or null if the tree is not searched as a DAG
+  protected TranspositionTable transpositions() {
+    if (!transpositionTable)
+      return null;
+
+    transpositions.clear();
+    return transpositions;
   }
 
   // Methods for the Selection Phase
   public static Node selectionPhase(final Node root) {
+    return selectionPhase(root, 0);
+  }
+
+  // Selection Phase for tree-parallel search
+  // Adds a virtual loss to every node on the way down, so other threads choose different paths
+  public static Node selectionPhase(final Node root, final int virtualLoss) {
     Node current = root;
 
     while (true) {
-      if (current.context.trial().over()) {
+      if (current.terminal) {
+        break;
+      }
+
+      final Node next = selectNode(current);
+
+      // Other threads are still creating the children of this node, so simulate from here
+      if (next == null) {
         break;
       }
 
-      current = selectNode(current);
+      // Backpropagation goes back up the path of this iteration (a linked node has several parents)
+      next.selectedFrom = current;
+      current = next;
+      final boolean unvisited = (current.visitCount == 0);
+      current.addVirtualLoss(virtualLoss);
       
-      if (current.visitCount == 0) {
+      if (unvisited) {
         break;
       }
     }
@@ -134,54 +458,95 @@ public class UCTAI extends AI
     return current;
   }
 
-  public static Node selectNode(final Node current) {
+  // Selection Phase on an arena tree (sequential search)
+  // The moves on the way down are applied to the given context, which ends up in the state of the selected node
+  // Returns the id of the node in which we simulate from
+  public static int selectionPhase(
+    final NodeArena arena, 
+    final Context context
+  ) {
+    final Game game = context.game();
+    int current = NodeArena.ROOT;
 
-    // If there is a node that hasn't been chosen, choose that child.
-    if (!current.unexpandedMoves.isEmpty()) {
+    while (true) {
+      if (context.trial().over()) {
+        break;
+      }
 
-			// randomly select an unexpanded move
-			final Move move = current.unexpandedMoves.remove(
-					ThreadLocalRandom.current().nextInt(current.unexpandedMoves.size()));
-			
-			// create a copy of context
-			final Context context = new Context(current.context);
-			
-			// apply the move
-			context.game().apply(context, move);
-			
-			// create new node and return it
-			return new Node(current, move, context);
-		}
+      // The children of a node are reserved the first time the search goes through it
+      if (!arena.hasChildren(current)) {
+        final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+        arena.reserveChildren(current, context.state().mover(), game.moves(context).moves());
+        if (PhaseTimer.ENABLED) {
+          PhaseTimer.expansion(expansionStart);
+        }
+      }
 
-    // Otherwise use UCT equation to select from all children
-    Node bestChild = null;
-    double bestValue = Double.NEGATIVE_INFINITY;
-    int numBestFound = 0;
+      // If there is a move that hasn't been chosen, choose one of those, otherwise use UCT
+      final int next;
+      if (arena.hasUnexpandedMoves(current)) {
+        // randomly select an unexpanded move
+        final FastArrayList<Move> unexpandedMoves = arena.unexpandedMoves(current);
+        next = arena.expand(current, unexpandedMoves.get(ThreadLocalRandom.current().nextInt(unexpandedMoves.size())));
+      } else {
+        next = arena.selectUCT(current);
+      }
+
+      // There are no legal moves, so simulate from here
+      if (next == NodeArena.NONE) {
+        break;
+      }
+
+      current = next;
+      final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      game.apply(context, arena.move(current));
+      if (PhaseTimer.ENABLED) {
+        PhaseTimer.expansion(expansionStart);
+      }
 
-    final int childrenNum = current.children.size();
-    final int mover = current.context.state().mover();
+      if (arena.visitCount(current) == 0) {
+        break;
+      }
+    }
 
-    for (int i = 0; i < childrenNum; i++) {
+    return current;
+  }
 
-      // Get the first child and calculate their UCT score
-      final Node child = current.children.get(i);
+  public static Node selectNode(final Node current) {
 
-      final double vi = (child.scoreSums[mover] / child.visitCount);
-      final double c = Math.sqrt(2.0);
-      final double np = (double) current.visitCount;
-      final double ni = (double) child.visitCount;
-      final double uctValue = vi + c * Math.sqrt(Math.log(np)/ni);
+    // If there is a node that hasn't been chosen, choose that child.
+    if (!current.unexpandedMoves.isEmpty()) {
+      Move move = null;
+
+      // Only one thread at a time may claim an unexpanded move (tree-parallel search)
+      synchronized (current.unexpandedMoves) {
+        if (!current.unexpandedMoves.isEmpty()) {
+          // randomly select an unexpanded move
+          move = current.unexpandedMoves.remove(
+              ThreadLocalRandom.current().nextInt(current.unexpandedMoves.size()));
+        }
+      }
 
-      if (uctValue > bestValue) {
-        bestValue = uctValue;
-        bestChild = child;
-        numBestFound = 1;
-      } else if (uctValue == bestValue && ThreadLocalRandom.current().nextInt() % ++numBestFound == 0) {
-        bestChild = child;
+      if (move != null) {
+        final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+
+        // create a copy of context (replayed from the last checkpoint in a context-light tree)
+        final Context context = current.copyContext();
+        
+        // apply the move
+        context.game().apply(context, move);
+        
+        // create new node (or link the node of the same state) and return it
+        final Node child = current.expand(move, context);
+        if (PhaseTimer.ENABLED) {
+          PhaseTimer.expansion(expansionStart);
+        }
+        return child;
       }
-    }
-    
-    return bestChild;
+		}
+
+    // Otherwise use UCT equation to select from all children
+    return UCTKernel.selectChild(current.children, current.mover, current.visitCount, ThreadLocalRandom.current());
   }
 
   public static Trial playoutPhase(final Context context) {
@@ -212,7 +577,7 @@ public class UCTAI extends AI
   public static Node backpropagate(final Context contextEnd, Node current, Game game) {
     final double[] utilities = RankUtils.utilities(contextEnd);
 			
-    // Backpropagate utilities through the tree
+    // Backpropagate utilities up the path of the selection (the tree may be a DAG, see Node.expand)
     while (current != null)
     {
       current.visitCount += 1;
@@ -220,6 +585,39 @@ public class UCTAI extends AI
       {
         current.scoreSums[p] += utilities[p];
       }
+      current = current.selectedFrom;
+    }
+    return null;
+  }
+
+  // Method for the Back-Propagation Phase of leaf-parallel search
+  // Adds a whole batch of playouts from the same node at once,
+  // using the utilities of all players summed over the batch
+  public static Node backpropagateBatch(final double[] utilitySums, final int numPlayouts, Node current, Game game) {
+    // Backpropagate utilities up the path of the selection (the tree may be a DAG, see Node.expand)
+    while (current != null)
+    {
+      current.visitCount += numPlayouts;
+      for (int p = 1; p <= game.players().count(); ++p)
+      {
+        current.scoreSums[p] += utilitySums[p];
+      }
+      current = current.selectedFrom;
+    }
+    return null;
+  }
+
+  // Method for the Back-Propagation Phase of tree-parallel search
+  // Same as backpropagate, but the updates are atomic as other threads share the tree,
+  // and the virtual loss that was added during selection is taken off again
+  public static Node backpropagateConcurrent(final Context contextEnd, Node current, Game game, int virtualLoss) {
+    final double[] utilities = RankUtils.utilities(contextEnd);
+    final int numPlayers = game.players().count();
+
+    // Backpropagate utilities through the tree
+    while (current != null)
+    {
+      current.addVisitConcurrent(utilities, numPlayers, virtualLoss);
       current = current.parent;
     }
     return null;
@@ -259,62 +657,94 @@ public class UCTAI extends AI
         }
     }
     
-    return bestChild.moveFromParent;
+    return rootNode.moveTo(bestChild);
 	}
 
 
-  /**
-    * Inner class for nodes used by example UCT
-    * 
-    * @author Dennis Soemers
-    */
-	private static class Node
-	{
-		/** Our parent node */
-		private final Node parent;
-		
-		/** The move that led from parent to this node */
-		private final Move moveFromParent;
-		
-		/** This objects contains the game state for this node (this is why we don't support stochastic games) */
-		private final Context context;
-		
-		/** Visit count for this node */
-		private int visitCount = 0;
-		
-		/** For every player, sum of utilities / scores backpropagated through this node */
-		private final double[] scoreSums;
-		
-		/** Child nodes */
-		private final List<Node> children = new ArrayList<Node>();
-		
-		/** List of moves for which we did not yet create a child node */
-		private final FastArrayList<Move> unexpandedMoves;
-		
-		/**
-		 * Constructor
-		 * 
-		 * @param parent
-		 * @param moveFromParent
-		 * @param context
-		 */
-		public Node(final Node parent, final Move moveFromParent, final Context context) {
-			this.parent = parent;
-			this.moveFromParent = moveFromParent;
-			this.context = context;
-			final Game game = context.game();
-			scoreSums = new double[game.players().count() + 1];
-			
-			// For simplicity, we just take ALL legal moves. 
-			// This means we do not support simultaneous-move games.
-			unexpandedMoves = new FastArrayList<Move>(game.moves(context).moves());
-			
-			if (parent != null)
-				parent.children.add(this);
-		}
-	}
-
   public double getEpsilon() {
     return 0;
   }
-}
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  public void setNumThreads(final int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1, got: " + numThreads);
+    }
+    this.numThreads = numThreads;
+  }
+
+  public int getVirtualLoss() {
+    return virtualLoss;
+  }
+
+  public void setVirtualLoss(final int virtualLoss) {
+    if (virtualLoss < 0) {
+      throw new IllegalArgumentException("Virtual loss cannot be negative, got: " + virtualLoss);
+    }
+    this.virtualLoss = virtualLoss;
+  }
+
+  public ParallelMode getParallelMode() {
+    return parallelMode;
+  }
+
+  public void setParallelMode(final ParallelMode parallelMode) {
+    if (parallelMode == null) {
+      throw new IllegalArgumentException("Parallel mode cannot be null");
+    }
+    if (parallelMode == ParallelMode.ROOT) {
+      throw new IllegalArgumentException("Root parallelisation is only supported by the MAST agent");
+    }
+    this.parallelMode = parallelMode;
+  }
+
+  public boolean getReuseTree() {
+    return treeReuse.isEnabled();
+  }
+
+  public void setReuseTree(final boolean reuseTree) {
+    treeReuse.setEnabled(reuseTree);
+  }
+
+  public int getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  public void setCheckpointInterval(final int checkpointInterval) {
+    if (checkpointInterval < 0) {
+      throw new IllegalArgumentException("Checkpoint interval cannot be negative, got: " + checkpointInterval);
+    }
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  public boolean getArenaTree() {
+    return arenaTree;
+  }
+
+  public void setArenaTree(final boolean arenaTree) {
+    this.arenaTree = arenaTree;
+  }
+
+  public boolean getTranspositionTable() {
+    return transpositionTable;
+  }
+
+  public void setTranspositionTable(final boolean transpositionTable) {
+    this.transpositionTable = transpositionTable;
+  }
+
+  public boolean getAdaptiveTime() {
+    return timeManager.isEnabled();
+  }
+
+  public void setAdaptiveTime(final boolean adaptiveTime) {
+    timeManager.setEnabled(adaptiveTime);
+  }
+
+  public TimeManager getTimeManager() {
+    return timeManager;
+  }
+}
\ No newline at end of file
@@ -38,6 +38,6 @@ public class FinalMoveSelection {
         }
     }
     
-    return bestChild.moveFromParent;
+    return rootNode.moveTo(bestChild);
 	}
 }
@@ -1,6 +1,5 @@
 package UCTLGR.playout;
 
-import java.util.Map;
 import java.util.List;
 
 import game.Game;
@@ -10,6 +9,7 @@ import other.move.Move;
 import other.trial.*;
 import other.RankUtils;
 import DataStructures.*;
+import LGR.LGRFunctions;
 import UCTLGR.playout.Playout;
 import UCTLGR.selection.Selection;
 
@@ -18,7 +18,7 @@ import UCTLGR.selection.Selection;
 // Updates the LGRs for all the moves in the trial after simulation
 // Returns a trial object
 public class Playout {
-  public static Trial playoutPhase(final Context context, Map<MoveKey, LGRNode> lastGoodReplies) {
+  public static Trial playoutPhase(final Context context, LastGoodReplyStore lastGoodReplies, MoveHistory history) {
 
     final Game game = context.game();
     final Trial trial = context.trial();
@@ -30,14 +30,17 @@ public class Playout {
 
       // If there are no legal moves, we have reached the terminal state
       if (legal.moves().size() == 0) {
-        game.apply(context, Game.createPassMove(context, true));
+        final Move passMove = Game.createPassMove(context, true);
+        game.apply(context, passMove);
+        history.push(passMove);
         continue;
       }
 
       // *** Choosing move using stats *** //
       // Find an appropriate move using epsilon greedy & apply it
-      Move selectedMove = Selection.lgrSelect(legal.moves(), lastGoodReplies, context);
+      Move selectedMove = Selection.lgrSelect(legal.moves(), lastGoodReplies, history);
       game.apply(context, selectedMove);
+      history.push(selectedMove);
     }
 
     // *** Recording Stats from Trial *** //
@@ -54,54 +57,18 @@ public class Playout {
     }
 
     // Next loop through the moves and store LGRs
-    MoveKey lastMoveKey = null;
-    MoveKey penultimateMoveKey = null;
+    long lastMoveCode = LastGoodReplyTable.NONE;
+    long penultimateMoveCode = LastGoodReplyTable.NONE;
     for (Move currentMove : trialMoves) {
       double currentUtility = utilities[currentMove.mover()];
+      final long currentMoveCode = MoveCodec.encode(currentMove);
 
-      // If there is a previous move
-      if (lastMoveKey != null) {
-        LGRNode lastMoveNode = lastGoodReplies.get(lastMoveKey);
+      // Update the LGR-1 and LGR-2 replies accordingly
+      LGRFunctions.lgrStore(currentMoveCode, lastMoveCode, penultimateMoveCode, currentUtility, highestUtility, lastGoodReplies);
 
-        // If the object doesn't exist yet, make a new object
-        if (lastMoveNode == null) {
-          lastMoveNode = new LGRNode();
-          lastGoodReplies.put(lastMoveKey, lastMoveNode);
-        }
-
-        // Update LGR accordingly
-        if (currentUtility == highestUtility) {
-          lastMoveNode.reply = currentMove;
-        } else {
-          if (lastMoveNode.reply == currentMove) {
-            lastMoveNode.reply = null;
-          }
-        }
-
-        // Now check if there is a penultimate move
-        if (penultimateMoveKey != null) {
-          LGRNode penultimateMoveNode = lastMoveNode.lastGoodReplies.get(penultimateMoveKey);
-
-          // If the object doesn't exist yet, make a new object
-          if (penultimateMoveNode == null) {
-            penultimateMoveNode = new LGRNode();
-            lastMoveNode.lastGoodReplies.put(penultimateMoveKey, penultimateMoveNode);
-          }
-
-          // Update LGR accordingly
-          if (currentUtility == highestUtility) {
-            penultimateMoveNode.reply = currentMove;
-          } else {
-            if (penultimateMoveNode.reply == currentMove) {
-              penultimateMoveNode.reply = null;
-            }
-          }
-        }
-      }
-
-      // Shift the move keys to record next move
-      penultimateMoveKey = lastMoveKey;
-      lastMoveKey = new MoveKey(currentMove, 0);
+      // Shift the move codes to record next move
+      penultimateMoveCode = lastMoveCode;
+      lastMoveCode = currentMoveCode;
     }
 
     return trial;
@@ -1,29 +1,48 @@
 package UCTLGR.selection;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.Map;
-import java.util.List;
 
+import game.Game;
 import other.context.Context;
 import other.move.Move;
 import DataStructures.*;
 import DataStructures.Node;
+import LGR.LGRFunctions;
 import main.collections.FastArrayList;
 
 public class Selection {
 
   // Selection Phase
   // Returns the Node in which we simulate from
-  public static Node selectionPhase(final Node root, Map<MoveKey, LGRNode> lastGoodReplies) {
+  public static Node selectionPhase(final Node root, LastGoodReplyStore lastGoodReplies) {
+    return selectionPhase(root, lastGoodReplies, MoveHistory.of(root.context.trial(), MoveHistory.DEFAULT_LENGTH), 0);
+  }
+
+  // Selection Phase for tree-parallel search
+  // The history starts with the moves up to the root, and every move made on the way down is added to it
+  // Adds a virtual loss to every node on the way down, so other threads choose different paths
+  public static Node selectionPhase(final Node root, LastGoodReplyStore lastGoodReplies, MoveHistory history, int virtualLoss) {
     Node current = root;
 
     while (true) {
-      if (current.context.trial().over()) {
+      if (current.terminal) {
         break;
       }
 
-      current = selectNode(current, lastGoodReplies);
+      final Node next = selectNode(current, lastGoodReplies, history);
+
+      // Other threads are still creating the children of this node, so simulate from here
+      if (next == null) {
+        break;
+      }
+
+      // Backpropagation goes back up the path of this iteration (a linked node has several parents)
+      next.selectedFrom = current;
+      history.push(current.moveTo(next));
+      current = next;
+      final boolean unvisited = (current.visitCount == 0);
+      current.addVirtualLoss(virtualLoss);
       
-      if (current.visitCount == 0) {
+      if (unvisited) {
         break;
       }
     }
@@ -31,119 +50,109 @@ public class Selection {
     return current;
   }
 
-  // Select Function
-  // Uses the LGRs to select a child of the current node
-  public static Node selectNode(final Node current, Map<MoveKey, LGRNode> lastGoodReplies) {
-
-    // If there is a node that hasn't been chosen, choose one of those child.
-    if (!current.unexpandedMoves.isEmpty()) {
+  // Selection Phase on an arena tree (sequential search)
+  // The moves on the way down are applied to the given context, which ends up in the state of the selected node
+  // Returns the id of the node in which we simulate from
+  public static int selectionPhase(
+    final NodeArena arena, 
+    final Context context,
+    LastGoodReplyStore lastGoodReplies,
+    MoveHistory history
+  ) {
+    final Game game = context.game();
+    int current = NodeArena.ROOT;
 
-      Move selectedMove = lgrSelect(current.unexpandedMoves, lastGoodReplies, current.context);
-      current.unexpandedMoves.remove(current.unexpandedMoves.indexOf(selectedMove));
-
-			// create a copy of context
-			final Context context = new Context(current.context);
-			
-			// apply the move
-			context.game().apply(context, selectedMove);
-			
-			// create new node and return it
-			return new Node(current, selectedMove, context);
-		}
+    while (true) {
+      if (context.trial().over()) {
+        break;
+      }
 
-    // Otherwise use UCT equation to select from all children
-    Node bestChild = null;
-    double bestValue = Double.NEGATIVE_INFINITY;
-    int numBestFound = 0;
-
-    final int childrenNum = current.children.size();
-    final int mover = current.context.state().mover();
-
-    for (int i = 0; i < childrenNum; i++) {
-
-      // Get the first child and calculate their UCT score
-      final Node child = current.children.get(i);
-
-      final double vi = (child.scoreSums[mover] / child.visitCount);
-      final double c = Math.sqrt(2.0);
-      final double np = (double) current.visitCount;
-      final double ni = (double) child.visitCount;
-      final double uctValue = vi + c * Math.sqrt(Math.log(np)/ni);
-
-      if (uctValue > bestValue) {
-        bestValue = uctValue;
-        bestChild = child;
-        numBestFound = 1;
-      } else if (uctValue == bestValue && ThreadLocalRandom.current().nextInt() % ++numBestFound == 0) {
-        bestChild = child;
+      // The children of a node are reserved the first time the search goes through it
+      if (!arena.hasChildren(current)) {
+        final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+        arena.reserveChildren(current, context.state().mover(), game.moves(context).moves());
+        if (PhaseTimer.ENABLED) {
+          PhaseTimer.expansion(expansionStart);
+        }
       }
-    }
-    
-    return bestChild;
-  }
 
-  // lgrSelect Function
-  // Takes a list of moves and finds the LGR based on the context
-  // Returns a Move from the list of Moves if LGR is available, if not a random move is selected
-  // Used in both the selection and playout phases
-  public static Move lgrSelect(final FastArrayList<Move> moves, Map<MoveKey, LGRNode> lastGoodReplies, final Context currentContext) {
+      // If there is a move that hasn't been chosen, choose one of those, otherwise use UCT
+      final int next;
+      if (arena.hasUnexpandedMoves(current)) {
+        next = arena.expand(current, lgrSelect(arena.unexpandedMoves(current), lastGoodReplies, history));
+      } else {
+        next = arena.selectUCT(current);
+      }
 
-    // First, get the last 2 moves from the context
-    List<Move> movesList = currentContext.trial().generateCompleteMovesList();
+      // There are no legal moves, so simulate from here
+      if (next == NodeArena.NONE) {
+        break;
+      }
 
-    // If we have no moves in the context, return a random move
-    if (movesList.size() == 0) {
-      final int r = ThreadLocalRandom.current().nextInt(moves.size());
-      final Move move = moves.get(r);
-      return move;
-    }
-    
-    Move previousMove = movesList.get(movesList.size()-1);
-    MoveKey moveKey = new MoveKey(previousMove, 0);
-    LGRNode lgrNode1 = lastGoodReplies.get(moveKey);
-
-    // If we have 1 move in the context, check for its LGR and if that exists in our
-    // available moves, use that
-    if (movesList.size() == 1) {
-      if (lgrNode1 != null && lgrNode1.reply != null) {
-        if (moves.contains(lgrNode1.reply)) {
-          return lgrNode1.reply;
-        } else {
-          final int r = ThreadLocalRandom.current().nextInt(moves.size());
-          final Move move = moves.get(r);
-          return move;
-        }
+      current = next;
+      final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+      game.apply(context, arena.move(current));
+      if (PhaseTimer.ENABLED) {
+        PhaseTimer.expansion(expansionStart);
+      }
+      history.push(arena.move(current));
 
-      // Otherwise choose a random move
-      } else {
-        final int r = ThreadLocalRandom.current().nextInt(moves.size());
-        final Move move = moves.get(r);
-        return move;
+      if (arena.visitCount(current) == 0) {
+        break;
       }
     }
 
-    // Otherwise check our 2 last moves
-    Move secondLastMove = movesList.get(movesList.size()-2);
+    return current;
+  }
+
+  // Select Function
+  // Uses the LGRs to select a child of the current node
+  public static Node selectNode(final Node current, LastGoodReplyStore lastGoodReplies, MoveHistory history) {
 
-    // Now find the last good reply
-    // First check for LGR with history length 2
-    if (lgrNode1 != null) {
-      moveKey = new MoveKey(secondLastMove, 0);
-      LGRNode lgrNode2 = lgrNode1.lastGoodReplies.get(moveKey);
+    // If there is a node that hasn't been chosen, choose one of those child.
+    if (!current.unexpandedMoves.isEmpty()) {
+      Move selectedMove = null;
 
-      // If we have a reply for the past two moves, check if that reply exists in the moves list
-      if (lgrNode2 != null && lgrNode2.reply != null) {
-        if (moves.contains(lgrNode2.reply)) {
-          return lgrNode2.reply;
+      // Only one thread at a time may claim an unexpanded move (tree-parallel search)
+      synchronized (current.unexpandedMoves) {
+        if (!current.unexpandedMoves.isEmpty()) {
+          selectedMove = lgrSelect(current.unexpandedMoves, lastGoodReplies, history);
+          current.unexpandedMoves.remove(current.unexpandedMoves.indexOf(selectedMove));
         }
       }
 
-      // Next check for a reply for the past move and if it exists in the moves list
-      if (lgrNode1.reply != null) {
-        if (moves.contains(lgrNode1.reply)) {
-          return lgrNode1.reply;
+      if (selectedMove != null) {
+        final long expansionStart = PhaseTimer.ENABLED ? System.nanoTime() : 0L;
+
+        // create a copy of context (replayed from the last checkpoint in a context-light tree)
+        final Context context = current.copyContext();
+        
+        // apply the move
+        context.game().apply(context, selectedMove);
+        
+        // create new node (or link the node of the same state) and return it
+        final Node child = current.expand(selectedMove, context);
+        if (PhaseTimer.ENABLED) {
+          PhaseTimer.expansion(expansionStart);
         }
+        return child;
       }
+		}
+
+    // Otherwise use UCT equation to select from all children
+    return UCTKernel.selectChild(current.children, current.mover, current.visitCount, ThreadLocalRandom.current());
+  }
+
+  // lgrSelect Function
+  // Takes a list of moves and finds the LGR based on the context
+  // Returns a Move from the list of Moves if LGR is available, if not a random move is selected
+  // Used in both the selection and playout phases
+  public static Move lgrSelect(final FastArrayList<Move> moves, LastGoodReplyStore lastGoodReplies, final MoveHistory history) {
+
+    // Find the last good reply to the past two moves (or the past move), if it is available
+    final Move reply = LGRFunctions.lgrSelect(moves, lastGoodReplies, history);
+    if (reply != null) {
+      return reply;
     }
 
     // Finally, if we have not found a LGR, return a random move
@@ -0,0 +1,79 @@
+package DataStructures;
+
+import java.util.Random;
+
+/**
+ * Checks that the vector kernel computes the same UCT values as the scalar loop, bit for bit,
+ * and that UCTKernel.select then picks the same child as UCTKernel.selectScalar for the same
+ * random seed. The children are random, and every other input has runs of identical children
+ * so that the random tie-breaking is exercised too.
+ *
+ * Usage: java --add-modules jdk.incubator.vector DataStructures.UCTKernelCheck [inputs] [seed]
+ *
+ * Exits with 1 if any input gives a different value or choice.
+ *
+ * @author Kiran Gupta
+ */
+public class UCTKernelCheck {
+  private static final int MAX_CHILDREN = 100;              // children of the largest input
+
+  public static void main(final String[] args) {
+    final int numInputs = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    final long seed = (args.length > 1) ? Long.parseLong(args[1]) : 42L;
+
+    if (!UCTKernel.VECTORISED) {
+      System.err.println("The vector kernel is not available, run with --add-modules jdk.incubator.vector");
+      System.exit(2);
+    }
+
+    final VectorUCTKernel kernel = new VectorUCTKernel();
+    final Random random = new Random(seed);
+    final int[] visitCounts = new int[MAX_CHILDREN + 8];
+    final double[] scoreSums = new double[MAX_CHILDREN + 8];
+    final double[] vectorValues = new double[MAX_CHILDREN + 8];
+    final double[] scalarValues = new double[MAX_CHILDREN + 8];
+    int valueMismatches = 0;
+    int choiceMismatches = 0;
+
+    for (int input = 0; input < numInputs; input++) {
+      final int from = random.nextInt(8);
+      final int to = from + 1 + random.nextInt(MAX_CHILDREN);
+      final boolean tied = input % 2 == 1;
+      for (int child = from; child < to; child++) {
+        if (tied && child > from && random.nextInt(4) != 0) {
+          // Same statistics as the previous child
+          visitCounts[child] = visitCounts[child - 1];
+          scoreSums[child] = scoreSums[child - 1];
+        } else {
+          visitCounts[child] = 1 + random.nextInt(tied ? 4 : 100000);
+          scoreSums[child] = tied ? random.nextInt(2 * visitCounts[child] + 1) - visitCounts[child]
+                                  : (2 * random.nextDouble() - 1) * visitCounts[child];
+        }
+      }
+      final double logParentVisits = Math.log(1 + random.nextInt(1000000));
+
+      kernel.values(visitCounts, scoreSums, from, to, logParentVisits, vectorValues);
+      UCTKernel.scalarValues(visitCounts, scoreSums, from, to, logParentVisits, scalarValues, 0);
+      for (int i = 0; i < to - from; i++) {
+        if (Double.doubleToRawLongBits(vectorValues[i]) != Double.doubleToRawLongBits(scalarValues[i])) {
+          valueMismatches++;
+          break;
+        }
+      }
+
+      final long pickSeed = random.nextLong();
+      final int vectorChoice = UCTKernel.select(visitCounts, scoreSums, from, to, logParentVisits, vectorValues, new Random(pickSeed));
+      final int scalarChoice = UCTKernel.selectScalar(visitCounts, scoreSums, from, to, logParentVisits, scalarValues, new Random(pickSeed));
+      if (vectorChoice != scalarChoice) {
+        choiceMismatches++;
+      }
+    }
+
+    System.out.println(
+      "Inputs: " + numInputs + ", with different values: " + valueMismatches + ", with different choices: " + choiceMismatches
+    );
+    if (valueMismatches > 0 || choiceMismatches > 0) {
+      System.exit(1);
+    }
+  }
+}
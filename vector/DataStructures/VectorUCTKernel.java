@@ -0,0 +1,56 @@
+package DataStructures;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * UCT values computed with the vector API, see UCTKernel.
+ * Only loaded (by name) when the jdk.incubator.vector module is available, so it is compiled
+ * from its own source root with --add-modules jdk.incubator.vector.
+ *
+ * @author Kiran Gupta
+ */
+final class VectorUCTKernel implements UCTValues {
+  /** Lanes of doubles used for the values */
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+  /** Lanes of ints with the same number of lanes, used to load the visit counts */
+  private static final VectorSpecies<Integer> INTS =
+    IntVector.SPECIES_PREFERRED.withShape(VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+  /**
+   * Constructor, called by UCTKernel through reflection
+   */
+  VectorUCTKernel() {
+  }
+
+  // Uses the same operations in the same order as UCTKernel.scalarValues, so the values are identical
+  @Override
+  public void values(
+    final int[] visitCounts,
+    final double[] scoreSums,
+    final int from,
+    final int to,
+    final double logParentVisits,
+    final double[] values
+  ) {
+    final int numChildren = to - from;
+    final int bound = DOUBLES.loopBound(numChildren);
+    final DoubleVector exploration = DoubleVector.broadcast(DOUBLES, UCTKernel.EXPLORATION);
+    final DoubleVector logParent = DoubleVector.broadcast(DOUBLES, logParentVisits);
+
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      final DoubleVector ni = (DoubleVector) IntVector.fromArray(INTS, visitCounts, from + i)
+        .convertShape(VectorOperators.I2D, DOUBLES, 0);
+      final DoubleVector vi = DoubleVector.fromArray(DOUBLES, scoreSums, from + i).div(ni);
+      vi.add(exploration.mul(logParent.div(ni).sqrt())).intoArray(values, i);
+    }
+
+    // Children that do not fill a whole vector
+    UCTKernel.scalarValues(visitCounts, scoreSums, from + i, to, logParentVisits, values, i);
+  }
+}